@@ -92,8 +92,9 @@ public class AxonServerStandardConfiguration {
 
     @Bean
     @ConditionalOnMissingBean(StorageTransactionManagerFactory.class)
-    public StorageTransactionManagerFactory storageTransactionManagerFactory() {
-        return new DefaultStorageTransactionManagerFactory();
+    public StorageTransactionManagerFactory storageTransactionManagerFactory(
+            EmbeddedDBProperties embeddedDBProperties, MeterFactory meterFactory) {
+        return new DefaultStorageTransactionManagerFactory(embeddedDBProperties, meterFactory);
     }
 
     @Bean
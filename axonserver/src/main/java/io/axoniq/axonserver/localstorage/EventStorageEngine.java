@@ -11,12 +11,15 @@ package io.axoniq.axonserver.localstorage;
 
 import io.axoniq.axonserver.grpc.event.Event;
 import io.axoniq.axonserver.grpc.event.EventWithToken;
+import io.axoniq.axonserver.grpc.event.PayloadDescription;
+import io.axoniq.axonserver.localstorage.file.AggregateSequence;
 import org.springframework.data.util.CloseableIterator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -93,6 +96,18 @@ public interface EventStorageEngine {
         return getLastSequenceNumber(aggregateIdentifier);
     }
 
+    /**
+     * Returns the last sequence numbers of the aggregates in the most recent segments, starting with the most recent
+     * segment. An aggregate that occurs in multiple segments is returned once for each segment, the first occurrence
+     * contains its last sequence number.
+     *
+     * @param maxSegments maximum number of segments to read
+     * @return stream of aggregate identifiers and their last sequence number
+     */
+    default Stream<AggregateSequence> recentSequenceNumbers(int maxSegments) {
+        return Stream.empty();
+    }
+
     /**
      * Close the storage engine. Free all resources used by the storage engine.
      *
@@ -217,6 +232,19 @@ public interface EventStorageEngine {
      */
     CloseableIterator<SerializedEventWithToken> getGlobalIterator(long start);
 
+    /**
+     * Finds the first token at or after the given token that may refer to an event with a payload type that is not
+     * excluded. All events between the given token and the returned token have an excluded payload type. The default
+     * implementation does not skip any events.
+     *
+     * @param token                the token to start from
+     * @param excludedPayloadTypes the payload types to skip
+     * @return the first token that may refer to an event with a payload type that is not excluded
+     */
+    default long nextCandidateToken(long token, Set<PayloadDescription> excludedPayloadTypes) {
+        return token;
+    }
+
     /**
      * Version number for new transactions.
      * @return the version number of new transactions in this storage engine.
@@ -85,4 +85,8 @@ public class EventWriteStorage {
     public void clearSequenceNumberCache() {
         storageTransactionManager.clearSequenceNumberCache();
     }
+
+    public void warmUpSequenceNumberCache() {
+        storageTransactionManager.warmUpSequenceNumberCache();
+    }
 }
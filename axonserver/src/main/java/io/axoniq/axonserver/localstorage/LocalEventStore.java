@@ -107,6 +107,15 @@ public class LocalEventStore implements io.axoniq.axonserver.message.event.Event
     private long newPermitsTimeout = 120000;
     @SuppressWarnings("FieldMayBeFinal") @Value("${axoniq.axonserver.check-sequence-nr-for-snapshots:true}")
     private boolean checkSequenceNrForSnapshots = true;
+    /**
+     * Number of recent events per context kept in memory for tracking event processors that are caught up, so these
+     * events are read from the event store once instead of once per tracking event processor. 0 disables the shared
+     * buffer.
+     */
+    @SuppressWarnings("FieldMayBeFinal") @Value("${axoniq.axonserver.tracker-shared-tail-size:0}")
+    private int trackerSharedTailSize = 0;
+    @SuppressWarnings("FieldMayBeFinal") @Autowired(required = false)
+    private TrackerSchedulingProperties trackerSchedulingProperties = new TrackerSchedulingProperties();
 
     public LocalEventStore(EventStoreFactory eventStoreFactory,
                            MeterRegistry meterFactory,
@@ -503,6 +512,7 @@ public class LocalEventStore implements io.axoniq.axonserver.message.event.Event
                                 new InterceptorAwareEventDecorator(context, authentication);
                         return workers(context).createEventTracker(getEventsRequest.getTrackingToken(),
                                                                    getEventsRequest.getClientId(),
+                                                                   getEventsRequest.getProcessor(),
                                                                    getEventsRequest.getForceReadFromLeader(),
                                                                    new StreamObserver<SerializedEventWithToken>() {
                                                                        @Override
@@ -887,7 +897,12 @@ public class LocalEventStore implements io.axoniq.axonserver.message.event.Event
             this.snapshotWriteStorage = new SnapshotWriteStorage(storageTransactionManagerFactory
                                                                          .createTransactionManager(this.snapshotStorageEngine));
             this.aggregateReader = new AggregateReader(eventStorageEngine, new SnapshotReader(snapshotStorageEngine));
-            this.trackingEventManager = new TrackingEventProcessorManager(eventStorageEngine, blacklistedSendAfter);
+            this.trackingEventManager = TrackingEventProcessorManager.builder(eventStorageEngine)
+                                                                     .blacklistedSendAfter(blacklistedSendAfter)
+                                                                     .sharedTailSize(trackerSharedTailSize)
+                                                                     .scheduling(trackerSchedulingProperties)
+                                                                     .meterFactory(meterFactory)
+                                                                     .build();
 
             this.eventStreamReader = new EventStreamReader(eventStorageEngine);
             this.snapshotStreamReader = new EventStreamReader(snapshotStorageEngine);
@@ -921,6 +936,7 @@ public class LocalEventStore implements io.axoniq.axonserver.message.event.Event
                     eventStorageEngine.init(validate, defaultFirstEventIndex);
                     snapshotStorageEngine.init(validate, defaultFirstSnapshotIndex);
                     initialized = true;
+                    eventWriteStorage.warmUpSequenceNumberCache();
 
                     if (logger.isInfoEnabled()) {
                         logger.info("Workers[{}] for context {} has been initialized.",
@@ -956,10 +972,12 @@ public class LocalEventStore implements io.axoniq.axonserver.message.event.Event
 
         private TrackingEventProcessorManager.EventTracker createEventTracker(long trackingToken,
                                                                               String clientId,
+                                                                              String processor,
                                                                               boolean forceReadingFromLeader,
                                                                               StreamObserver<SerializedEventWithToken> eventStream) {
             return trackingEventManager.createEventTracker(trackingToken,
                                                            clientId,
+                                                           processor,
                                                            forceReadingFromLeader,
                                                            eventStream);
         }
@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage;
+
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Keeps the most recent events of a context in a ring buffer, so that event trackers that are (almost) caught up can
+ * read new events from memory instead of each reading them from the event store. A single iterator follows the head
+ * of the event store and adds the events to the buffer.
+ * <p>
+ * Not thread safe, all operations must be executed by the thread sending events to the trackers.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+class SharedEventTail {
+
+    private final SerializedEventWithToken[] events;
+    private final Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder;
+    private CloseableIterator<SerializedEventWithToken> reader;
+    /**
+     * Token of the oldest event in the buffer.
+     */
+    private long firstToken;
+    /**
+     * Token of the next event to read from the event store.
+     */
+    private long nextToken;
+
+    /**
+     * @param size            the maximum number of events to keep in the buffer
+     * @param iteratorBuilder function that creates an event iterator starting at the given token
+     */
+    SharedEventTail(int size, Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder) {
+        this.events = new SerializedEventWithToken[size];
+        this.iteratorBuilder = iteratorBuilder;
+    }
+
+    /**
+     * Returns the event with the given token. Reads new events from the event store when the token is after the last
+     * event in the buffer. When the token is too far ahead of the buffer, the buffer is restarted at this token.
+     *
+     * @param token the token of the event
+     * @return the event or null if the event is not available (yet)
+     */
+    SerializedEventWithToken get(long token) {
+        if (reader != null && token < firstToken) {
+            return null;
+        }
+        if (reader == null || token - nextToken > events.length) {
+            restart(token);
+        }
+        while (token >= nextToken) {
+            if (!reader.hasNext()) {
+                return null;
+            }
+            add(reader.next());
+        }
+        return events[index(token)];
+    }
+
+    /**
+     * Checks if the event with the given token is older than the events in the buffer. Trackers that are behind need
+     * to read from the event store themselves.
+     *
+     * @param token the token of the event
+     * @return true if the event is no longer in the buffer
+     */
+    boolean isBehind(long token) {
+        return reader != null && token < firstToken;
+    }
+
+    /**
+     * @return the maximum number of events in the buffer
+     */
+    int size() {
+        return events.length;
+    }
+
+    /**
+     * Closes the iterator following the event store and clears the buffer.
+     */
+    void close() {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        Arrays.fill(events, null);
+    }
+
+    private void add(SerializedEventWithToken event) {
+        if (event.getToken() != nextToken) {
+            firstToken = event.getToken();
+        }
+        events[index(event.getToken())] = event;
+        nextToken = event.getToken() + 1;
+        firstToken = Math.max(firstToken, nextToken - events.length);
+    }
+
+    private void restart(long token) {
+        close();
+        reader = iteratorBuilder.apply(token);
+        firstToken = token;
+        nextToken = token;
+    }
+
+    private int index(long token) {
+        return (int) (token % events.length);
+    }
+}
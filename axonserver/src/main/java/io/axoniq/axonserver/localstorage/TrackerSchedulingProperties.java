@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings for sending events to tracking event processors. Trackers that have caught up with the head of the event
+ * store are served by a dedicated thread per context, trackers that are replaying (or otherwise behind) are served by
+ * a separate pool, so replays do not delay the delivery of new events to live processors.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+@Configuration
+@ConfigurationProperties(prefix = "axoniq.axonserver.tracker-scheduling")
+public class TrackerSchedulingProperties {
+
+    /**
+     * Maximum number of events sent to a caught up tracker (with weight 1) in one run.
+     */
+    private int liveEventsPerRun = 500;
+    /**
+     * Maximum number of events sent to a replaying tracker (with weight 1) before other replaying trackers get their
+     * turn.
+     */
+    private int replayEventsPerRun = 500;
+    /**
+     * Number of threads per context sending events to replaying trackers.
+     */
+    private int replayThreads = 1;
+    /**
+     * Weights per processor name. A tracker with weight n may send n times the number of events per run. Processors
+     * that are not listed have weight 1.
+     */
+    private Map<String, Integer> weights = new HashMap<>();
+
+    public int getLiveEventsPerRun() {
+        return liveEventsPerRun;
+    }
+
+    public void setLiveEventsPerRun(int liveEventsPerRun) {
+        this.liveEventsPerRun = liveEventsPerRun;
+    }
+
+    public int getReplayEventsPerRun() {
+        return replayEventsPerRun;
+    }
+
+    public void setReplayEventsPerRun(int replayEventsPerRun) {
+        this.replayEventsPerRun = replayEventsPerRun;
+    }
+
+    public int getReplayThreads() {
+        return replayThreads;
+    }
+
+    public void setReplayThreads(int replayThreads) {
+        this.replayThreads = replayThreads;
+    }
+
+    public Map<String, Integer> getWeights() {
+        return weights;
+    }
+
+    public void setWeights(Map<String, Integer> weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Returns the weight for a processor, at least 1.
+     *
+     * @param processor the name of the processor
+     * @return the weight of the processor
+     */
+    public int weight(String processor) {
+        Integer weight = processor == null ? null : weights.get(processor);
+        return weight == null ? 1 : Math.max(1, weight);
+    }
+}
@@ -12,8 +12,14 @@ package io.axoniq.axonserver.localstorage;
 import io.axoniq.axonserver.exception.ErrorCode;
 import io.axoniq.axonserver.exception.MessagingPlatformException;
 import io.axoniq.axonserver.grpc.event.PayloadDescription;
+import io.axoniq.axonserver.metric.BaseMetricName;
+import io.axoniq.axonserver.metric.DefaultMetricCollector;
+import io.axoniq.axonserver.metric.MeterFactory;
 import io.axoniq.axonserver.util.StreamObserverUtils;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.util.CloseableIterator;
@@ -24,80 +30,139 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-
 /**
  * Manages all tracking event processors for a single context.
+ * <p>
+ * Trackers are in one of two lanes. Trackers that have caught up with the head of the event store are in the live
+ * lane, they are served by a single thread that is woken up when new events are stored or when a tracker receives new
+ * permits. Trackers that are behind (replaying, or new trackers) are in the replay lane, each of these trackers is
+ * scheduled separately on the replay pool and sends a limited number of events, proportional to its weight, before
+ * it is scheduled again. A tracker moves to the live lane when it has sent all events, and back to the replay lane
+ * when it falls behind.
  *
  * @author Marc Gathier
  * @since 4.1.2
  */
 public class TrackingEventProcessorManager {
 
-    private static final int MAX_EVENTS_PER_RUN = 500;
+    /**
+     * Minimum number of blacklisted events to skip before the tracker opens a new iterator to skip these events.
+     */
+    private static final int MIN_SKIP = 256;
     private static final Logger logger = LoggerFactory.getLogger(TrackingEventProcessorManager.class);
 
-    private final ScheduledExecutorService scheduledExecutorService;
+    private final ExecutorService executorService;
+    private final ExecutorService replayExecutorService;
     private final Set<EventTracker> eventTrackerSet = ConcurrentHashMap.newKeySet();
+    private final Set<EventTracker> liveTrackers = ConcurrentHashMap.newKeySet();
     private final AtomicBoolean replicationRunning = new AtomicBoolean();
+    private final AtomicBoolean wakeUpRequested = new AtomicBoolean();
+    /**
+     * Time of the first wake-up request that has not been handled by a run of the live lane yet, 0 if there is none.
+     */
+    private final AtomicLong wakeUpRequestedAt = new AtomicLong();
+    private final TrackerSchedulingProperties scheduling;
+    private final MeterFactory meterFactory;
     private final String context;
     private final Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder;
+    private final BiFunction<Long, Set<PayloadDescription>, Long> nextCandidateToken;
     private final int blacklistedSendAfter;
+    private final SharedEventTail sharedTail;
 
     /**
-     * Constructor for {@link TrackingEventProcessorManager}.
+     * Creates a builder for a {@link TrackingEventProcessorManager} that reads events from the given storage engine.
      *
-     * @param eventStorageEngine   the event storage engine
-     * @param blacklistedSendAfter max number of ignored events before sending next event
+     * @param eventStorageEngine the event storage engine
+     * @return the builder
+     */
+    public static Builder builder(EventStorageEngine eventStorageEngine) {
+        return new Builder(eventStorageEngine.getType().getContext(), eventStorageEngine::getGlobalIterator)
+                .nextCandidateToken(eventStorageEngine::nextCandidateToken);
+    }
+
+    /**
+     * Creates a builder for a {@link TrackingEventProcessorManager} for easier testing.
+     *
+     * @param context         the context for the storage engine
+     * @param iteratorBuilder function that creates an event iterator
+     * @return the builder
      */
-    public TrackingEventProcessorManager(EventStorageEngine eventStorageEngine, int blacklistedSendAfter) {
-        this(eventStorageEngine.getType().getContext(), eventStorageEngine::getGlobalIterator, blacklistedSendAfter);
+    static Builder builder(String context, Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder) {
+        return new Builder(context, iteratorBuilder);
     }
 
     /**
-     * Constructor for {@link TrackingEventProcessorManager} for easier testing.
+     * Constructor for {@link TrackingEventProcessorManager}, use {@link #builder(EventStorageEngine)} to create an
+     * instance.
      *
      * @param context              the context for the storage engine
      * @param iteratorBuilder      function that creates an event iterator
+     * @param nextCandidateToken   function that finds the next token that may refer to an event that is not
+     *                             blacklisted
      * @param blacklistedSendAfter max number of ignored events before sending next event
+     * @param sharedTailSize       number of recent events kept in memory for trackers that are caught up, 0 to let
+     *                             each tracker read the events from the event store
+     * @param scheduling           settings for scheduling the trackers
+     * @param meterFactory         factory to create metrics meters
      */
     TrackingEventProcessorManager(String context,
                                   Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder,
-                                  int blacklistedSendAfter) {
+                                  BiFunction<Long, Set<PayloadDescription>, Long> nextCandidateToken,
+                                  int blacklistedSendAfter,
+                                  int sharedTailSize,
+                                  TrackerSchedulingProperties scheduling,
+                                  MeterFactory meterFactory) {
         this.context = context;
         this.iteratorBuilder = iteratorBuilder;
-        // Use 2 threads (one to send events and one to avoid queuing of reschedules.
-        this.scheduledExecutorService = Executors.newScheduledThreadPool(2, new CustomizableThreadFactory(
+        this.nextCandidateToken = nextCandidateToken;
+        this.executorService = Executors.newSingleThreadExecutor(new CustomizableThreadFactory(
                 context + "-trackers-"));
+        this.replayExecutorService = Executors.newFixedThreadPool(Math.max(1, scheduling.getReplayThreads()),
+                                                                  new CustomizableThreadFactory(
+                                                                          context + "-replaying-trackers-"));
+        this.scheduling = scheduling;
+        this.meterFactory = meterFactory;
         this.blacklistedSendAfter = blacklistedSendAfter;
+        this.sharedTail = sharedTailSize > 0 ? new SharedEventTail(sharedTailSize, iteratorBuilder) : null;
     }
 
     /**
-     * Send events to all tracking event processors until there are no new events or no tracking event processors ready
-     * to receive events. If there are tracking event processors left after processing one run, it reschedules to try
-     * again after 100ms. Only one instance of this operation will run.
+     * Send events to all tracking event processors in the live lane until there are no new events or no tracking event
+     * processors ready to receive events. Runs again when a wake-up is requested while it is running, so no new events
+     * or permits are missed. Only one instance of this operation will run. Trackers that have fallen behind are moved
+     * to the replay lane.
      */
     private void sendEvents() {
-        if (!replicationRunning.compareAndSet(false, true)) {
-            // it's fine, replication is already in progress
-            return;
-        }
         try {
-            int runsWithoutChanges = 0;
             List<EventTracker> failedReplicators = new ArrayList<>();
-            while (runsWithoutChanges < 3) {
-                int sent = 0;
+            int sent;
+            do {
+                wakeUpRequested.set(false);
+                long wokenUpAt = wakeUpRequestedAt.getAndSet(0);
+                sent = 0;
                 failedReplicators.clear();
-                for (EventTracker eventTracker : eventTrackerSet) {
+                for (EventTracker eventTracker : liveTrackers) {
                     try {
-                        sent += eventTracker.sendNext();
+                        int count = eventTracker.sendNext(eventTracker.liveEventsPerRun());
+                        if (count > 0 && wokenUpAt != 0) {
+                            eventTracker.queueDelay.record(System.nanoTime() - wokenUpAt, TimeUnit.NANOSECONDS);
+                        }
+                        if (eventTracker.behind(count)) {
+                            liveTrackers.remove(eventTracker);
+                            eventTracker.replaying = true;
+                            eventTracker.wakeUp();
+                        }
+                        sent += count;
                     } catch (Throwable ex) {
                         failedReplicators.add(eventTracker);
                     }
@@ -106,29 +171,25 @@ public class TrackingEventProcessorManager {
                     logger.debug("{}: removing {} replicators",
                                  context,
                                  failedReplicators.size());
+                    liveTrackers.removeAll(failedReplicators);
                     eventTrackerSet.removeAll(failedReplicators);
                     logger.debug("{}: {} replicators remaining",
                                  context,
                                  eventTrackerSet.size());
                 }
-
-                if (sent == 0) {
-                    runsWithoutChanges++;
-                } else {
-                    runsWithoutChanges = 0;
-                }
-            }
+            } while (sent > 0 || wakeUpRequested.get());
         } finally {
-            replicationRunning.set(false);
-            if (!eventTrackerSet.isEmpty()) {
-                scheduledExecutorService.schedule(this::sendEvents,
-                                                  100,
-                                                  MILLISECONDS);
+            if (sharedTail != null && liveTrackers.isEmpty()) {
+                sharedTail.close();
             }
+            replicationRunning.set(false);
+        }
+        if (wakeUpRequested.get()) {
+            // wake-up requested after the last check, but before the operation was marked as not running
+            reschedule();
         }
     }
 
-
     /**
      * Creates a new event tracker.
      *
@@ -140,15 +201,40 @@ public class TrackingEventProcessorManager {
      */
     public EventTracker createEventTracker(long trackingToken, String clientId, boolean forceReadingFromLeader,
                                     StreamObserver<SerializedEventWithToken> eventStream) {
-        return new EventTracker(trackingToken, clientId, forceReadingFromLeader, eventStream);
+        return createEventTracker(trackingToken, clientId, "", forceReadingFromLeader, eventStream);
     }
 
     /**
-     * Starts the sendEvents operation if it is not running.
+     * Creates a new event tracker.
+     *
+     * @param trackingToken          the tracking token to start tracking events from
+     * @param clientId               the id of the client
+     * @param processor              the name of the tracking event processor, determines the weight of the tracker
+     * @param forceReadingFromLeader whether reading events from leader is forced
+     * @param eventStream            the output stream
+     * @return an EventTracker
+     */
+    public EventTracker createEventTracker(long trackingToken, String clientId, String processor,
+                                           boolean forceReadingFromLeader,
+                                           StreamObserver<SerializedEventWithToken> eventStream) {
+        return new EventTracker(trackingToken, clientId, processor, forceReadingFromLeader, eventStream);
+    }
+
+    /**
+     * Wakes up the tracking event processors, to be called when new events are stored or when a tracking event
+     * processor may be able to send more events. Starts the sendEvents operation if it is not running, otherwise the
+     * running operation will do another run.
      */
     public void reschedule() {
-        if (!replicationRunning.get()) {
-            this.scheduledExecutorService.execute(this::sendEvents);
+        wakeUpRequestedAt.compareAndSet(0, System.nanoTime());
+        wakeUpRequested.set(true);
+        if (replicationRunning.compareAndSet(false, true)) {
+            try {
+                executorService.execute(this::sendEvents);
+            } catch (RejectedExecutionException ex) {
+                // manager is closed
+                replicationRunning.set(false);
+            }
         }
     }
 
@@ -181,7 +267,12 @@ public class TrackingEventProcessorManager {
      */
     public void close() {
         stopAll();
-        scheduledExecutorService.shutdown();
+        executorService.shutdown();
+        replayExecutorService.shutdown();
+        if (sharedTail != null) {
+            sharedTail.close();
+        }
+        meterFactory.remove(BaseMetricName.AXON_TRACKER_QUEUE_DELAY, MeterFactory.CONTEXT, context);
     }
 
     /**
@@ -204,38 +295,125 @@ public class TrackingEventProcessorManager {
         private final StreamObserver<SerializedEventWithToken> eventStream;
         private final String client;
         private volatile CloseableIterator<SerializedEventWithToken> eventIterator;
+        /**
+         * Set when the tracker has caught up with the head of the event store, from then on it reads from the shared
+         * tail as long as its next event is in the shared tail.
+         */
+        private boolean readingSharedTail;
         private volatile boolean running = true;
         private final Set<PayloadDescription> blacklistedTypes = new CopyOnWriteArraySet<>();
         private volatile int force = blacklistedSendAfter;
+        private long nextSkipCheck;
         private final boolean forceReadingFromLeader;
+        private final int weight;
+        private final Timer queueDelay;
+        /**
+         * Set while the tracker is in the replay lane.
+         */
+        private volatile boolean replaying = true;
+        /**
+         * Set while a task to send events for this tracker is scheduled or running on the replay pool.
+         */
+        private final AtomicBoolean replayScheduled = new AtomicBoolean();
+        private volatile long replayScheduledAt;
+        /**
+         * Set when the last run stopped because there were no more events for this tracker.
+         */
+        private boolean caughtUp;
 
-        private EventTracker(long trackingToken, String clientId, boolean forceReadingFromLeader,
+        private EventTracker(long trackingToken, String clientId, String processor, boolean forceReadingFromLeader,
                              StreamObserver<SerializedEventWithToken> eventStream) {
             client = clientId;
             lastPermitTimestamp = new AtomicLong(System.currentTimeMillis());
             nextToken = new AtomicLong(trackingToken);
             this.eventStream = eventStream;
             this.forceReadingFromLeader = forceReadingFromLeader;
+            this.weight = scheduling.weight(processor);
+            this.queueDelay = meterFactory.timer(BaseMetricName.AXON_TRACKER_QUEUE_DELAY,
+                                                 Tags.of(MeterFactory.CONTEXT, context,
+                                                         "processor", processor == null ? "" : processor));
+        }
+
+        private int liveEventsPerRun() {
+            return Math.max(1, scheduling.getLiveEventsPerRun()) * weight;
+        }
+
+        private int replayEventsPerRun() {
+            return Math.max(1, scheduling.getReplayEventsPerRun()) * weight;
+        }
+
+        /**
+         * A tracker in the live lane has fallen behind when it could send a full run of events from its own iterator.
+         */
+        private boolean behind(int count) {
+            return !readingSharedTail && !caughtUp && count >= liveEventsPerRun();
+        }
+
+        /**
+         * Wakes up the lane the tracker is in. Trackers in the replay lane are only scheduled once they are started.
+         */
+        private void wakeUp() {
+            if (!replaying) {
+                reschedule();
+                return;
+            }
+            if (eventTrackerSet.contains(this) && replayScheduled.compareAndSet(false, true)) {
+                replayScheduledAt = System.nanoTime();
+                try {
+                    replayExecutorService.execute(this::replay);
+                } catch (RejectedExecutionException ex) {
+                    // manager is closed
+                    replayScheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * Sends a run of events to a tracker in the replay lane. Moves the tracker to the live lane when it has sent all
+         * events, or schedules the next run if it can send more events.
+         */
+        private void replay() {
+            if (replaying) {
+                queueDelay.record(System.nanoTime() - replayScheduledAt, TimeUnit.NANOSECONDS);
+                try {
+                    sendNext(replayEventsPerRun());
+                } catch (Throwable ex) {
+                    logger.debug("{}: removing replaying tracker for {}", context, client);
+                    eventTrackerSet.remove(this);
+                    return;
+                }
+                if (caughtUp) {
+                    replaying = false;
+                    liveTrackers.add(this);
+                    reschedule();
+                }
+            }
+            replayScheduled.set(false);
+            if (replaying && (permits.get() > 0 || !running)) {
+                wakeUp();
+            }
         }
 
-        private int sendNext() {
+        private int sendNext(int maxEvents) {
             if (!running) {
                 StreamObserverUtils.complete(eventStream);
                 throw new MessagingPlatformException(ErrorCode.OTHER,
                                                      context + ":Tracking event processor stopped for " + client);
             }
-            if (eventIterator == null) {
+            if (eventIterator == null && !readingSharedTail) {
                 eventIterator = iteratorBuilder.apply(nextToken.get());
             }
 
             int count = 0;
+            caughtUp = false;
             try {
+                SerializedEventWithToken next = null;
                 while (running
                         && permits.get() > 0
-                        && count < MAX_EVENTS_PER_RUN
-                        && eventIterator.hasNext()
+                        && count < maxEventsPerRun(maxEvents)
+                        && (next = nextEvent()) != null
                 ) {
-                    SerializedEventWithToken next = eventIterator.next();
+                    nextToken.set(next.getToken() + 1);
                     if( !blacklisted(next)) {
                         eventStream.onNext(next);
                         if (permits.decrementAndGet() == 0) {
@@ -244,9 +422,11 @@ public class TrackingEventProcessorManager {
                         force = blacklistedSendAfter;
                     } else {
                         force--;
+                        skipBlacklisted(next.getToken() + 1);
                     }
                     count++;
                 }
+                caughtUp = running && permits.get() > 0 && next == null;
             } catch (IllegalStateException ex) {
                 // closed during iterating events
             } catch (Exception ex) {
@@ -257,6 +437,64 @@ public class TrackingEventProcessorManager {
             return count;
         }
 
+        /**
+         * Trackers reading from the shared tail send at most half of the shared tail per run, so all trackers that
+         * are caught up advance together and stay within the shared tail.
+         */
+        private int maxEventsPerRun(int maxEvents) {
+            return readingSharedTail ? Math.min(maxEvents, Math.max(1, sharedTail.size() / 2)) : maxEvents;
+        }
+
+        /**
+         * Returns the next event for this tracker, or null when there are no new events. Switches to the shared tail
+         * when the tracker's own iterator has reached the head of the event store, and back to its own iterator when
+         * the tracker has fallen behind the events in the shared tail.
+         */
+        private SerializedEventWithToken nextEvent() {
+            if (eventIterator != null) {
+                if (eventIterator.hasNext()) {
+                    return eventIterator.next();
+                }
+                if (sharedTail == null) {
+                    return null;
+                }
+                if (replaying) {
+                    // the shared tail is only used by the live lane
+                    return null;
+                }
+                eventIterator.close();
+                eventIterator = null;
+                readingSharedTail = true;
+            }
+            SerializedEventWithToken next = sharedTail.get(nextToken.get());
+            if (next == null && sharedTail.isBehind(nextToken.get())) {
+                readingSharedTail = false;
+                eventIterator = iteratorBuilder.apply(nextToken.get());
+                return eventIterator.hasNext() ? eventIterator.next() : null;
+            }
+            return next;
+        }
+
+        /**
+         * Checks if the events starting at the given token are all blacklisted, and if so, continues reading after
+         * these events. Never skips more events than allowed before a blacklisted event must be sent anyway.
+         */
+        private void skipBlacklisted(long token) {
+            if (token < nextSkipCheck || eventIterator == null) {
+                return;
+            }
+            long target = Math.min(nextCandidateToken.apply(token, blacklistedTypes), token + force - 1);
+            if (target - token < MIN_SKIP) {
+                nextSkipCheck = token + MIN_SKIP;
+                return;
+            }
+            logger.trace("{}: skipping blacklisted events from {} to {} for {}", context, token, target, client);
+            eventIterator.close();
+            eventIterator = iteratorBuilder.apply(target);
+            nextToken.set(target);
+            force -= (int) (target - token);
+        }
+
         private boolean blacklisted(SerializedEventWithToken next) {
             return force > 1 && !blacklistedTypes.isEmpty() && blacklistedTypes.contains(payloadType(next));
         }
@@ -275,7 +513,7 @@ public class TrackingEventProcessorManager {
 
         public void addPermits(int newPermits) {
             permits.addAndGet(newPermits);
-            reschedule();
+            wakeUp();
         }
 
         public void close() {
@@ -284,11 +522,13 @@ public class TrackingEventProcessorManager {
                 eventIterator.close();
                 eventIterator = null;
             }
+            // wake up the sender to remove this tracker
+            wakeUp();
         }
 
         public void start() {
             eventTrackerSet.add(this);
-            reschedule();
+            wakeUp();
         }
 
         public void stop() {
@@ -322,4 +562,84 @@ public class TrackingEventProcessorManager {
             blacklistedTypes.addAll(blacklistList);
         }
     }
+
+    /**
+     * Builder for {@link TrackingEventProcessorManager}. Settings that are not set use the defaults of
+     * {@link TrackerSchedulingProperties}, no shared tail and a meter factory that keeps the meters in memory.
+     */
+    public static class Builder {
+
+        private final String context;
+        private final Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder;
+        private BiFunction<Long, Set<PayloadDescription>, Long> nextCandidateToken = (token, types) -> token;
+        private int blacklistedSendAfter;
+        private int sharedTailSize;
+        private TrackerSchedulingProperties scheduling = new TrackerSchedulingProperties();
+        private MeterFactory meterFactory;
+
+        private Builder(String context,
+                        Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder) {
+            this.context = context;
+            this.iteratorBuilder = iteratorBuilder;
+        }
+
+        /**
+         * @param nextCandidateToken function that finds the next token that may refer to an event that is not
+         *                           blacklisted
+         * @return this builder
+         */
+        Builder nextCandidateToken(BiFunction<Long, Set<PayloadDescription>, Long> nextCandidateToken) {
+            this.nextCandidateToken = nextCandidateToken;
+            return this;
+        }
+
+        /**
+         * @param blacklistedSendAfter max number of ignored events before sending next event
+         * @return this builder
+         */
+        public Builder blacklistedSendAfter(int blacklistedSendAfter) {
+            this.blacklistedSendAfter = blacklistedSendAfter;
+            return this;
+        }
+
+        /**
+         * @param sharedTailSize number of recent events kept in memory for trackers that are caught up, 0 to let each
+         *                       tracker read the events from the event store
+         * @return this builder
+         */
+        public Builder sharedTailSize(int sharedTailSize) {
+            this.sharedTailSize = sharedTailSize;
+            return this;
+        }
+
+        /**
+         * @param scheduling settings for scheduling the trackers
+         * @return this builder
+         */
+        public Builder scheduling(TrackerSchedulingProperties scheduling) {
+            this.scheduling = scheduling;
+            return this;
+        }
+
+        /**
+         * @param meterFactory factory to create metrics meters
+         * @return this builder
+         */
+        public Builder meterFactory(MeterFactory meterFactory) {
+            this.meterFactory = meterFactory;
+            return this;
+        }
+
+        public TrackingEventProcessorManager build() {
+            return new TrackingEventProcessorManager(context,
+                                                     iteratorBuilder,
+                                                     nextCandidateToken,
+                                                     blacklistedSendAfter,
+                                                     sharedTailSize,
+                                                     scheduling,
+                                                     meterFactory != null ? meterFactory :
+                                                             new MeterFactory(new SimpleMeterRegistry(),
+                                                                              new DefaultMetricCollector()));
+        }
+    }
 }
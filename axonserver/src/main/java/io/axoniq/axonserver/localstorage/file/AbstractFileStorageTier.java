@@ -46,13 +46,21 @@ import java.util.stream.Stream;
  */
 public abstract class AbstractFileStorageTier implements StorageTier {
 
-    public static final byte TRANSACTION_VERSION = 2;
+    /**
+     * Transaction format version using CRC32 checksums.
+     */
+    public static final byte TRANSACTION_VERSION_CRC32 = 2;
+    /**
+     * Transaction format version using CRC32C checksums.
+     */
+    public static final byte TRANSACTION_VERSION_CRC32C = 3;
+    public static final byte TRANSACTION_VERSION = TRANSACTION_VERSION_CRC32C;
     protected static final Logger logger = LoggerFactory.getLogger(AbstractFileStorageTier.class);
     protected static final int VERSION_BYTES = 1;
     protected static final int FILE_OPTIONS_BYTES = 4;
     protected static final int TX_CHECKSUM_BYTES = 4;
     protected static final byte EVENT_FORMAT_VERSION = 2;
-    private static final int TRANSACTION_LENGTH_BYTES = 4;
+    protected static final int TRANSACTION_LENGTH_BYTES = 4;
     private static final int NUMBER_OF_EVENTS_BYTES = 2;
     protected static final int HEADER_BYTES = TRANSACTION_LENGTH_BYTES + VERSION_BYTES + NUMBER_OF_EVENTS_BYTES;
     protected static final int FILE_HEADER_SIZE = VERSION_BYTES + FILE_OPTIONS_BYTES;
@@ -0,0 +1,61 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the positions of events per aggregate in an active (writable) segment. Entries are added by a single writer
+ * thread, while lookups may happen concurrently from other threads.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public interface ActiveSegmentIndex {
+
+    /**
+     * Returns the positions of the events for an aggregate in the segment.
+     *
+     * @param aggregateId the aggregate identifier
+     * @return the positions of the events for the aggregate, or null when the segment has no events for the aggregate
+     */
+    IndexEntries get(String aggregateId);
+
+    /**
+     * Adds the position of an event for an aggregate.
+     *
+     * @param aggregateId the aggregate identifier
+     * @param indexEntry  position, sequence number and token of the new entry
+     */
+    void add(String aggregateId, IndexEntry indexEntry);
+
+    /**
+     * Adds the positions of a number of events for an aggregate.
+     *
+     * @param aggregateId the aggregate identifier
+     * @param entries     the new entries, in sequence number order
+     */
+    void addAll(String aggregateId, List<IndexEntry> entries);
+
+    /**
+     * Returns the number of aggregates in the index.
+     *
+     * @return the number of aggregates in the index
+     */
+    int size();
+
+    /**
+     * Returns the content of the index as a map, used to write the index when the segment is completed.
+     *
+     * @return map with the positions per aggregate
+     */
+    Map<String, IndexEntries> entries();
+}
@@ -0,0 +1,212 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.axoniq.axonserver.exception.ErrorCode;
+import io.axoniq.axonserver.exception.MessagingPlatformException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bloom filter where all bits for a key are in a single block of 512 bits (one cache line), so a lookup reads one
+ * block only. The filter is stored in a file that is memory mapped when the filter is opened, so an opened filter does
+ * not use heap space.
+ * <p>
+ * Layout:
+ * <pre>
+ *     int magic, int version, int blocks, int hashFunctions
+ *     blocks * 64 bytes
+ * </pre>
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class BlockedBloomFilter {
+
+    private static final int MAGIC = 0x41584246;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_SIZE = BLOCK_BITS / 8;
+    private static final int MAX_HASH_FUNCTIONS = 16;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final String file;
+    private final ByteBuffer buffer;
+    private final int blocks;
+    private final int hashFunctions;
+
+    private BlockedBloomFilter(String file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        this.blocks = buffer.getInt(8);
+        this.hashFunctions = buffer.getInt(12);
+    }
+
+    /**
+     * Creates a new, empty, filter on the heap, sized for the number of keys and the false positive probability.
+     *
+     * @param expectedInsertions the number of keys to add to the filter
+     * @param fpp                the false positive probability
+     * @return the filter
+     */
+    public static BlockedBloomFilter create(int expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        double bitsPerKey = -Math.log(fpp) / (Math.log(2) * Math.log(2));
+        long bits = (long) Math.ceil(n * bitsPerKey);
+        long blocks = (bits + BLOCK_BITS - 1) / BLOCK_BITS;
+        if (HEADER_SIZE + blocks * BLOCK_SIZE > Integer.MAX_VALUE) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR,
+                                                 "Bloom filter too large for " + expectedInsertions + " keys");
+        }
+        int hashFunctions = (int) Math.max(1, Math.min(MAX_HASH_FUNCTIONS, Math.round(bitsPerKey * Math.log(2))));
+        ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_SIZE + blocks * BLOCK_SIZE));
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, (int) blocks);
+        buffer.putInt(12, hashFunctions);
+        return new BlockedBloomFilter(null, buffer);
+    }
+
+    /**
+     * Checks if the given file contains a filter in this format.
+     *
+     * @param path the file
+     * @return true if the file starts with the header for this format
+     */
+    public static boolean isBlockedBloomFilter(Path path) {
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
+            return raf.length() >= HEADER_SIZE && raf.readInt() == MAGIC;
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR, path + ": failed to read bloom filter", e);
+        }
+    }
+
+    /**
+     * Opens a filter from a file. The file is memory mapped.
+     *
+     * @param path the file
+     * @return the filter
+     */
+    public static BlockedBloomFilter open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.capacity() != HEADER_SIZE + (long) buffer.getInt(8) * BLOCK_SIZE) {
+                throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR, path + ": invalid bloom filter");
+            }
+            return new BlockedBloomFilter(path.toString(), buffer);
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR, path + ": failed to open bloom filter", e);
+        }
+    }
+
+    /**
+     * Writes the filter to a file.
+     *
+     * @param path the file
+     */
+    public void write(Path path) {
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer source = buffer.duplicate();
+            source.clear();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR, path + ": failed to write bloom filter", e);
+        }
+    }
+
+    /**
+     * Adds a key to the filter. Only allowed on filters that are created, not on filters opened from a file.
+     *
+     * @param key the key to add
+     */
+    public void put(String key) {
+        HashCode hashCode = HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8);
+        long hash1 = hashCode.asLong();
+        long hash2 = hash2(hashCode);
+        int blockOffset = blockOffset(hash1);
+        for (int i = 0; i < hashFunctions; i++) {
+            int bit = bit(hash1, hash2, i);
+            int index = blockOffset + (bit >>> 6) * Long.BYTES;
+            buffer.putLong(index, buffer.getLong(index) | (1L << bit));
+        }
+    }
+
+    /**
+     * Checks if the key may have been added to the filter.
+     *
+     * @param key the key to check
+     * @return false if the key is definitely not in the filter
+     */
+    public boolean mightContain(String key) {
+        HashCode hashCode = HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8);
+        long hash1 = hashCode.asLong();
+        long hash2 = hash2(hashCode);
+        int blockOffset = blockOffset(hash1);
+        for (int i = 0; i < hashFunctions; i++) {
+            int bit = bit(hash1, hash2, i);
+            if ((buffer.getLong(blockOffset + (bit >>> 6) * Long.BYTES) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the filter is memory mapped
+     */
+    public boolean isMapped() {
+        return buffer.isDirect();
+    }
+
+    /**
+     * Releases the buffer. When {@code forceClean} is set, a memory mapped buffer is unmapped immediately, otherwise
+     * the buffer is released by the garbage collector.
+     *
+     * @param forceClean unmap the file immediately
+     */
+    public void close(boolean forceClean) {
+        if (forceClean && buffer.isDirect()) {
+            CleanUtils.cleanDirectBuffer(buffer, () -> true, 0, file);
+        }
+    }
+
+    private int blockOffset(long hash1) {
+        return HEADER_SIZE + (int) ((hash1 >>> 1) % blocks) * BLOCK_SIZE;
+    }
+
+    private static long hash2(HashCode hashCode) {
+        byte[] bytes = hashCode.asBytes();
+        long value = 0;
+        for (int i = 15; i >= 8; i--) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value | 1;
+    }
+
+    private static int bit(long hash1, long hash2, int i) {
+        return (int) ((hash1 + (i + 1) * hash2) >>> 55);
+    }
+}
@@ -14,6 +14,7 @@ import io.axoniq.axonserver.localstorage.transformation.EventTransformer;
 import io.axoniq.axonserver.localstorage.transformation.EventTransformerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,6 +37,7 @@ public class ByteBufferEventSource implements EventSource {
     private final AtomicBoolean closed = new AtomicBoolean();
     private final int version;
     private final long segment;
+    private final TransactionPositionIndex positionIndex;
 
     public ByteBufferEventSource(String path, ByteBuffer buffer,
                                  long segment, int version,
@@ -51,12 +53,14 @@ public class ByteBufferEventSource implements EventSource {
         this.main = true;
         this.onClose = null;
         this.cleanerHack = storageProperties.isCleanRequired();
+        this.positionIndex = null;
     }
 
     protected ByteBufferEventSource(String path, ByteBuffer buffer,
                                     long segment, int version,
                                     EventTransformer eventTransformer,
-                                    boolean cleanerHack, Runnable onClose) {
+                                    boolean cleanerHack, TransactionPositionIndex positionIndex,
+                                    Runnable onClose) {
         this.path = path;
         this.segment = segment;
         this.version = version;
@@ -65,12 +69,13 @@ public class ByteBufferEventSource implements EventSource {
         this.onClose = onClose;
         this.main = false;
         this.cleanerHack = cleanerHack;
+        this.positionIndex = positionIndex;
     }
 
     protected ByteBufferEventSource(String path, ByteBuffer buffer,
                                     long segment, int version,
                                     EventTransformer eventTransformer,
-                                    boolean cleanerHack) {
+                                    boolean cleanerHack, TransactionPositionIndex positionIndex) {
         this.path = path;
         this.segment = segment;
         this.version = version;
@@ -79,6 +84,7 @@ public class ByteBufferEventSource implements EventSource {
         this.onClose = null;
         this.main = true;
         this.cleanerHack = cleanerHack;
+        this.positionIndex = positionIndex;
     }
 
     public SerializedEvent readEvent() {
@@ -96,9 +102,27 @@ public class ByteBufferEventSource implements EventSource {
                                          version,
                                          eventTransformer,
                                          cleanerHack,
+                                         positionIndex,
                                          duplicatesCount::decrementAndGet);
     }
 
+    /**
+     * Finds the last indexed transaction that starts at or before the given token.
+     *
+     * @param token the token to search for
+     * @return entry with the token and position of the transaction or null when there is no such transaction
+     */
+    public Map.Entry<Long, Integer> floorTransaction(long token) {
+        return positionIndex == null ? null : positionIndex.floor(token);
+    }
+
+    /**
+     * @return the transaction position index for this segment, null if there is no index
+     */
+    public TransactionPositionIndex positionIndex() {
+        return positionIndex;
+    }
+
     public int version() {
         return version;
     }
@@ -11,9 +11,12 @@ package io.axoniq.axonserver.localstorage.file;
 
 import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
 
 /**
- * Calculates the CRC32 checksum of a given {@link ByteBuffer}, without loading the full content in memory.
+ * Calculates the checksum of a given {@link ByteBuffer}, without loading the full content in memory. Transactions with
+ * version {@link AbstractFileStorageTier#TRANSACTION_VERSION_CRC32C} or higher use CRC32C checksums, older
+ * transactions use CRC32 checksums.
  *
  * @author Marc Gathier
  * @author Sara Pellegrini
@@ -21,27 +24,44 @@ import java.util.zip.CRC32;
  */
 public class Checksum {
 
-    private final CRC32 crc32;
+    private final java.util.zip.Checksum crc;
 
     /**
-     * Constructs an instance that updates the checksum value loading data in chucks of 4 MBs.
+     * Constructs an instance that calculates a CRC32 checksum.
      */
     public Checksum() {
-        crc32 = new CRC32();
-        crc32.reset();
+        this(new CRC32());
+    }
+
+    private Checksum(java.util.zip.Checksum crc) {
+        this.crc = crc;
+        crc.reset();
+    }
+
+    /**
+     * Creates an instance that calculates the checksum used for transactions with the given transaction version.
+     *
+     * @param transactionVersion the version of the transaction
+     * @return the checksum calculator
+     */
+    public static Checksum forTransactionVersion(byte transactionVersion) {
+        if (transactionVersion >= AbstractFileStorageTier.TRANSACTION_VERSION_CRC32C) {
+            return new Checksum(new CRC32C());
+        }
+        return new Checksum(new CRC32());
     }
 
     public int get() {
-        return (int) crc32.getValue();
+        return (int) crc.getValue();
     }
 
     public Checksum update(byte[] bytes) {
-        crc32.update(bytes);
+        crc.update(bytes, 0, bytes.length);
         return this;
     }
 
     /**
-     * Update the checksum with the specified data.
+     * Update the checksum with the specified data. Does not change the position or limit of the buffer.
      *
      * @param buffer   the buffer that provides the data to be used to calculate the checksum
      * @param position the initial position in the buffer of the data to be used to calculate the checksum
@@ -56,9 +76,10 @@ public class Checksum {
             throw new IllegalArgumentException("The ByteBuffer is smaller than expected");
         }
 
-        for( int i = 0 ; i < size ; i++) {
-            crc32.update( buffer.get(position+i));
-        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(position + size);
+        slice.position(position);
+        crc.update(slice);
 
         return this;
     }
@@ -14,6 +14,7 @@ import io.axoniq.axonserver.grpc.event.Event;
 import io.axoniq.axonserver.grpc.event.EventWithToken;
 import io.axoniq.axonserver.localstorage.SerializedEvent;
 import io.axoniq.axonserver.localstorage.SerializedTransactionWithToken;
+import io.axoniq.axonserver.localstorage.transformation.Compression;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
@@ -63,9 +64,11 @@ class DefaultSegmentTransformer implements SegmentTransformer {
                                                                       new FileVersion(segment, newVersion));
                 FileUtils.delete(tempFile);
                 tempFileRef.set(tempFile);
+                // the segment writer stores the events uncompressed
                 SegmentWriter segmentWriter = new StreamSegmentWriter(tempFile,
                                                                       segment,
-                                                                      storageProperties.getFlags());
+                                                                      storageProperties.getFlags()
+                                                                              & ~Compression.MASK);
                 segmentWriterRef.set(segmentWriter);
                 transactionIteratorRef.set(transactionIteratorSupplier.get());
                 sink.success();
@@ -29,7 +29,9 @@ public class EmbeddedDBProperties {
 
     public EmbeddedDBProperties(SystemInfoProvider systemInfoProvider) {
         event = new StorageProperties(systemInfoProvider);
-        snapshot = new StorageProperties(systemInfoProvider, ".snapshots", ".sindex", ".sbloom", ".snindex", ".sxref");
+        snapshot = new StorageProperties(systemInfoProvider, ".snapshots", ".sindex", ".sbloom", ".snindex", ".sxref",
+                                         ".ssummary", ".spindex",
+                                         ".sptypes");
     }
 
     public StorageProperties getEvent() {
@@ -15,6 +15,7 @@ import io.axoniq.axonserver.localstorage.SerializedEventWithToken;
 
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 
 /**
  * @author Marc Gathier
@@ -34,6 +35,11 @@ public class EventByteBufferIterator extends EventIterator {
 
     private void forwardTo(long firstSequence) {
             reader.position(5);
+            Map.Entry<Long, Integer> transaction = eventSource.floorTransaction(firstSequence);
+            if (transaction != null && transaction.getKey() > currentSequenceNumber) {
+                reader.position(transaction.getValue());
+                currentSequenceNumber = transaction.getKey();
+            }
             while (firstSequence > currentSequenceNumber) {
 
                 int size = reader.getInt();
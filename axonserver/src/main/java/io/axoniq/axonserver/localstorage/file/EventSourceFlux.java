@@ -5,6 +5,7 @@ import io.axoniq.axonserver.localstorage.SerializedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
 import java.util.Optional;
@@ -61,19 +62,22 @@ public class EventSourceFlux implements Supplier<Flux<SerializedEvent>> {
 
 
     /**
-     * Returns the {@link Flux<SerializedEvent>} that provides the events in the specified positions.
+     * Returns the {@link Flux<SerializedEvent>} that provides the events in the specified positions. The event source
+     * is opened on the data fetcher scheduler, so multiple segments can be opened and read concurrently.
      *
      * @return the {@link Flux<SerializedEvent>} that provides the events in the specified positions.
      */
     @Override
     public Flux<SerializedEvent> get() {
+        Scheduler dataFetcherScheduler = Schedulers.fromExecutorService(dataFetcherSchedulerProvider.get());
         return Flux.using(this::openEventSource,
                           eventSource -> Flux.just(eventSource)
                                              .flatMap(es -> Flux.fromIterable(indexEntries.positions())
                                                                 .limitRate(prefetch, prefetch / 2)
-                                                                .publishOn(Schedulers.fromExecutorService(dataFetcherSchedulerProvider.get()))
+                                                                .publishOn(dataFetcherScheduler)
                                                                 .map(es::readEvent))
-                , EventSource::close);
+                , EventSource::close)
+                   .subscribeOn(dataFetcherScheduler);
     }
 
     @Nonnull
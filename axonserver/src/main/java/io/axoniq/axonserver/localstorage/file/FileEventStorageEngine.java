@@ -15,6 +15,7 @@ import io.axoniq.axonserver.exception.EventStoreValidationException;
 import io.axoniq.axonserver.exception.MessagingPlatformException;
 import io.axoniq.axonserver.grpc.event.Event;
 import io.axoniq.axonserver.grpc.event.EventWithToken;
+import io.axoniq.axonserver.grpc.event.PayloadDescription;
 import io.axoniq.axonserver.localstorage.EventStorageEngine;
 import io.axoniq.axonserver.localstorage.EventTypeContext;
 import io.axoniq.axonserver.localstorage.QueryOptions;
@@ -68,7 +69,6 @@ public class FileEventStorageEngine implements EventStorageEngine {
 
     protected static final Logger logger = LoggerFactory.getLogger(FileEventStorageEngine.class);
     public static final int MAX_EVENTS_PER_BLOCK = Short.MAX_VALUE;
-    private static final int PREFETCH_SEGMENT_FILES = 2;
 
     private final WritableFileStorageTier head;
     protected final Set<Runnable> closeListeners = new CopyOnWriteArraySet<>();
@@ -124,8 +124,10 @@ public class FileEventStorageEngine implements EventStorageEngine {
 
     public void validate(int maxSegments) {
         Set<Long> segments = head.allSegments().limit(maxSegments).collect(Collectors.toSet());
-        List<ValidationResult> resultList = segments.parallelStream().map(this::validateSegment).collect(
-                Collectors.toList());
+        List<ValidationResult> resultList = new ArrayList<>(
+                new ParallelSegmentProcessor(context + "-validate",
+                                             storagePropertiesSupplier.get().getInitializationThreads())
+                        .process(segments, this::validateSegment));
         resultList.stream().filter(validationResult -> !validationResult.isValid()).findFirst().ifPresent(
                 validationResult -> {
                     throw new MessagingPlatformException(ErrorCode.VALIDATION_FAILED, validationResult.getMessage());
@@ -177,6 +179,31 @@ public class FileEventStorageEngine implements EventStorageEngine {
     @Override
     public Flux<SerializedEvent> eventsPerAggregate(String aggregateId, long firstSequence,
                                                     long lastSequence, long minToken) {
+        return Flux.defer(() -> {
+                       RecentEventsCache.CachedEvents cachedEvents = head.recentEvents(aggregateId,
+                                                                                       firstSequence,
+                                                                                       lastSequence);
+                       if (cachedEvents == null) {
+                           return storedEventsPerAggregate(aggregateId, firstSequence, lastSequence, minToken);
+                       }
+                       Flux<SerializedEvent> recentEvents = Flux.fromIterable(cachedEvents.events());
+                       if (cachedEvents.firstSequenceNumber() <= firstSequence) {
+                           return recentEvents;
+                       }
+                       return storedEventsPerAggregate(aggregateId,
+                                                       firstSequence,
+                                                       cachedEvents.firstSequenceNumber(),
+                                                       minToken).concatWith(recentEvents);
+                   })
+                   .name("event_stream")
+                   .tag("context", context.getContext())
+                   .tag("stream", "aggregate_events")
+                   .tag("origin", "event_sources")
+                   .metrics();
+    }
+
+    private Flux<SerializedEvent> storedEventsPerAggregate(String aggregateId, long firstSequence,
+                                                           long lastSequence, long minToken) {
         return Flux.defer(() -> {
                        logger.debug("Reading index entries for aggregate {} started.", aggregateId);
 
@@ -192,15 +219,11 @@ public class FileEventStorageEngine implements EventStorageEngine {
                    }).flatMapSequential(e -> eventsForPositions(e.getKey(),
                                                                 e.getValue(),
                                                                 storagePropertiesSupplier.get().getEventsPerSegmentPrefetch()),
-                                        PREFETCH_SEGMENT_FILES,
+                                        Math.max(1, storagePropertiesSupplier.get()
+                                                                    .getAggregateReadSegmentConcurrency()),
                                         storagePropertiesSupplier.get().getEventsPerSegmentPrefetch())
                    .skipUntil(se -> se.getAggregateSequenceNumber() >= firstSequence)
-                   .takeWhile(se -> se.getAggregateSequenceNumber() < lastSequence)
-                   .name("event_stream")
-                   .tag("context", context.getContext())
-                   .tag("stream", "aggregate_events")
-                   .tag("origin", "event_sources")
-                   .metrics();
+                   .takeWhile(se -> se.getAggregateSequenceNumber() < lastSequence);
     }
 
     private Flux<SerializedEvent> eventsForPositions(FileVersion segment, IndexEntries indexEntries, int prefetch) {
@@ -220,17 +243,27 @@ public class FileEventStorageEngine implements EventStorageEngine {
     @Override
     public void processEventsPerAggregate(String aggregateId, long firstSequenceNumber, long lastSequenceNumber,
                                           long minToken, Consumer<SerializedEvent> eventConsumer) {
-        SortedMap<FileVersion, IndexEntries> positionInfos = indexManager.lookupAggregate(aggregateId,
+        RecentEventsCache.CachedEvents cachedEvents = head.recentEvents(aggregateId,
+                                                                        firstSequenceNumber,
+                                                                        lastSequenceNumber);
+        long lastStoredSequenceNumber = cachedEvents == null ? lastSequenceNumber :
+                cachedEvents.firstSequenceNumber();
+        if (firstSequenceNumber < lastStoredSequenceNumber) {
+            SortedMap<FileVersion, IndexEntries> positionInfos = indexManager.lookupAggregate(aggregateId,
+                                                                                              firstSequenceNumber,
+                                                                                              lastStoredSequenceNumber,
+                                                                                              Long.MAX_VALUE,
+                                                                                              minToken);
+            positionInfos.forEach((segment, positionInfo) -> retrieveEventsForAnAggregate(segment,
+                                                                                          positionInfo.positions(),
                                                                                           firstSequenceNumber,
-                                                                                          lastSequenceNumber,
-                                                                                          Long.MAX_VALUE,
-                                                                                          minToken);
-        positionInfos.forEach((segment, positionInfo) -> retrieveEventsForAnAggregate(segment,
-                                                                                      positionInfo.positions(),
-                                                                                      firstSequenceNumber,
-                                                                                      lastSequenceNumber,
-                                                                                      eventConsumer,
-                                                                                      Long.MAX_VALUE));
+                                                                                          lastStoredSequenceNumber,
+                                                                                          eventConsumer,
+                                                                                          Long.MAX_VALUE));
+        }
+        if (cachedEvents != null) {
+            cachedEvents.events().forEach(eventConsumer);
+        }
     }
 
     @Override
@@ -328,40 +361,59 @@ public class FileEventStorageEngine implements EventStorageEngine {
         boolean snapshot = !context.isEvent();
         head.allSegments()
             .filter(s -> s <= queryOptions.getMaxToken())
-            .map(s -> head.eventSource(s).orElse(null))
-            .filter(Objects::nonNull)
-            .anyMatch(eventSource -> {
-                boolean done = false;
-                long minTimestampInSegment = Long.MAX_VALUE;
-                EventInformation eventWithToken;
-                EventIterator iterator = eventSource.createEventIterator();
-                while (!done && iterator.hasNext()) {
-                    eventWithToken = iterator.next();
-                    minTimestampInSegment = Math.min(minTimestampInSegment,
-                                                     eventWithToken.getEvent().getTimestamp());
-                    if (eventWithToken.getToken() > queryOptions.getMaxToken()) {
-                        done = true;
-                    }
-
-                    if (!done && eventWithToken.getToken() >= queryOptions.getMinToken()
-                            && eventWithToken.getEvent().getTimestamp()
-                            >= queryOptions.getMinTimestamp()
-                            && !consumer.test(eventWithToken.asEventWithToken(snapshot))) {
-                        done = true;
-                    }
+            .anyMatch(segment -> {
+                Optional<SegmentSummary> summary = head.summary(segment);
+                if (summary.isPresent() && (summary.get().maxTimestamp() < queryOptions.getMinTimestamp()
+                        || summary.get().lastToken() < queryOptions.getMinToken())) {
+                    // no matching events in this segment or in older segments
+                    return true;
                 }
-                if (queryOptions.getMinToken() > eventSource.segment()
-                        || minTimestampInSegment < queryOptions
-                        .getMinTimestamp()) {
-                    done = true;
-                }
-                iterator.close();
-                eventSource.close();
-
-                return done;
+                return head.eventSource(segment)
+                           .map(eventSource -> query(eventSource, queryOptions, consumer, snapshot))
+                           .orElse(false);
             });
     }
 
+    private boolean query(EventSource eventSource, QueryOptions queryOptions, Predicate<EventWithToken> consumer,
+                          boolean snapshot) {
+        boolean done = false;
+        long minTimestampInSegment = Long.MAX_VALUE;
+        EventInformation eventWithToken;
+        EventIterator iterator = eventSource.createEventIterator();
+        while (!done && iterator.hasNext()) {
+            eventWithToken = iterator.next();
+            minTimestampInSegment = Math.min(minTimestampInSegment,
+                                             eventWithToken.getEvent().getTimestamp());
+            if (eventWithToken.getToken() > queryOptions.getMaxToken()) {
+                done = true;
+            }
+
+            if (!done && eventWithToken.getToken() >= queryOptions.getMinToken()
+                    && eventWithToken.getEvent().getTimestamp()
+                    >= queryOptions.getMinTimestamp()
+                    && !consumer.test(eventWithToken.asEventWithToken(snapshot))) {
+                done = true;
+            }
+        }
+        if (queryOptions.getMinToken() > eventSource.segment()
+                || minTimestampInSegment < queryOptions
+                .getMinTimestamp()) {
+            done = true;
+        }
+        iterator.close();
+        eventSource.close();
+
+        return done;
+    }
+
+    @Override
+    public Stream<AggregateSequence> recentSequenceNumbers(int maxSegments) {
+        if (!context.isEvent()) {
+            return Stream.empty();
+        }
+        return indexManager.recentSequenceNumbers(maxSegments);
+    }
+
     @Override
     public Optional<Long> getLastSequenceNumber(String aggregateIdentifier, SearchHint[] hints) {
         return getLastSequenceNumber(aggregateIdentifier, recentOnly(hints) ?
@@ -606,6 +658,10 @@ public class FileEventStorageEngine implements EventStorageEngine {
         return head.activeSegmentCount();
     }
 
+    public boolean segmentPrepared() {
+        return head.segmentPrepared();
+    }
+
     public void handover(Segment segment, Runnable callback) {
         head.handover(segment, callback);
     }
@@ -668,16 +724,72 @@ public class FileEventStorageEngine implements EventStorageEngine {
     @Override
     public long getTokenAt(long instant) {
         return head.allSegments()
-                   .map(s -> head.eventSource(s).orElse(null))
+                   .map(s -> getTokenAt(s, instant))
                    .filter(Objects::nonNull)
+                   .findFirst()
+                   .orElseGet(this::getFirstToken);
+    }
+
+    private Long getTokenAt(long segment, long instant) {
+        Optional<SegmentSummary> optionalSummary = head.summary(segment);
+        if (!optionalSummary.isPresent()) {
+            return head.eventSource(segment)
+                       .map(es -> {
+                           try (EventIterator iterator = es.createEventIterator(es.segment())) {
+                               return iterator.getTokenAt(instant);
+                           }
+                       })
+                       .orElse(null);
+        }
+
+        SegmentSummary summary = optionalSummary.get();
+        if (summary.eventCount() == 0 || summary.firstTimestamp() > instant) {
+            return null;
+        }
+        if (summary.firstTimestamp() == instant) {
+            return summary.firstToken();
+        }
+        if (summary.maxTimestamp() < instant) {
+            return summary.lastToken() + 1;
+        }
+        return head.eventSource(segment)
                    .map(es -> {
-                       try (EventIterator iterator = es.createEventIterator(es.segment())) {
-                           return iterator.getTokenAt(instant);
+                       try (EventIterator iterator = es.createEventIterator(summary.startTokenFor(instant))) {
+                           while (iterator.hasNext()) {
+                               EventInformation event = iterator.next();
+                               if (event.getEvent().getTimestamp() >= instant) {
+                                   return event.getToken();
+                               }
+                           }
+                           return summary.lastToken() + 1;
                        }
                    })
-                   .filter(Objects::nonNull)
-                   .findFirst()
-                   .orElseGet(this::getFirstToken);
+                   .orElse(null);
+    }
+
+    @Override
+    public long nextCandidateToken(long token, Set<PayloadDescription> excludedPayloadTypes) {
+        if (excludedPayloadTypes.isEmpty()) {
+            return token;
+        }
+        Set<String> excludedKeys = excludedPayloadTypes.stream()
+                                                       .map(p -> PayloadTypeIndex.key(p.getType(), p.getRevision()))
+                                                       .collect(Collectors.toSet());
+        // only skip events that are confirmed, as the payload type index is updated when a transaction is confirmed
+        long limit = getLastToken() + 1;
+        long current = token;
+        while (current < limit) {
+            Optional<PayloadTypeIndex> payloadTypeIndex = head.payloadTypeIndex(getSegmentFor(current));
+            if (!payloadTypeIndex.isPresent()) {
+                break;
+            }
+            long next = payloadTypeIndex.get().nextCandidate(current, excludedKeys);
+            if (next == current) {
+                break;
+            }
+            current = next;
+        }
+        return Math.min(current, limit);
     }
 
     private long getSegmentFor(long token) {
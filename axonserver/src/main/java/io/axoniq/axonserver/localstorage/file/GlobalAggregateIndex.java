@@ -0,0 +1,203 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import io.axoniq.axonserver.exception.ErrorCode;
+import io.axoniq.axonserver.exception.MessagingPlatformException;
+import org.mapdb.Atomic;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Index over all closed segments of a storage tier that keeps, per aggregate, the last segment containing events for
+ * the aggregate and the last sequence number of the aggregate. This allows the index manager to find the last sequence
+ * number of an aggregate, or to determine that the aggregate does not exist, without checking the bloom filters of
+ * all segments.
+ * <p>
+ * The index is only used when it is complete, i.e. it contains the entries of all closed segments. A missing or
+ * corrupt index file is rebuilt from the segment indexes.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class GlobalAggregateIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(GlobalAggregateIndex.class);
+    private static final String AGGREGATE_MAP = "lastSegment";
+    private static final String COMPLETE = "complete";
+    private static final String LAST_SEGMENT = "lastSegmentIncluded";
+
+    private final String context;
+    private final File file;
+    private DB db;
+    private HTreeMap<String, long[]> lastSegments;
+    private Atomic.Boolean complete;
+    private Atomic.Long lastSegmentIncluded;
+    private volatile boolean ready;
+
+    /**
+     * @param context the context of the storage engine
+     * @param file    the file containing the index
+     */
+    public GlobalAggregateIndex(String context, File file) {
+        this.context = context;
+        this.file = file;
+    }
+
+    /**
+     * Opens the index file. If the file cannot be opened, for instance when it was not closed properly, it is deleted
+     * and a new, incomplete, index is created.
+     */
+    public synchronized void open() {
+        try {
+            doOpen();
+        } catch (Exception ex) {
+            logger.warn("{}: failed to open global index {}, index will be rebuilt", context, file, ex);
+            if (!FileUtils.delete(file)) {
+                throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR,
+                                                     "Failed to delete global index file: " + file);
+            }
+            doOpen();
+        }
+    }
+
+    private void doOpen() {
+        db = DBMaker.fileDB(file)
+                    .fileMmapEnableIfSupported()
+                    .closeOnJvmShutdown()
+                    .make();
+        lastSegments = db.hashMap(AGGREGATE_MAP, Serializer.STRING, Serializer.LONG_ARRAY).createOrOpen();
+        complete = db.atomicBoolean(COMPLETE).createOrOpen();
+        lastSegmentIncluded = db.atomicLong(LAST_SEGMENT, -1).createOrOpen();
+    }
+
+    /**
+     * @return true if the index contains the entries of all closed segments
+     */
+    public boolean isComplete() {
+        return complete.get();
+    }
+
+    /**
+     * @return the highest segment number that was added to the index, -1 if no segments were added
+     */
+    public long lastSegmentIncluded() {
+        return lastSegmentIncluded.get();
+    }
+
+    /**
+     * @return true if the index can be used for lookups
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds the aggregates in a closed segment to the index. Entries for aggregates that already occur in a later
+     * segment are not updated, so segments may be added in any order.
+     *
+     * @param segment               the segment number
+     * @param positionsPerAggregate the index entries per aggregate in the segment
+     */
+    public synchronized void add(long segment, Map<String, IndexEntries> positionsPerAggregate) {
+        positionsPerAggregate.forEach((aggregateId, entries) -> update(segment,
+                                                                       aggregateId,
+                                                                       entries.lastSequenceNumber()));
+        if (segment > lastSegmentIncluded.get()) {
+            lastSegmentIncluded.set(segment);
+        }
+    }
+
+    /**
+     * Adds the aggregates in a closed segment to the index, reading the entries from the segment index.
+     *
+     * @param segment   the segment number
+     * @param aggregates the index entries per aggregate in the segment
+     */
+    public synchronized void add(long segment, Stream<AggregateIndexEntries> aggregates) {
+        aggregates.forEach(entries -> update(segment, entries.aggregateId(), entries.entries().lastSequenceNumber()));
+        if (segment > lastSegmentIncluded.get()) {
+            lastSegmentIncluded.set(segment);
+        }
+    }
+
+    private void update(long segment, String aggregateId, long lastSequenceNumber) {
+        long[] current = lastSegments.get(aggregateId);
+        if (current == null || current[0] <= segment) {
+            lastSegments.put(aggregateId, new long[]{segment, lastSequenceNumber});
+        }
+    }
+
+    /**
+     * Marks the index as complete and usable for lookups.
+     */
+    public synchronized void markComplete() {
+        complete.set(true);
+        db.commit();
+        ready = true;
+        logger.info("{}: global index {} ready, contains {} aggregates", context, file, lastSegments.size());
+    }
+
+    /**
+     * Returns the last segment and last sequence number for an aggregate.
+     *
+     * @param aggregateId the aggregate identifier
+     * @return the last segment and sequence number or null when the aggregate is not in the index
+     */
+    public LastSegment get(String aggregateId) {
+        long[] entry = lastSegments.get(aggregateId);
+        return entry == null ? null : new LastSegment(entry[0], entry[1]);
+    }
+
+    /**
+     * Closes the index file.
+     *
+     * @param delete flag to indicate that the index file should be deleted
+     */
+    public synchronized void close(boolean delete) {
+        ready = false;
+        if (db != null && !db.isClosed()) {
+            db.close();
+        }
+        if (delete) {
+            FileUtils.delete(file);
+        }
+    }
+
+    /**
+     * Last segment and last sequence number for an aggregate.
+     */
+    public static class LastSegment {
+
+        private final long segment;
+        private final long sequenceNumber;
+
+        public LastSegment(long segment, long sequenceNumber) {
+            this.segment = segment;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        public long segment() {
+            return segment;
+        }
+
+        public long sequenceNumber() {
+            return sequenceNumber;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index for an active segment that keeps the positions per aggregate in a {@link ConcurrentHashMap} on the heap.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class HeapActiveSegmentIndex implements ActiveSegmentIndex {
+
+    private final Map<String, IndexEntries> entriesPerAggregate = new ConcurrentHashMap<>();
+
+    @Override
+    public IndexEntries get(String aggregateId) {
+        return entriesPerAggregate.get(aggregateId);
+    }
+
+    @Override
+    public void add(String aggregateId, IndexEntry indexEntry) {
+        entriesPerAggregate.computeIfAbsent(aggregateId, a -> new StandardIndexEntries(indexEntry.getSequenceNumber()))
+                           .add(indexEntry);
+    }
+
+    @Override
+    public void addAll(String aggregateId, List<IndexEntry> entries) {
+        entriesPerAggregate.computeIfAbsent(aggregateId,
+                                            a -> new StandardIndexEntries(entries.get(0).getSequenceNumber()))
+                           .addAll(entries);
+    }
+
+    @Override
+    public int size() {
+        return entriesPerAggregate.size();
+    }
+
+    @Override
+    public Map<String, IndexEntries> entries() {
+        return entriesPerAggregate;
+    }
+}
@@ -51,6 +51,16 @@ public interface IndexEntries {
      */
     List<Integer> positions();
 
+    /**
+     * Returns the position of the event at the given index in the entries.
+     *
+     * @param index the index of the entry
+     * @return the position of the event
+     */
+    default int position(int index) {
+        return positions().get(index);
+    }
+
     /**
      * Returns the last position of an event.
      *
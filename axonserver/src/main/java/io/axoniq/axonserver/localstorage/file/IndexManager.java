@@ -52,6 +52,17 @@ public interface IndexManager {
     }
 
     void complete(FileVersion segment);
+
+    /**
+     * Returns the number of distinct aggregates in an active segment.
+     *
+     * @param segment the first token in the segment
+     * @return the number of aggregates, -1 if unknown
+     */
+    default int activeAggregateCount(long segment) {
+        return -1;
+    }
+
     /**
      * Retrieves the sequence number of the last event for the given aggregate.
      *
@@ -179,5 +190,16 @@ public interface IndexManager {
      */
     Stream<AggregateIndexEntries> latestSequenceNumbers(FileVersion segment);
 
+    /**
+     * Returns the last sequence numbers of the aggregates in the most recent segments, starting with the active
+     * segments. An aggregate that occurs in multiple segments is returned once for each segment.
+     *
+     * @param maxSegments maximum number of segments to read
+     * @return stream of aggregate identifiers and their last sequence number in the segment
+     */
+    default Stream<AggregateSequence> recentSequenceNumbers(int maxSegments) {
+        return Stream.empty();
+    }
+
     void createIndex(FileVersion segment, Map<String, List<IndexEntry>> entries);
 }
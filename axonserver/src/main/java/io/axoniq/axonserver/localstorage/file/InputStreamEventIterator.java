@@ -14,6 +14,7 @@ import io.axoniq.axonserver.exception.MessagingPlatformException;
 import io.axoniq.axonserver.localstorage.SerializedEventWithToken;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * @author Marc Gathier
@@ -35,6 +36,11 @@ public class InputStreamEventIterator extends EventIterator {
     }
 
     private void forwardTo(long firstSequence) throws IOException {
+        Map.Entry<Long, Integer> transaction = eventSource.floorTransaction(firstSequence);
+        if (transaction != null && transaction.getKey() > currentSequenceNumber) {
+            reader.position(transaction.getValue());
+            currentSequenceNumber = transaction.getKey();
+        }
         while (firstSequence > currentSequenceNumber) {
 
             int size = reader.readInt();
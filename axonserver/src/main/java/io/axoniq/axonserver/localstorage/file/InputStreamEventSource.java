@@ -19,6 +19,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * @author Marc Gathier
@@ -31,6 +32,7 @@ public class InputStreamEventSource implements EventSource {
     private final File dataFile;
     private final long segment;
     private final int segmentVersion;
+    private final TransactionPositionIndex positionIndex;
     private volatile boolean closed;
 
 
@@ -38,7 +40,16 @@ public class InputStreamEventSource implements EventSource {
                                   long segment,
                                   int segmentVersion,
                                   EventTransformerFactory eventTransformerFactory) {
+        this(dataFile, segment, segmentVersion, eventTransformerFactory, null);
+    }
+
+    public InputStreamEventSource(File dataFile,
+                                  long segment,
+                                  int segmentVersion,
+                                  EventTransformerFactory eventTransformerFactory,
+                                  TransactionPositionIndex positionIndex) {
         this.dataFile = dataFile;
+        this.positionIndex = positionIndex;
         this.segment = segment;
         this.segmentVersion = segmentVersion;
         try {
@@ -82,6 +93,16 @@ public class InputStreamEventSource implements EventSource {
         return segment;
     }
 
+    /**
+     * Finds the last indexed transaction that starts at or before the given token.
+     *
+     * @param token the token to search for
+     * @return entry with the token and position of the transaction or null when there is no such transaction
+     */
+    public Map.Entry<Long, Integer> floorTransaction(long token) {
+        return positionIndex == null ? null : positionIndex.floor(token);
+    }
+
     public PositionKeepingDataInputStream getStream() {
         return dataInputStream;
     }
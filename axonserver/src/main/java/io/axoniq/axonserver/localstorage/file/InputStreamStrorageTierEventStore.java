@@ -13,6 +13,7 @@ import io.axoniq.axonserver.localstorage.EventTypeContext;
 import io.axoniq.axonserver.localstorage.transformation.EventTransformerFactory;
 import io.axoniq.axonserver.metric.MeterFactory;
 
+import java.io.File;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
@@ -70,8 +71,10 @@ public class InputStreamStrorageTierEventStore extends AbstractFileStorageTier {
 
     @Override
     public boolean removeSegment(long segment, int segmentVersion) {
-        return indexManager.remove(new FileVersion(segment, segmentVersion)) &&
-                FileUtils.delete(dataFile(new FileVersion(segment, segmentVersion)));
+        FileVersion fileVersion = new FileVersion(segment, segmentVersion);
+        return indexManager.remove(fileVersion) &&
+                FileUtils.delete(positionIndexFile(fileVersion)) &&
+                FileUtils.delete(dataFile(fileVersion));
     }
 
 
@@ -96,6 +99,11 @@ public class InputStreamStrorageTierEventStore extends AbstractFileStorageTier {
         return new InputStreamEventSource(dataFile(segment),
                                           segment.segment(),
                                           segment.segmentVersion(),
-                                          eventTransformerFactory);
+                                          eventTransformerFactory,
+                                          TransactionPositionIndex.persisted(positionIndexFile(segment)));
+    }
+
+    private File positionIndexFile(FileVersion segment) {
+        return storagePropertiesSupplier.get().positionIndex(storagePath, segment);
     }
 }
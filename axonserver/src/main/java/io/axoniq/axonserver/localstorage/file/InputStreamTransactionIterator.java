@@ -18,6 +18,7 @@ import io.axoniq.axonserver.localstorage.SerializedTransactionWithToken;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -43,6 +44,11 @@ public class InputStreamTransactionIterator implements TransactionIterator {
     }
 
     private void forwardTo(long firstSequence) throws IOException {
+        Map.Entry<Long, Integer> transaction = eventSource.floorTransaction(firstSequence);
+        if (transaction != null && transaction.getKey() > currentSequenceNumber) {
+            reader.position(transaction.getValue());
+            currentSequenceNumber = transaction.getKey();
+        }
         while (firstSequence > currentSequenceNumber) {
 
             int size = reader.readInt();
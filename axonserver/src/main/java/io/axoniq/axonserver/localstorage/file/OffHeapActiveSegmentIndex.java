@@ -0,0 +1,316 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index for an active segment that keeps the positions per aggregate in direct memory. The index is an open-addressing
+ * hash table with linear probing, mapping the hash of the aggregate identifier to a record containing the identifier,
+ * the first sequence number and a chain of blocks with the positions of the events.
+ * <p>
+ * Records and blocks are allocated in chunks of direct memory and never move. There is a single writer (all updates
+ * are synchronized), readers do not lock. The writer publishes new slots in the hash table and new sizes of the
+ * position lists with release semantics, after all data they refer to has been written. When the hash table grows, a
+ * new table is built and published; readers still using the old table see a consistent, slightly older, state.
+ * <p>
+ * The direct memory is released by the garbage collector once the index is no longer referenced, as readers may still
+ * be using the index after the segment is completed.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class OffHeapActiveSegmentIndex implements ActiveSegmentIndex {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+                                                                                ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int MIN_BLOCK_ENTRIES = 4;
+    private static final int MAX_BLOCK_ENTRIES = 1024;
+    private static final long NONE = -1;
+
+    // layout of an aggregate record
+    private static final int HEAD = 0;
+    private static final int TAIL = 8;
+    private static final int FIRST_SEQUENCE_NUMBER = 16;
+    private static final int SIZE = 24;
+    private static final int TAIL_START = 28;
+    private static final int KEY_LENGTH = 32;
+    private static final int KEY = 36;
+
+    // layout of a block of positions
+    private static final int NEXT = 0;
+    private static final int CAPACITY = 8;
+    private static final int ENTRIES = 16;
+
+    private volatile Table table = new Table(INITIAL_SLOTS);
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile int aggregates;
+    private int chunkPosition;
+
+    @Override
+    public IndexEntries get(String aggregateId) {
+        long record = find(table, hash(aggregateId), aggregateId.getBytes(StandardCharsets.UTF_8));
+        if (record == NONE) {
+            return null;
+        }
+        ByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        int size = (int) INTS.getAcquire(chunk, offset + SIZE);
+        return new StandardIndexEntries(chunk.getLong(offset + FIRST_SEQUENCE_NUMBER),
+                                        positions(chunk.getLong(offset + HEAD), size));
+    }
+
+    @Override
+    public synchronized void add(String aggregateId, IndexEntry indexEntry) {
+        append(findOrCreate(aggregateId, indexEntry.getSequenceNumber()), indexEntry.getPosition());
+    }
+
+    @Override
+    public synchronized void addAll(String aggregateId, List<IndexEntry> entries) {
+        long record = findOrCreate(aggregateId, entries.get(0).getSequenceNumber());
+        for (IndexEntry entry : entries) {
+            append(record, entry.getPosition());
+        }
+    }
+
+    @Override
+    public int size() {
+        return aggregates;
+    }
+
+    @Override
+    public Map<String, IndexEntries> entries() {
+        Table current = table;
+        Map<String, IndexEntries> entries = new HashMap<>(aggregates * 2);
+        for (int slot = 0; slot <= current.mask; slot++) {
+            int slotOffset = slot * SLOT_SIZE;
+            if ((long) LONGS.getAcquire(current.slots, slotOffset) != 0) {
+                long record = current.slots.getLong(slotOffset + 8);
+                ByteBuffer chunk = chunk(record);
+                int offset = offset(record);
+                byte[] key = new byte[chunk.getInt(offset + KEY_LENGTH)];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = chunk.get(offset + KEY + i);
+                }
+                int size = (int) INTS.getAcquire(chunk, offset + SIZE);
+                entries.put(new String(key, StandardCharsets.UTF_8),
+                            new StandardIndexEntries(chunk.getLong(offset + FIRST_SEQUENCE_NUMBER),
+                                                     positions(chunk.getLong(offset + HEAD), size)));
+            }
+        }
+        return entries;
+    }
+
+    private int[] positions(long block, int size) {
+        int[] positions = new int[size];
+        int copied = 0;
+        while (copied < size) {
+            ByteBuffer chunk = chunk(block);
+            int offset = offset(block);
+            int count = Math.min(chunk.getInt(offset + CAPACITY), size - copied);
+            for (int i = 0; i < count; i++) {
+                positions[copied++] = chunk.getInt(offset + ENTRIES + 4 * i);
+            }
+            block = chunk.getLong(offset + NEXT);
+        }
+        return positions;
+    }
+
+    private long find(Table current, long hash, byte[] key) {
+        int slot = (int) hash & current.mask;
+        while (true) {
+            int slotOffset = slot * SLOT_SIZE;
+            long slotHash = (long) LONGS.getAcquire(current.slots, slotOffset);
+            if (slotHash == 0) {
+                return NONE;
+            }
+            if (slotHash == hash) {
+                long record = current.slots.getLong(slotOffset + 8);
+                if (keyEquals(record, key)) {
+                    return record;
+                }
+            }
+            slot = (slot + 1) & current.mask;
+        }
+    }
+
+    private boolean keyEquals(long record, byte[] key) {
+        ByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        if (chunk.getInt(offset + KEY_LENGTH) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (chunk.get(offset + KEY + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long findOrCreate(String aggregateId, long firstSequenceNumber) {
+        long hash = hash(aggregateId);
+        byte[] key = aggregateId.getBytes(StandardCharsets.UTF_8);
+        Table current = table;
+        long record = find(current, hash, key);
+        if (record != NONE) {
+            return record;
+        }
+        if ((aggregates + 1L) * 2 > current.mask + 1L) {
+            current = grow(current);
+        }
+        long block = allocateBlock(MIN_BLOCK_ENTRIES);
+        record = allocate(KEY + key.length);
+        ByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        chunk.putLong(offset + HEAD, block);
+        chunk.putLong(offset + TAIL, block);
+        chunk.putLong(offset + FIRST_SEQUENCE_NUMBER, firstSequenceNumber);
+        chunk.putInt(offset + SIZE, 0);
+        chunk.putInt(offset + TAIL_START, 0);
+        chunk.putInt(offset + KEY_LENGTH, key.length);
+        for (int i = 0; i < key.length; i++) {
+            chunk.put(offset + KEY + i, key[i]);
+        }
+        insert(current, hash, record);
+        aggregates++;
+        return record;
+    }
+
+    private void append(long record, int position) {
+        ByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        int size = chunk.getInt(offset + SIZE);
+        int tailStart = chunk.getInt(offset + TAIL_START);
+        long tail = chunk.getLong(offset + TAIL);
+        ByteBuffer tailChunk = chunk(tail);
+        int tailOffset = offset(tail);
+        int capacity = tailChunk.getInt(tailOffset + CAPACITY);
+        if (size - tailStart == capacity) {
+            long block = allocateBlock(Math.min(MAX_BLOCK_ENTRIES, capacity * 2));
+            tailChunk.putLong(tailOffset + NEXT, block);
+            chunk.putLong(offset + TAIL, block);
+            chunk.putInt(offset + TAIL_START, size);
+            tailStart = size;
+            tailChunk = chunk(block);
+            tailOffset = offset(block);
+        }
+        tailChunk.putInt(tailOffset + ENTRIES + 4 * (size - tailStart), position);
+        INTS.setRelease(chunk, offset + SIZE, size + 1);
+    }
+
+    private void insert(Table target, long hash, long record) {
+        int slot = (int) hash & target.mask;
+        while ((long) LONGS.get(target.slots, slot * SLOT_SIZE) != 0) {
+            slot = (slot + 1) & target.mask;
+        }
+        target.slots.putLong(slot * SLOT_SIZE + 8, record);
+        LONGS.setRelease(target.slots, slot * SLOT_SIZE, hash);
+    }
+
+    private Table grow(Table current) {
+        Table grown = new Table((current.mask + 1) * 2);
+        for (int slot = 0; slot <= current.mask; slot++) {
+            long hash = current.slots.getLong(slot * SLOT_SIZE);
+            if (hash != 0) {
+                insert(grown, hash, current.slots.getLong(slot * SLOT_SIZE + 8));
+            }
+        }
+        table = grown;
+        return grown;
+    }
+
+    private long allocateBlock(int entries) {
+        long block = allocate(ENTRIES + 4 * entries);
+        ByteBuffer chunk = chunk(block);
+        int offset = offset(block);
+        chunk.putLong(offset + NEXT, NONE);
+        chunk.putInt(offset + CAPACITY, entries);
+        return block;
+    }
+
+    /**
+     * Allocates space in the current chunk, or in a new chunk if the current one is full. The returned address
+     * contains the index of the chunk in the upper 32 bits and the offset in the chunk in the lower 32 bits. All
+     * addresses are aligned on 8 bytes.
+     */
+    private long allocate(int bytes) {
+        int aligned = (bytes + 7) & ~7;
+        ByteBuffer[] current = chunks;
+        if (current.length == 0 || chunkPosition + aligned > current[current.length - 1].capacity()) {
+            int chunkSize = current.length == 0 ?
+                    MIN_CHUNK_SIZE :
+                    Math.min(MAX_CHUNK_SIZE, current[current.length - 1].capacity() * 2);
+            ByteBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = allocateDirect(Math.max(chunkSize, aligned));
+            chunks = grown;
+            chunkPosition = 0;
+            current = grown;
+        }
+        long address = ((long) (current.length - 1) << 32) | chunkPosition;
+        chunkPosition += aligned;
+        return address;
+    }
+
+    private ByteBuffer chunk(long address) {
+        return chunks[(int) (address >>> 32)];
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static ByteBuffer allocateDirect(int size) {
+        return ByteBuffer.allocateDirect(size + 8).alignedSlice(8).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * 64-bit hash of the aggregate identifier (FNV-1a followed by a murmur3 finalizer). 0 marks an empty slot in the
+     * hash table, so it is never returned.
+     */
+    private static long hash(String aggregateId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < aggregateId.length(); i++) {
+            hash ^= aggregateId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static class Table {
+
+        private final ByteBuffer slots;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.slots = allocateDirect(capacity * SLOT_SIZE);
+            this.mask = capacity - 1;
+        }
+    }
+}
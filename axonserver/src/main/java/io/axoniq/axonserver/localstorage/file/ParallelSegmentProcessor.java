@@ -0,0 +1,125 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs an action for a number of segments in parallel, using a limited number of threads, and logs the progress.
+ * Used at startup to rebuild indexes and to validate segments.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class ParallelSegmentProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelSegmentProcessor.class);
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final String name;
+    private final int threads;
+
+    /**
+     * @param name    description of the action, used in thread names and log messages
+     * @param threads maximum number of segments processed concurrently
+     */
+    public ParallelSegmentProcessor(String name, int threads) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Applies the action to all segments and returns the results in the order of the segments. If the action fails
+     * for a segment the exception is rethrown.
+     *
+     * @param segments the segments to process
+     * @param action   the action to apply on each segment
+     * @param <S>      the type of the segment identifier
+     * @param <T>      the type of the result
+     * @return the results of the action for all segments
+     */
+    public <S, T> List<T> process(Collection<S> segments, Function<S, T> action) {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+        if (threads == 1 || segments.size() == 1) {
+            Progress progress = new Progress(segments.size());
+            return segments.stream()
+                           .map(segment -> progress.completed(action.apply(segment)))
+                           .collect(Collectors.toList());
+        }
+
+        Progress progress = new Progress(segments.size());
+        ForkJoinPool pool = new ForkJoinPool(threads, this::newThread, null, false);
+        try {
+            return pool.submit(() -> segments.parallelStream()
+                                             .map(segment -> progress.completed(action.apply(segment)))
+                                             .collect(Collectors.toList()))
+                       .join();
+        } catch (RuntimeException ex) {
+            // join may wrap the original exception in (one or more) new instances of the same class
+            RuntimeException original = ex;
+            while (original.getCause() != null && original.getCause().getClass().equals(original.getClass())) {
+                original = (RuntimeException) original.getCause();
+            }
+            throw original;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName(name + "-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private class Progress {
+
+        private final int total;
+        private final long start = System.nanoTime();
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicLong lastReport = new AtomicLong(start);
+
+        private Progress(int total) {
+            this.total = total;
+            logger.debug("{}: processing {} segments using {} threads", name, total, Math.min(threads, total));
+        }
+
+        private <T> T completed(T result) {
+            int count = done.incrementAndGet();
+            long now = System.nanoTime();
+            long last = lastReport.get();
+            if (count == total) {
+                if (now - start > PROGRESS_INTERVAL) {
+                    logger.info("{}: processed {} segments in {} ms",
+                                name,
+                                total,
+                                TimeUnit.NANOSECONDS.toMillis(now - start));
+                }
+            } else if (now - last > PROGRESS_INTERVAL && lastReport.compareAndSet(last, now)) {
+                logger.info("{}: processed {}/{} segments", name, count, total);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import io.axoniq.axonserver.exception.ErrorCode;
+import io.axoniq.axonserver.exception.MessagingPlatformException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the payload types in a segment. For each payload type (type and revision) it keeps a bitmap of the blocks of
+ * {@value #BLOCK_SIZE} tokens that contain at least one event of this type. Readers that are not interested in some
+ * payload types use this index to skip blocks that only contain events of these types.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class PayloadTypeIndex {
+
+    /**
+     * Number of tokens per block.
+     */
+    public static final int BLOCK_SIZE = 256;
+    private static final int MAGIC = 0x41585054;
+    private static final int VERSION = 1;
+
+    private final long segment;
+    private final Map<String, BitSet> blocksPerType;
+    private long lastToken;
+
+    /**
+     * Creates an empty index for a segment.
+     *
+     * @param segment the first token in the segment
+     */
+    public PayloadTypeIndex(long segment) {
+        this(segment, segment - 1, new HashMap<>());
+    }
+
+    private PayloadTypeIndex(long segment, long lastToken, Map<String, BitSet> blocksPerType) {
+        this.segment = segment;
+        this.lastToken = lastToken;
+        this.blocksPerType = blocksPerType;
+    }
+
+    /**
+     * Returns the key used in the index for a payload type.
+     *
+     * @param type     the payload type
+     * @param revision the payload revision
+     * @return the key for the payload type
+     */
+    public static String key(String type, String revision) {
+        return type + '\u0000' + revision;
+    }
+
+    /**
+     * Adds an event to the index.
+     *
+     * @param token    the token of the event
+     * @param type     the payload type of the event
+     * @param revision the payload revision of the event
+     */
+    public synchronized void add(long token, String type, String revision) {
+        blocksPerType.computeIfAbsent(key(type, revision), k -> new BitSet())
+                     .set((int) ((token - segment) / BLOCK_SIZE));
+        lastToken = Math.max(lastToken, token);
+    }
+
+    /**
+     * @return the last token in the index
+     */
+    public synchronized long lastToken() {
+        return lastToken;
+    }
+
+    /**
+     * Returns the first token at or after the given token in a block that contains events with a payload type that is
+     * not excluded. When there are no more such blocks in this segment, it returns the token following the last token
+     * in the index.
+     *
+     * @param token        the token to start from
+     * @param excludedKeys keys of the payload types to skip
+     * @return the first token that may refer to an event that is not excluded
+     */
+    public synchronized long nextCandidate(long token, Set<String> excludedKeys) {
+        if (token > lastToken) {
+            return token;
+        }
+        int startBlock = (int) (Math.max(0, token - segment) / BLOCK_SIZE);
+        int firstBlock = Integer.MAX_VALUE;
+        for (Map.Entry<String, BitSet> entry : blocksPerType.entrySet()) {
+            if (!excludedKeys.contains(entry.getKey())) {
+                int block = entry.getValue().nextSetBit(startBlock);
+                if (block >= 0 && block < firstBlock) {
+                    firstBlock = block;
+                    if (block == startBlock) {
+                        return token;
+                    }
+                }
+            }
+        }
+        if (firstBlock == Integer.MAX_VALUE) {
+            return lastToken + 1;
+        }
+        return Math.max(token, segment + (long) firstBlock * BLOCK_SIZE);
+    }
+
+    /**
+     * @return approximate size of the index in bytes
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (Map.Entry<String, BitSet> entry : blocksPerType.entrySet()) {
+            size += 2L * entry.getKey().length() + entry.getValue().size() / 8 + 64;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the index to a file.
+     *
+     * @param file the file to write to
+     */
+    public synchronized void write(File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment);
+            out.writeLong(lastToken);
+            out.writeInt(blocksPerType.size());
+            for (Map.Entry<String, BitSet> entry : blocksPerType.entrySet()) {
+                out.writeUTF(entry.getKey());
+                long[] words = entry.getValue().toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR,
+                                                 file + ": failed to write payload type index",
+                                                 e);
+        }
+    }
+
+    /**
+     * Reads an index from a file.
+     *
+     * @param file the file to read
+     * @return the index
+     */
+    public static PayloadTypeIndex read(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR,
+                                                     file + ": invalid payload type index");
+            }
+            long segment = in.readLong();
+            long lastToken = in.readLong();
+            int types = in.readInt();
+            Map<String, BitSet> blocksPerType = new HashMap<>(types * 2);
+            for (int i = 0; i < types; i++) {
+                String key = in.readUTF();
+                long[] words = new long[in.readInt()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = in.readLong();
+                }
+                blocksPerType.put(key, BitSet.valueOf(words));
+            }
+            return new PayloadTypeIndex(segment, lastToken, blocksPerType);
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR,
+                                                 file + ": failed to read payload type index",
+                                                 e);
+        }
+    }
+}
@@ -26,6 +26,10 @@ import java.nio.file.StandardOpenOption;
 import java.util.Set;
 
 /**
+ * Bloom filter for the aggregates in a segment, stored in a file next to the segment. New filters are created either
+ * as a Guava bloom filter, which is loaded on the heap, or as a {@link BlockedBloomFilter}, which is memory mapped.
+ * Existing filters are loaded in the format they were written in.
+ *
  * @author Marc Gathier
  */
 public class PersistedBloomFilter {
@@ -33,20 +37,39 @@ public class PersistedBloomFilter {
 
     private static final Charset UTF8 = Charset.forName("UTF-8");
     private volatile BloomFilter<CharSequence> filter;
+    private volatile BlockedBloomFilter blockedFilter;
     private final Path path;
     private final int expectedInsertions;
     private final float fpp;
+    private final boolean blocked;
 
     public PersistedBloomFilter(String persistedPath, int expectedInsertions, float fpp) {
+        this(persistedPath, expectedInsertions, fpp, false);
+    }
+
+    /**
+     * @param persistedPath      the file containing the filter
+     * @param expectedInsertions the number of keys in the filter, used when creating a new filter
+     * @param fpp                the false positive probability, used when creating a new filter
+     * @param blocked            create the filter as a memory mapped {@link BlockedBloomFilter}
+     */
+    public PersistedBloomFilter(String persistedPath, int expectedInsertions, float fpp, boolean blocked) {
         path = Paths.get(persistedPath);
 
         this.expectedInsertions = expectedInsertions;
         this.fpp = fpp;
+        this.blocked = blocked;
     }
 
     public void load() {
         if (!fileExists()) throw new IllegalArgumentException("File does not exist");
 
+        if (BlockedBloomFilter.isBlockedBloomFilter(path)) {
+            logger.debug("Mapping bloom filter : {}", path);
+            blockedFilter = BlockedBloomFilter.open(path);
+            return;
+        }
+
         try (FileChannel channel = FileChannel.open(path)) {
             logger.debug("Opening bloom filter : {}", path);
             try( InputStream is = Channels.newInputStream(channel)) {
@@ -62,6 +85,10 @@ public class PersistedBloomFilter {
     }
 
     public void create() {
+        if (blocked) {
+            blockedFilter = BlockedBloomFilter.create(expectedInsertions, fpp);
+            return;
+        }
         filter = BloomFilter.create(Funnels.stringFunnel(UTF8),
                 expectedInsertions,
                 fpp);
@@ -69,6 +96,15 @@ public class PersistedBloomFilter {
     }
 
     public void store() {
+        if (blockedFilter != null) {
+            try {
+                blockedFilter.write(path);
+                blockedFilter = BlockedBloomFilter.open(path);
+            } catch (Exception ex) {
+                logger.warn("Failed to store bloom filter {}", path, ex);
+            }
+            return;
+        }
         try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
             filter.writeTo(Channels.newOutputStream(channel));
         } catch (Exception ex) {
@@ -77,18 +113,53 @@ public class PersistedBloomFilter {
     }
 
     public void insert(String key) {
+        if (blockedFilter != null) {
+            blockedFilter.put(key);
+            return;
+        }
         filter.put(key);
     }
 
     public boolean mightContain(String key) {
+        BlockedBloomFilter mapped = blockedFilter;
+        if (mapped != null) {
+            return mapped.mightContain(key);
+        }
         return filter.mightContain(key);
     }
 
+    /**
+     * @return true if the filter is memory mapped and does not use heap space
+     */
+    public boolean isMapped() {
+        BlockedBloomFilter mapped = blockedFilter;
+        return mapped != null && mapped.isMapped();
+    }
+
+    /**
+     * Releases a memory mapped filter.
+     *
+     * @param forceClean unmap the file immediately
+     */
+    public void close(boolean forceClean) {
+        BlockedBloomFilter mapped = blockedFilter;
+        if (mapped != null) {
+            mapped.close(forceClean);
+        }
+    }
+
+    /**
+     * @return the size of the file containing the filter
+     */
+    public long size() {
+        return path.toFile().length();
+    }
+
     public boolean fileExists() {
         return path.toFile().exists();
     }
 
     public void insertAll(Set<String> keys) {
-        keys.forEach(key -> filter.put(key));
+        keys.forEach(this::insert);
     }
 }
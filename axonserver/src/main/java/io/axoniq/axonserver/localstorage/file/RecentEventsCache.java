@@ -0,0 +1,221 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import io.axoniq.axonserver.grpc.event.Event;
+import io.axoniq.axonserver.localstorage.SerializedEvent;
+import io.axoniq.axonserver.metric.BaseMetricName;
+import io.axoniq.axonserver.metric.MeterFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache for the most recently appended events per aggregate. For each aggregate in the cache it keeps a contiguous
+ * range of events up to and including the last event stored for the aggregate, so reading the tail of an aggregate's
+ * event stream does not need to read the events from the segment files.
+ * <p>
+ * The cache is filled in the order the transactions are completed, it must see all transactions stored after it was
+ * created, otherwise it could return an incomplete tail. The total size of the cached events is limited by
+ * {@code maxSize}. When this size is exceeded, the least recently used aggregates are removed. A single aggregate may
+ * use at most 1/16th of the maximum size, older events for the aggregate are removed from the cache when it exceeds
+ * this size.
+ * <p>
+ * The cache must be cleared when the contents of the stored events change (for instance, through a transformation).
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class RecentEventsCache {
+
+    private static final int MAX_AGGREGATE_SHARE = 16;
+
+    private final LinkedHashMap<String, Tail> tails = new LinkedHashMap<>(1024, 0.75f, true);
+    private final AtomicLong totalSize = new AtomicLong();
+    private final LongSupplier maxSize;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    /**
+     * @param maxSize      supplies the maximum total size (in bytes) of the cached events
+     * @param meterFactory factory to create metrics meter
+     * @param tags         tags for the metrics
+     */
+    public RecentEventsCache(LongSupplier maxSize, MeterFactory meterFactory, Tags tags) {
+        this.maxSize = maxSize;
+        Tags cacheTags = tags.and("cache", "recent-events");
+        this.hits = meterFactory.counter(BaseMetricName.AXON_FILE_CACHE_HIT, cacheTags);
+        this.misses = meterFactory.counter(BaseMetricName.AXON_FILE_CACHE_MISS, cacheTags);
+        this.evictions = meterFactory.counter(BaseMetricName.AXON_FILE_CACHE_EVICTION, cacheTags);
+        meterFactory.gauge(BaseMetricName.AXON_FILE_CACHE_WEIGHT, cacheTags, totalSize, AtomicLong::get);
+    }
+
+    /**
+     * Adds the domain events from a stored transaction to the cache. Must be called in the order the transactions are
+     * stored.
+     *
+     * @param events the events in the transaction
+     */
+    public void add(List<Event> events) {
+        long max = maxSize.getAsLong();
+        if (max <= 0) {
+            // events stored while the cache is disabled are not in the cache, so the cached tails are no longer valid
+            if (totalSize.get() > 0) {
+                clear();
+            }
+            return;
+        }
+        synchronized (tails) {
+            for (Event event : events) {
+                if (!event.getAggregateType().isEmpty()) {
+                    add(event, max / MAX_AGGREGATE_SHARE);
+                }
+            }
+            evict(max);
+        }
+    }
+
+    private void add(Event event, long maxAggregateSize) {
+        String aggregateId = event.getAggregateIdentifier();
+        Tail tail = tails.get(aggregateId);
+        if (tail == null || tail.nextSequenceNumber() != event.getAggregateSequenceNumber()) {
+            if (tail != null) {
+                totalSize.addAndGet(-tail.size);
+            }
+            tail = new Tail(event.getAggregateSequenceNumber());
+            tails.put(aggregateId, tail);
+        }
+        SerializedEvent serializedEvent = new SerializedEvent(event);
+        tail.events.add(serializedEvent);
+        tail.size += serializedEvent.size();
+        totalSize.addAndGet(serializedEvent.size());
+        int removed = 0;
+        while (tail.size > maxAggregateSize && tail.events.size() - removed > 1) {
+            int eventSize = tail.events.get(removed).size();
+            tail.size -= eventSize;
+            totalSize.addAndGet(-eventSize);
+            removed++;
+        }
+        if (removed > 0) {
+            tail.events.subList(0, removed).clear();
+            tail.firstSequenceNumber += removed;
+        }
+    }
+
+    private void evict(long max) {
+        Iterator<Tail> iterator = tails.values().iterator();
+        while (totalSize.get() > max && iterator.hasNext()) {
+            Tail tail = iterator.next();
+            iterator.remove();
+            totalSize.addAndGet(-tail.size);
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Returns the cached events for the aggregate with sequence number in the range [{@code firstSequenceNumber},
+     * {@code lastSequenceNumber}). When the cache does not contain the first events in the range, the result contains
+     * only the cached part of the range and {@link CachedEvents#firstSequenceNumber()} returns the sequence number of
+     * the first cached event. Returns null when the cache does not contain any event for the aggregate in the range.
+     *
+     * @param aggregateId         the aggregate identifier
+     * @param firstSequenceNumber the first sequence number to return
+     * @param lastSequenceNumber  the sequence number of the first event not to return
+     * @return the cached events or null
+     */
+    public CachedEvents get(String aggregateId, long firstSequenceNumber, long lastSequenceNumber) {
+        if (maxSize.getAsLong() <= 0) {
+            return null;
+        }
+        synchronized (tails) {
+            Tail tail = tails.get(aggregateId);
+            if (tail == null || tail.firstSequenceNumber >= lastSequenceNumber
+                    || tail.nextSequenceNumber() <= firstSequenceNumber) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            long first = Math.max(firstSequenceNumber, tail.firstSequenceNumber);
+            long last = Math.min(lastSequenceNumber, tail.nextSequenceNumber());
+            List<SerializedEvent> events = new ArrayList<>(tail.events.subList(
+                    (int) (first - tail.firstSequenceNumber),
+                    (int) (last - tail.firstSequenceNumber)));
+            return new CachedEvents(first, Collections.unmodifiableList(events));
+        }
+    }
+
+    /**
+     * Removes all events from the cache.
+     */
+    public void clear() {
+        synchronized (tails) {
+            tails.clear();
+            totalSize.set(0);
+        }
+    }
+
+    /**
+     * @return the total size (in bytes) of the cached events
+     */
+    public long size() {
+        return totalSize.get();
+    }
+
+    /**
+     * Events returned from the cache for an aggregate.
+     */
+    public static class CachedEvents {
+
+        private final long firstSequenceNumber;
+        private final List<SerializedEvent> events;
+
+        private CachedEvents(long firstSequenceNumber, List<SerializedEvent> events) {
+            this.firstSequenceNumber = firstSequenceNumber;
+            this.events = events;
+        }
+
+        /**
+         * @return the sequence number of the first event returned from the cache
+         */
+        public long firstSequenceNumber() {
+            return firstSequenceNumber;
+        }
+
+        /**
+         * @return the events, ordered by sequence number
+         */
+        public List<SerializedEvent> events() {
+            return events;
+        }
+    }
+
+    private static class Tail {
+
+        private final List<SerializedEvent> events = new ArrayList<>();
+        private long firstSequenceNumber;
+        private long size;
+
+        private Tail(long firstSequenceNumber) {
+            this.firstSequenceNumber = firstSequenceNumber;
+        }
+
+        private long nextSequenceNumber() {
+            return firstSequenceNumber + events.size();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prepares the file for the next segment in the background, so the writer that fills up the current segment does not
+ * have to create and map a new file. As the name of the next segment is only known when the current segment is full,
+ * the file is prepared under a temporary name, filled with zeros and memory mapped. When the next segment is opened,
+ * the prepared file is renamed to the segment file name by the writer. The file is not loaded into memory, the zeros
+ * on disk are enough to avoid allocating blocks while writing the segment.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class SegmentPreallocator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentPreallocator.class);
+    private static final int ZERO_BLOCK_SIZE = 1024 * 1024;
+
+    private final File file;
+    private final ExecutorService executor;
+    private final AtomicReference<MappedByteBuffer> prepared = new AtomicReference<>();
+    private final AtomicBoolean preparing = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * @param name the name of the store, used to name the preallocation thread
+     * @param file the temporary file to prepare the next segment in
+     */
+    public SegmentPreallocator(String name, File file) {
+        this.file = file;
+        this.executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory(name + "-preallocator-"));
+    }
+
+    /**
+     * Starts preparing a new segment file in the background, unless there already is a prepared file or a file is
+     * being prepared.
+     *
+     * @param size the size of the segment file
+     */
+    public void prepare(int size) {
+        if (closed || prepared.get() != null || !preparing.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                doPrepare(size);
+            } catch (Exception ex) {
+                logger.warn("{}: Failed to preallocate segment file - {}", file, ex.getMessage());
+                preparing.set(false);
+            }
+        });
+    }
+
+    private void doPrepare(int size) throws IOException {
+        if (closed || prepared.get() != null) {
+            preparing.set(false);
+            return;
+        }
+        long before = System.currentTimeMillis();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel fileChannel = raf.getChannel()) {
+            ByteBuffer zeros = ByteBuffer.allocateDirect(ZERO_BLOCK_SIZE);
+            long position = 0;
+            while (position < size) {
+                zeros.clear();
+                zeros.limit((int) Math.min(ZERO_BLOCK_SIZE, size - position));
+                position += fileChannel.write(zeros, position);
+            }
+            raf.setLength(size);
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            // allow a new prepare before the buffer can be claimed, so a claim is always followed by a new prepare
+            preparing.set(false);
+            prepared.set(buffer);
+        }
+        logger.debug("{}: Preallocated segment file in {}ms", file, System.currentTimeMillis() - before);
+        if (closed) {
+            discard();
+        }
+    }
+
+    /**
+     * Returns whether a prepared file is available.
+     *
+     * @return true when a prepared file is available
+     */
+    public boolean isPrepared() {
+        return prepared.get() != null;
+    }
+
+    /**
+     * Moves the prepared file to the target file. Returns {@code null} when there is no prepared file of the requested
+     * size, in which case the caller has to create the file itself.
+     *
+     * @param target the name of the new segment file
+     * @param size   the required size of the segment file
+     * @return the memory mapped buffer for the target file or null
+     */
+    public MappedByteBuffer claim(File target, int size) {
+        MappedByteBuffer buffer = prepared.get();
+        if (buffer == null || buffer.capacity() != size || !prepared.compareAndSet(buffer, null)) {
+            return null;
+        }
+        try {
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return buffer;
+        } catch (IOException ex) {
+            logger.warn("{}: Failed to move preallocated segment file to {} - {}", file, target, ex.getMessage());
+            CleanUtils.cleanDirectBuffer(buffer, () -> true, 0, file.getAbsolutePath());
+            return null;
+        }
+    }
+
+    /**
+     * Stops preparing files and removes the prepared file, if any.
+     */
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        discard();
+    }
+
+    private void discard() {
+        MappedByteBuffer buffer = prepared.getAndSet(null);
+        if (buffer != null) {
+            CleanUtils.cleanDirectBuffer(buffer, () -> true, 0, file.getAbsolutePath());
+        }
+        FileUtils.delete(file);
+    }
+}
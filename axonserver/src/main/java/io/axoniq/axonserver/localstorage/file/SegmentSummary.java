@@ -0,0 +1,277 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import io.axoniq.axonserver.exception.ErrorCode;
+import io.axoniq.axonserver.exception.MessagingPlatformException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Summary of a completed segment: the token range, the timestamp range, the number of events and aggregates, and a
+ * sparse list of sample tokens. For each sample token the summary contains the maximum timestamp of the events before
+ * that token, so a search for the first event at or after a timestamp can skip all events before the last sample
+ * where this maximum timestamp is before the requested timestamp.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class SegmentSummary {
+
+    /**
+     * Number of tokens between two samples while building the summary.
+     */
+    public static final int SAMPLE_INTERVAL = 1024;
+    private static final int MAX_SAMPLES = 256;
+    private static final int MAGIC = 0x41585353;
+    private static final int VERSION = 1;
+
+    private final long segment;
+    private final long lastToken;
+    private final long firstTimestamp;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final long eventCount;
+    private final int aggregateCount;
+    private final long[] sampleTokens;
+    private final long[] maxTimestampBefore;
+
+    private SegmentSummary(long segment, long lastToken, long firstTimestamp, long minTimestamp, long maxTimestamp,
+                           long eventCount, int aggregateCount, long[] sampleTokens, long[] maxTimestampBefore) {
+        this.segment = segment;
+        this.lastToken = lastToken;
+        this.firstTimestamp = firstTimestamp;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.eventCount = eventCount;
+        this.aggregateCount = aggregateCount;
+        this.sampleTokens = sampleTokens;
+        this.maxTimestampBefore = maxTimestampBefore;
+    }
+
+    /**
+     * @return the first token in the segment
+     */
+    public long firstToken() {
+        return segment;
+    }
+
+    /**
+     * @return the last token in the segment
+     */
+    public long lastToken() {
+        return lastToken;
+    }
+
+    /**
+     * @return the timestamp of the first event in the segment
+     */
+    public long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * @return the lowest timestamp of the events in the segment
+     */
+    public long minTimestamp() {
+        return minTimestamp;
+    }
+
+    /**
+     * @return the highest timestamp of the events in the segment
+     */
+    public long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * @return the number of events in the segment
+     */
+    public long eventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return the number of distinct aggregates in the segment, -1 if unknown
+     */
+    public int aggregateCount() {
+        return aggregateCount;
+    }
+
+    /**
+     * Returns the token to start reading from when looking for the first event with a timestamp at or after the
+     * given instant. All events before the returned token have a timestamp before the instant.
+     *
+     * @param instant the timestamp to search for
+     * @return the token to start reading from
+     */
+    public long startTokenFor(long instant) {
+        int low = 0;
+        int high = sampleTokens.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (maxTimestampBefore[mid] < instant) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return sampleTokens[low];
+    }
+
+    /**
+     * Writes the summary to a file.
+     *
+     * @param file the file to write to
+     */
+    public void write(File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segment);
+            out.writeLong(lastToken);
+            out.writeLong(firstTimestamp);
+            out.writeLong(minTimestamp);
+            out.writeLong(maxTimestamp);
+            out.writeLong(eventCount);
+            out.writeInt(aggregateCount);
+            out.writeInt(sampleTokens.length);
+            for (int i = 0; i < sampleTokens.length; i++) {
+                out.writeLong(sampleTokens[i]);
+                out.writeLong(maxTimestampBefore[i]);
+            }
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR,
+                                                 file + ": failed to write segment summary",
+                                                 e);
+        }
+    }
+
+    /**
+     * Reads a summary from a file.
+     *
+     * @param file the file to read
+     * @return the summary
+     */
+    public static SegmentSummary read(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR, file + ": invalid segment summary");
+            }
+            long segment = in.readLong();
+            long lastToken = in.readLong();
+            long firstTimestamp = in.readLong();
+            long minTimestamp = in.readLong();
+            long maxTimestamp = in.readLong();
+            long eventCount = in.readLong();
+            int aggregateCount = in.readInt();
+            int samples = in.readInt();
+            long[] sampleTokens = new long[samples];
+            long[] maxTimestampBefore = new long[samples];
+            for (int i = 0; i < samples; i++) {
+                sampleTokens[i] = in.readLong();
+                maxTimestampBefore[i] = in.readLong();
+            }
+            return new SegmentSummary(segment, lastToken, firstTimestamp, minTimestamp, maxTimestamp, eventCount,
+                                      aggregateCount, sampleTokens, maxTimestampBefore);
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR,
+                                                 file + ": failed to read segment summary",
+                                                 e);
+        }
+    }
+
+    /**
+     * Collects the information for the summary of a segment while events are written. Events may be added in any
+     * order.
+     */
+    public static class Builder {
+
+        private final long segment;
+        private long lastToken = -1;
+        private long firstTimestamp;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+        private long eventCount;
+        private long[] maxTimestampPerInterval = new long[0];
+
+        /**
+         * @param segment the first token in the segment
+         */
+        public Builder(long segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * Adds an event to the summary.
+         *
+         * @param token     the token of the event
+         * @param timestamp the timestamp of the event
+         */
+        public synchronized void add(long token, long timestamp) {
+            eventCount++;
+            lastToken = Math.max(lastToken, token);
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            if (token == segment) {
+                firstTimestamp = timestamp;
+            }
+            int interval = (int) ((token - segment) / SAMPLE_INTERVAL);
+            if (interval >= maxTimestampPerInterval.length) {
+                int oldLength = maxTimestampPerInterval.length;
+                maxTimestampPerInterval = Arrays.copyOf(maxTimestampPerInterval,
+                                                        Math.max(interval + 1, oldLength * 2));
+                Arrays.fill(maxTimestampPerInterval, oldLength, maxTimestampPerInterval.length, Long.MIN_VALUE);
+            }
+            maxTimestampPerInterval[interval] = Math.max(maxTimestampPerInterval[interval], timestamp);
+        }
+
+        /**
+         * Creates the summary.
+         *
+         * @param aggregateCount the number of distinct aggregates in the segment, -1 if unknown
+         * @return the summary
+         */
+        public synchronized SegmentSummary build(int aggregateCount) {
+            int intervals = eventCount == 0 ? 1 : (int) ((lastToken - segment) / SAMPLE_INTERVAL) + 1;
+            int step = (intervals + MAX_SAMPLES - 1) / MAX_SAMPLES;
+            int samples = (intervals + step - 1) / step;
+            long[] sampleTokens = new long[samples];
+            long[] maxTimestampBefore = new long[samples];
+            long max = Long.MIN_VALUE;
+            for (int interval = 0; interval < intervals; interval++) {
+                if (interval % step == 0) {
+                    sampleTokens[interval / step] = segment + (long) interval * SAMPLE_INTERVAL;
+                    maxTimestampBefore[interval / step] = max;
+                }
+                if (interval < maxTimestampPerInterval.length) {
+                    max = Math.max(max, maxTimestampPerInterval[interval]);
+                }
+            }
+            return new SegmentSummary(segment,
+                                      eventCount == 0 ? segment - 1 : lastToken,
+                                      firstTimestamp,
+                                      minTimestamp,
+                                      maxTimestamp,
+                                      eventCount,
+                                      aggregateCount,
+                                      sampleTokens,
+                                      maxTimestampBefore);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.axoniq.axonserver.exception.ErrorCode;
+import io.axoniq.axonserver.exception.MessagingPlatformException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable index file for a completed segment. The file contains a table of aggregate identifier hashes, sorted by
+ * hash, with the offset of the entries for each aggregate. A lookup does a binary search in the table and reads the
+ * positions directly from the (memory mapped) file, without deserializing the rest of the index.
+ * <p>
+ * Layout:
+ * <pre>
+ *     int magic, int version, int count
+ *     count * (long hash, int offset)
+ *     count * (int keyLength, byte[] key, long firstSequenceNumber, int size, int[size] positions)
+ * </pre>
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class SortedIndexFile {
+
+    private static final int MAGIC = 0x41584958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int TABLE_ENTRY_SIZE = 12;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final String file;
+    private final ByteBuffer buffer;
+    private final int count;
+
+    private SortedIndexFile(String file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR, file + ": invalid index file");
+        }
+        this.count = buffer.getInt(8);
+    }
+
+    /**
+     * Checks if the given file is an index file in this format.
+     *
+     * @param file the index file
+     * @return true if the file starts with the header for this format
+     */
+    public static boolean isSortedIndex(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.length() >= HEADER_SIZE && raf.readInt() == MAGIC;
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR, file + ": failed to read index file", e);
+        }
+    }
+
+    /**
+     * Opens an existing index file.
+     *
+     * @param file     the index file
+     * @param useMmap  memory map the file, otherwise the file is read in a heap buffer
+     * @return the index
+     */
+    public static SortedIndexFile open(File file, boolean useMmap) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer buffer;
+            if (useMmap) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read until buffer is full
+                }
+            }
+            return new SortedIndexFile(file.getAbsolutePath(), buffer);
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_READ_ERROR, file + ": failed to open index file", e);
+        }
+    }
+
+    /**
+     * Writes the index entries per aggregate to a new index file.
+     *
+     * @param file                  the file to write to
+     * @param positionsPerAggregate the index entries per aggregate
+     */
+    public static void write(File file, Map<String, IndexEntries> positionsPerAggregate) {
+        List<Record> records = new ArrayList<>(positionsPerAggregate.size());
+        positionsPerAggregate.forEach((key, entries) -> records.add(new Record(key, entries)));
+        records.sort(Comparator.comparingLong(r -> r.hash));
+
+        long offset = HEADER_SIZE + (long) TABLE_ENTRY_SIZE * records.size();
+        for (Record record : records) {
+            record.offset = offset;
+            offset += record.size();
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR, file + ": index too large");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(records.size());
+            for (Record record : records) {
+                out.writeLong(record.hash);
+                out.writeInt((int) record.offset);
+            }
+            for (Record record : records) {
+                out.writeInt(record.key.length);
+                out.write(record.key);
+                out.writeLong(record.entries.firstSequenceNumber());
+                int size = record.entries.size();
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(record.entries.position(i));
+                }
+            }
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR, file + ": failed to write index", e);
+        }
+    }
+
+    /**
+     * Returns the index entries for an aggregate.
+     *
+     * @param aggregateId the aggregate identifier
+     * @return the index entries or null when the aggregate is not in the index
+     */
+    public IndexEntries getPositions(String aggregateId) {
+        long hash = hash(aggregateId);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midHash = hashAt(mid);
+            if (midHash < hash) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        byte[] key = null;
+        for (int i = low; i < count && hashAt(i) == hash; i++) {
+            if (key == null) {
+                key = aggregateId.getBytes(StandardCharsets.UTF_8);
+            }
+            int offset = offsetAt(i);
+            if (keyEquals(offset, key)) {
+                return entriesAt(offset + 4 + key.length);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index entries for all aggregates in the index.
+     *
+     * @return stream of index entries per aggregate
+     */
+    public Stream<AggregateIndexEntries> latestSequenceNumbers() {
+        return IntStream.range(0, count)
+                        .mapToObj(i -> {
+                            int offset = offsetAt(i);
+                            byte[] key = new byte[buffer.getInt(offset)];
+                            for (int b = 0; b < key.length; b++) {
+                                key[b] = buffer.get(offset + 4 + b);
+                            }
+                            return new AggregateIndexEntries(new String(key, StandardCharsets.UTF_8),
+                                                             entriesAt(offset + 4 + key.length));
+                        });
+    }
+
+    /**
+     * Releases the buffer. When {@code forceClean} is set, a memory mapped buffer is unmapped immediately, otherwise
+     * the buffer is released by the garbage collector.
+     *
+     * @param forceClean unmap the file immediately
+     */
+    public void close(boolean forceClean) {
+        if (forceClean && buffer.isDirect()) {
+            CleanUtils.cleanDirectBuffer(buffer, () -> true, 0, file);
+        }
+    }
+
+    private long hashAt(int index) {
+        return buffer.getLong(HEADER_SIZE + index * TABLE_ENTRY_SIZE);
+    }
+
+    private int offsetAt(int index) {
+        return buffer.getInt(HEADER_SIZE + index * TABLE_ENTRY_SIZE + 8);
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+        if (buffer.getInt(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(offset + 4 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private IndexEntries entriesAt(int offset) {
+        long firstSequenceNumber = buffer.getLong(offset);
+        int size = buffer.getInt(offset + 8);
+        int[] positions = new int[size];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset + 12);
+        duplicate.asIntBuffer().get(positions);
+        return new StandardIndexEntries(firstSequenceNumber, positions);
+    }
+
+    private static long hash(String aggregateId) {
+        return HASH_FUNCTION.hashString(aggregateId, StandardCharsets.UTF_8).asLong();
+    }
+
+    private static class Record {
+
+        private final byte[] key;
+        private final long hash;
+        private final IndexEntries entries;
+        private long offset;
+
+        private Record(String key, IndexEntries entries) {
+            this.key = key.getBytes(StandardCharsets.UTF_8);
+            this.hash = hash(key);
+            this.entries = entries;
+        }
+
+        private long size() {
+            return 4L + key.length + 8 + 4 + 4L * entries.size();
+        }
+    }
+}
@@ -9,26 +9,35 @@
 
 package io.axoniq.axonserver.localstorage.file;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
- * Implementation of the {@link IndexEntries} used by the {@link StandardIndexManager}.
+ * Implementation of the {@link IndexEntries} used by the {@link StandardIndexManager}. Positions are kept in a
+ * growable {@code int} array. Entries are only appended, so readers can access the entries concurrently with a
+ * writer: they read the size first and only access positions below that size.
  *
  * @author Marc Gathier
  * @since 4.4
  */
 public class StandardIndexEntries implements IndexEntries {
 
-    private final AppendOnlyList<Integer> entries;
+    private static final int INITIAL_CAPACITY = 8;
+
     private final long firstSequenceNumber;
+    private volatile int[] entries;
+    private volatile int size;
+    private final int offset;
+    private boolean shared;
 
     /**
      * Initializes the object with an empty list of entries and given {@code firstSequenceNumber}.
      * @param firstSequenceNumber first sequence number
      */
     public StandardIndexEntries(long firstSequenceNumber) {
-        this(firstSequenceNumber, new Integer[0]);
+        this(firstSequenceNumber, new int[0]);
     }
 
     /**
@@ -37,9 +46,16 @@ public class StandardIndexEntries implements IndexEntries {
      * @param firstSequenceNumber first sequence number
      * @param entries             the positions of the aggregate
      */
-    public StandardIndexEntries(long firstSequenceNumber, Integer[] entries) {
-        this.entries = new AppendOnlyList<>(entries);
+    public StandardIndexEntries(long firstSequenceNumber, int[] entries) {
+        this(firstSequenceNumber, entries, 0, entries.length, false);
+    }
+
+    private StandardIndexEntries(long firstSequenceNumber, int[] entries, int offset, int size, boolean shared) {
         this.firstSequenceNumber = firstSequenceNumber;
+        this.entries = entries;
+        this.offset = offset;
+        this.size = size;
+        this.shared = shared;
     }
 
     /**
@@ -47,7 +63,7 @@ public class StandardIndexEntries implements IndexEntries {
      */
     @Override
     public boolean isEmpty() {
-        return entries.isEmpty();
+        return size == 0;
     }
 
     /**
@@ -55,11 +71,12 @@ public class StandardIndexEntries implements IndexEntries {
      */
     @Override
     public int size() {
-        return entries.size();
+        return size;
     }
 
     /**
-     * Returns an {@link IndexEntries} object with positions within the given sequence range.
+     * Returns an {@link IndexEntries} object with positions within the given sequence range. The returned object
+     * shares the positions with this object.
      * For snapshots we cannot use the range here as the sequence numbers of snapshots are not sequential
      * need to check the sequence number for the entries when we retrieve them from the event store
      * @param minSequenceNumber the lowest sequence number to include
@@ -73,20 +90,19 @@ public class StandardIndexEntries implements IndexEntries {
             return this;
         }
 
-        if (minSequenceNumber <= firstSequenceNumber && maxSequenceNumber >= firstSequenceNumber + size()) {
+        int currentSize = size;
+        int[] currentEntries = entries;
+        if (minSequenceNumber <= firstSequenceNumber && maxSequenceNumber >= firstSequenceNumber + currentSize) {
             return this;
         }
 
-        List<Integer> reducedEntries = new ArrayList<>();
-        long i = firstSequenceNumber;
-        for (Integer entry : entries) {
-            if (i >= minSequenceNumber && i < maxSequenceNumber) {
-                reducedEntries.add(entry);
-            }
-            i++;
-        }
+        int from = (int) Math.min(currentSize, Math.max(0, minSequenceNumber - firstSequenceNumber));
+        int to = (int) Math.max(from, Math.min(currentSize, maxSequenceNumber - firstSequenceNumber));
         return new StandardIndexEntries(Math.max(minSequenceNumber, firstSequenceNumber),
-                                        reducedEntries.toArray(new Integer[0]));
+                                        currentEntries,
+                                        offset + from,
+                                        to - from,
+                                        true);
     }
 
     /**
@@ -94,7 +110,18 @@ public class StandardIndexEntries implements IndexEntries {
      */
     @Override
     public List<Integer> positions() {
-        return entries;
+        return new PositionList(size, entries, offset);
+    }
+
+    @Override
+    public int position(int index) {
+        int currentSize = size;
+        if (index < 0 || index >= currentSize) {
+            throw new IndexOutOfBoundsException(String.format("%d: index out of bounds [0..%d]",
+                                                              index,
+                                                              currentSize - 1));
+        }
+        return entries[offset + index];
     }
 
     /**
@@ -102,10 +129,11 @@ public class StandardIndexEntries implements IndexEntries {
      */
     @Override
     public int last() {
-        if (isEmpty()) {
+        int currentSize = size;
+        if (currentSize == 0) {
             return -1;
         }
-        return entries.last();
+        return entries[offset + currentSize - 1];
     }
 
     /**
@@ -113,10 +141,10 @@ public class StandardIndexEntries implements IndexEntries {
      */
     @Override
     public long lastSequenceNumber() {
-        if (entries.isEmpty()) {
+        if (isEmpty()) {
             return -1;
         }
-        return firstSequenceNumber + entries.size() - 1;
+        return firstSequenceNumber + size - 1;
     }
 
     /**
@@ -129,15 +157,38 @@ public class StandardIndexEntries implements IndexEntries {
         add(indexEntry.getPosition());
     }
 
-    public void add(Integer position) {
-        entries.add(position);
+    public synchronized void add(int position) {
+        int currentSize = size;
+        ensureCapacity(currentSize + 1)[offset + currentSize] = position;
+        size = currentSize + 1;
     }
 
     @Override
-    public void addAll(List<IndexEntry> newEntries) {
-        List<Integer> positions = new ArrayList<>(newEntries.size());
-        newEntries.forEach(e -> positions.add(e.getPosition()));
-        entries.addAll(positions);
+    public synchronized void addAll(List<IndexEntry> newEntries) {
+        int currentSize = size;
+        int[] target = ensureCapacity(currentSize + newEntries.size());
+        int index = offset + currentSize;
+        for (IndexEntry entry : newEntries) {
+            target[index++] = entry.getPosition();
+        }
+        size = currentSize + newEntries.size();
+    }
+
+    /**
+     * Makes sure the array can hold the required number of entries. A new array is only published before the size is
+     * updated, so readers that see the new size also see the new array. Entries shared with another instance are
+     * copied before adding to them.
+     */
+    private int[] ensureCapacity(int required) {
+        int[] current = entries;
+        if (!shared && offset + required <= current.length) {
+            return current;
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, Math.max(required, size + (size >> 1)));
+        int[] grown = Arrays.copyOf(current, offset + capacity);
+        shared = false;
+        entries = grown;
+        return grown;
     }
 
     /**
@@ -145,7 +196,7 @@ public class StandardIndexEntries implements IndexEntries {
      */
     @Override
     public long firstSequenceNumber() {
-        if (entries.isEmpty()) {
+        if (isEmpty()) {
             return -1;
         }
         return firstSequenceNumber;
@@ -153,6 +204,37 @@ public class StandardIndexEntries implements IndexEntries {
 
     @Override
     public String toString() {
-        return "size: " + entries.size() + ", first: " + firstSequenceNumber() + ", last: " + lastSequenceNumber();
+        return "size: " + size + ", first: " + firstSequenceNumber() + ", last: " + lastSequenceNumber();
+    }
+
+    /**
+     * Read-only view on the positions, limited to the number of entries when the view was created.
+     */
+    private static class PositionList extends AbstractList<Integer> implements RandomAccess {
+
+        private final int size;
+        private final int[] entries;
+        private final int offset;
+
+        private PositionList(int size, int[] entries, int offset) {
+            this.size = size;
+            this.entries = entries;
+            this.offset = offset;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(String.format("%d: index out of bounds [0..%d]",
+                                                                  index,
+                                                                  size - 1));
+            }
+            return entries[offset + index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 }
@@ -38,17 +38,23 @@ public class StandardIndexEntriesSerializer implements Serializer<IndexEntries>
     }
 
     /**
-     * Writes a value to a data output.
+     * Writes a value to a data output. Positions are written as the difference with the previous position, to keep the
+     * packed values small. The number of entries is written as a negative value to distinguish this format from the
+     * older format with absolute positions.
      * @param out the data output to write to
      * @param value the value to serialize
      * @throws IOException when writing to data output fails
      */
     @Override
     public void serialize(@Nonnull DataOutput2 out, @Nonnull IndexEntries value) throws IOException {
-        out.packInt(value.size());
+        int size = value.size();
+        out.packInt(-size - 1);
         out.packLong(value.firstSequenceNumber());
-        for (Integer positionInfo : value.positions()) {
-            out.packInt(positionInfo);
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int position = value.position(i);
+            out.packInt(position - previous);
+            previous = position;
         }
     }
 
@@ -63,10 +69,16 @@ public class StandardIndexEntriesSerializer implements Serializer<IndexEntries>
     @Override
     public IndexEntries deserialize(@Nonnull DataInput2 input, int available) throws IOException {
         int count = input.unpackInt();
+        boolean delta = count < 0;
+        if (delta) {
+            count = -count - 1;
+        }
         long sequenceNumber = input.unpackLong();
-        Integer[] entries = new Integer[count];
+        int[] entries = new int[count];
+        int previous = 0;
         for (int i = 0; i < count; i++) {
-            entries[i] = input.unpackInt();
+            entries[i] = delta ? previous + input.unpackInt() : input.unpackInt();
+            previous = entries[i];
         }
         return new StandardIndexEntries(sequenceNumber, entries);
     }
@@ -30,16 +30,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
@@ -67,9 +68,9 @@ public class StandardIndexManager implements IndexManager {
     protected final Supplier<StorageProperties> storageProperties;
     protected final String context;
     private final EventType eventType;
-    private final ConcurrentNavigableMap<Long, Map<String, IndexEntries>> activeIndexes = new ConcurrentSkipListMap<>();
-    private final ConcurrentNavigableMap<FileVersion, PersistedBloomFilter> bloomFilterPerSegment = new ConcurrentSkipListMap<>();
-    private final ConcurrentSkipListMap<FileVersion, StandardIndex> indexMap = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Long, ActiveSegmentIndex> activeIndexes = new ConcurrentSkipListMap<>();
+    private final WeightedCache<FileVersion, PersistedBloomFilter> bloomFilterPerSegment;
+    private final WeightedCache<FileVersion, StandardIndex> indexMap;
     private final ConcurrentNavigableMap<Long, Integer> indexesDescending = new ConcurrentSkipListMap<>(Comparator.reverseOrder());
     private final MeterFactory.RateMeter indexOpenMeter;
     private final MeterFactory.RateMeter indexCloseMeter;
@@ -79,6 +80,7 @@ public class StandardIndexManager implements IndexManager {
     private final Counter bloomFilterCloseMeter;
     private ScheduledFuture<?> cleanupTask;
     private final String storagePath;
+    private volatile GlobalAggregateIndex globalIndex;
 
     private final Supplier<IndexManager> next;
 
@@ -128,7 +130,18 @@ public class StandardIndexManager implements IndexManager {
         this.indexCloseMeter = meterFactory.rateMeter(BaseMetricName.AXON_INDEX_CLOSE, tags);
         this.bloomFilterOpenMeter = meterFactory.counter(BaseMetricName.AXON_BLOOM_OPEN, tags);
         this.bloomFilterCloseMeter = meterFactory.counter(BaseMetricName.AXON_BLOOM_CLOSE, tags);
-        scheduledExecutorService.scheduleAtFixedRate(this::indexCleanup, 10, 10, TimeUnit.SECONDS);
+        this.indexMap = new WeightedCache<>("index",
+                                            this::indexWeight,
+                                            this::maxIndexWeight,
+                                            this::indexEvicted,
+                                            meterFactory,
+                                            tags);
+        this.bloomFilterPerSegment = new WeightedCache<>("bloom",
+                                                         this::bloomFilterWeight,
+                                                         this::maxBloomFilterWeight,
+                                                         this::bloomFilterEvicted,
+                                                         meterFactory,
+                                                         tags);
         this.next = next;
     }
 
@@ -151,6 +164,51 @@ public class StandardIndexManager implements IndexManager {
         }
 
         updateUseMmapAfterIndex();
+        if (properties.isUseGlobalIndex()) {
+            initGlobalIndex(properties);
+        }
+    }
+
+    /**
+     * Opens the global index and adds the segments that are not yet included in the background. The global index is
+     * only used for lookups once it contains all closed segments.
+     */
+    private void initGlobalIndex(StorageProperties properties) {
+        GlobalAggregateIndex index = new GlobalAggregateIndex(context, properties.globalIndex(storagePath));
+        index.open();
+        globalIndex = index;
+        long lastSegmentIncluded = index.isComplete() ? index.lastSegmentIncluded() : -1;
+        List<Long> missingSegments = new ArrayList<>(indexesDescending.headMap(lastSegmentIncluded).keySet());
+        if (missingSegments.isEmpty()) {
+            index.markComplete();
+            return;
+        }
+        logger.info("{}: adding {} segments to global index", context, missingSegments.size());
+        Thread builder = new DaemonThreadFactory("global-index-" + context + "-")
+                .newThread(() -> buildGlobalIndex(index, missingSegments));
+        builder.start();
+    }
+
+    private void buildGlobalIndex(GlobalAggregateIndex index, List<Long> segments) {
+        try {
+            for (Long segment : segments) {
+                if (index != globalIndex) {
+                    return;
+                }
+                Integer version = indexesDescending.get(segment);
+                if (version != null) {
+                    StandardIndex segmentIndex = new StandardIndex(new FileVersion(segment, version)).ensureReady();
+                    try {
+                        index.add(segment, segmentIndex.latestSequenceNumbers());
+                    } finally {
+                        segmentIndex.close();
+                    }
+                }
+            }
+            index.markComplete();
+        } catch (Exception ex) {
+            logger.warn("{}: failed to build global index, using segment indexes only", context, ex);
+        }
     }
 
     private void updateUseMmapAfterIndex() {
@@ -196,22 +254,7 @@ public class StandardIndexManager implements IndexManager {
             throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR,
                                                  "Failed to delete temp index file:" + tempFile);
         }
-        DBMaker.Maker maker = DBMaker.fileDB(tempFile);
-        if (properties.isUseMmapIndex()) {
-            maker.fileMmapEnable();
-            if (properties.isForceCleanMmapIndex()) {
-                maker.cleanerHackEnable();
-            }
-        } else {
-            maker.fileChannelEnable();
-        }
-        DB db = maker.make();
-        try (HTreeMap<String, IndexEntries> map = db.hashMap(AGGREGATE_MAP, Serializer.STRING,
-                                                             StandardIndexEntriesSerializer.get())
-                                                    .createOrOpen()) {
-            map.putAll(positionsPerAggregate);
-        }
-        db.close();
+        writeIndex(tempFile, positionsPerAggregate, properties);
 
         try {
             Files.move(tempFile.toPath(), properties.index(storagePath, segment).toPath(),
@@ -226,15 +269,44 @@ public class StandardIndexManager implements IndexManager {
         PersistedBloomFilter filter = new PersistedBloomFilter(properties.bloomFilter(storagePath, segment)
                                                                          .getAbsolutePath(),
                                                                positionsPerAggregate.keySet().size(),
-                                                               properties.getBloomIndexFpp());
+                                                               properties.getBloomIndexFpp(),
+                                                               properties.isUseBlockedBloomFilter());
         filter.create();
         filter.insertAll(positionsPerAggregate.keySet());
         filter.store();
         bloomFilterPerSegment.put(segment, filter);
+        GlobalAggregateIndex index = globalIndex;
+        if (index != null) {
+            index.add(segment.segment(), positionsPerAggregate);
+        }
         indexesDescending.put(segment.segment(), segment.segmentVersion());
         getIndex(segment);
     }
 
+    private void writeIndex(File indexFile, Map<String, IndexEntries> positionsPerAggregate,
+                            StorageProperties properties) {
+        if (properties.isSortedIndexFormat()) {
+            SortedIndexFile.write(indexFile, positionsPerAggregate);
+            return;
+        }
+        DBMaker.Maker maker = DBMaker.fileDB(indexFile);
+        if (properties.isUseMmapIndex()) {
+            maker.fileMmapEnable();
+            if (properties.isForceCleanMmapIndex()) {
+                maker.cleanerHackEnable();
+            }
+        } else {
+            maker.fileChannelEnable();
+        }
+        DB db = maker.make();
+        try (HTreeMap<String, IndexEntries> map = db.hashMap(AGGREGATE_MAP, Serializer.STRING,
+                                                             StandardIndexEntriesSerializer.get())
+                                                    .createOrOpen()) {
+            map.putAll(positionsPerAggregate);
+        }
+        db.close();
+    }
+
     private IndexEntries getPositions(FileVersion fileVersion, String aggregateId) {
         if (notInBloomIndex(fileVersion, aggregateId)) {
             return null;
@@ -257,7 +329,7 @@ public class StandardIndexManager implements IndexManager {
 
     private StandardIndex getIndex(FileVersion fileVersion) {
         try {
-            return indexMap.computeIfAbsent(fileVersion, StandardIndex::new).ensureReady();
+            return indexMap.get(fileVersion, f -> new StandardIndex(f).ensureReady()).ensureReady();
         } catch (IndexNotFoundException indexNotFoundException) {
             StandardIndex remove = indexMap.remove(fileVersion);
             if (remove != null) {
@@ -267,27 +339,59 @@ public class StandardIndexManager implements IndexManager {
         }
     }
 
-    private void indexCleanup() {
+    /**
+     * Indexes are weighted by the size of the index file when a maximum memory for indexes is configured, otherwise
+     * the number of indexes is limited.
+     */
+    private long indexWeight(StandardIndex index) {
+        return storageProperties.get().getIndexCacheMemory() > 0 ? index.size() : 1;
+    }
+
+    private long maxIndexWeight() {
         StorageProperties properties = storageProperties.get();
-        while (indexMap.size() > properties.getMaxIndexesInMemory()) {
-            Map.Entry<FileVersion, StandardIndex> entry = indexMap.pollFirstEntry(); //TODO
-            logger.debug("{}: Closing index {}", context, entry.getKey());
-            cleanupTask = scheduledExecutorService.schedule(() -> entry.getValue().close(), 2, TimeUnit.SECONDS);
-        }
+        return properties.getIndexCacheMemory() > 0 ? properties.getIndexCacheMemory() :
+                properties.getMaxIndexesInMemory();
+    }
+
+    private void indexEvicted(FileVersion segment, StandardIndex index) {
+        logger.debug("{}: Closing index {}", context, segment);
+        cleanupTask = scheduledExecutorService.schedule(index::close, 2, TimeUnit.SECONDS);
+    }
 
-        while (bloomFilterPerSegment.size() > properties.getMaxBloomFiltersInMemory()) {
-            Map.Entry<FileVersion, PersistedBloomFilter> removed = bloomFilterPerSegment.pollFirstEntry();
-            logger.debug("{}: Removed bloom filter for {} from memory", context, removed.getKey());
-            bloomFilterCloseMeter.increment();
+    /**
+     * Memory mapped bloom filters do not use heap space and are never evicted. Other bloom filters are weighted by
+     * their size when a maximum memory for bloom filters is configured, otherwise the number of bloom filters is
+     * limited.
+     */
+    private long bloomFilterWeight(PersistedBloomFilter filter) {
+        if (filter.isMapped()) {
+            return 0;
         }
+        return storageProperties.get().getBloomFilterCacheMemory() > 0 ? filter.size() : 1;
+    }
+
+    private long maxBloomFilterWeight() {
+        StorageProperties properties = storageProperties.get();
+        return properties.getBloomFilterCacheMemory() > 0 ? properties.getBloomFilterCacheMemory() :
+                properties.getMaxBloomFiltersInMemory();
+    }
+
+    private void bloomFilterEvicted(FileVersion segment, PersistedBloomFilter filter) {
+        logger.debug("{}: Removed bloom filter for {} from memory", context, segment);
+        bloomFilterCloseMeter.increment();
     }
 
     private boolean notInBloomIndex(FileVersion fileVersion, String aggregateId) {
-        PersistedBloomFilter persistedBloomFilter = bloomFilterPerSegment.computeIfAbsent(fileVersion,
-                                                                                          this::loadBloomFilter);
+        PersistedBloomFilter persistedBloomFilter = bloomFilterPerSegment.get(fileVersion, this::loadBloomFilter);
         return persistedBloomFilter != null && !persistedBloomFilter.mightContain(aggregateId);
     }
 
+    private void closeBloomFilter(PersistedBloomFilter filter) {
+        if (filter != null) {
+            filter.close(storageProperties.get().isCleanRequired());
+        }
+    }
+
     private PersistedBloomFilter loadBloomFilter(FileVersion fileVersion) {
         logger.debug("{}: open bloom filter for {}", context, fileVersion.segment());
         StorageProperties properties = storageProperties.get();
@@ -313,9 +417,8 @@ public class StandardIndexManager implements IndexManager {
         if (indexesDescending.containsKey(segment)) {
             throw new IndexNotFoundException(segment + ": already completed");
         }
-        activeIndexes.computeIfAbsent(segment, s -> new ConcurrentHashMap<>())
-                     .computeIfAbsent(aggregateId, a -> new StandardIndexEntries(indexEntry.getSequenceNumber()))
-                     .add(indexEntry);
+        activeIndexes.computeIfAbsent(segment, s -> newActiveIndex())
+                     .add(aggregateId, indexEntry);
     }
 
     /**
@@ -330,12 +433,14 @@ public class StandardIndexManager implements IndexManager {
             throw new IndexNotFoundException(segment + ": already completed");
         }
 
-        indexEntries.forEach((aggregateId, entries) ->
-                                     activeIndexes.computeIfAbsent(segment, s -> new ConcurrentHashMap<>())
-                                                  .computeIfAbsent(aggregateId,
-                                                                   a -> new StandardIndexEntries(
-                                                                           entries.get(0).getSequenceNumber()))
-                                                  .addAll(entries));
+        ActiveSegmentIndex activeIndex = activeIndexes.computeIfAbsent(segment, s -> newActiveIndex());
+        indexEntries.forEach(activeIndex::addAll);
+    }
+
+    private ActiveSegmentIndex newActiveIndex() {
+        return storageProperties.get().isOffHeapActiveIndex() ?
+                new OffHeapActiveSegmentIndex() :
+                new HeapActiveSegmentIndex();
     }
 
     @Override
@@ -363,35 +468,22 @@ public class StandardIndexManager implements IndexManager {
             throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR,
                                                  "Failed to delete temp index file:" + tempFile);
         }
-        DBMaker.Maker maker = DBMaker.fileDB(tempFile);
-        if (storageProperties.get().isUseMmapIndex()) {
-            maker.fileMmapEnable();
-            if (storageProperties.get().isForceCleanMmapIndex()) {
-                maker.cleanerHackEnable();
+        Map<String, IndexEntries> positionsPerAggregate = new HashMap<>();
+        indexEntriesMap.forEach((key, value) -> {
+            IndexEntry first = value.get(0);
+            int[] positions = new int[value.size()];
+            for (int i = 0; i < value.size(); i++) {
+                positions[i] = value.get(i).getPosition();
             }
-        } else {
-            maker.fileChannelEnable();
-        }
-        DB db = maker.make();
-        try (HTreeMap<String, IndexEntries> map = db.hashMap(AGGREGATE_MAP, Serializer.STRING,
-                                                             StandardIndexEntriesSerializer.get())
-                                                    .createOrOpen()) {
-            indexEntriesMap.forEach((key, value) -> {
-                IndexEntry first = value.get(0);
-                Integer[] positions = new Integer[value.size()];
-                for (int i = 0; i < value.size(); i++) {
-                    positions[i] = value.get(i).getPosition();
-                }
-                map.put(key, new StandardIndexEntries(first.getSequenceNumber(),
-                                                      positions));
-            });
-        }
-        db.close();
+            positionsPerAggregate.put(key, new StandardIndexEntries(first.getSequenceNumber(), positions));
+        });
+        writeIndex(tempFile, positionsPerAggregate, storageProperties.get());
         PersistedBloomFilter filter = new PersistedBloomFilter(storageProperties.get()
                                                                                 .bloomFilter(storagePath, newVersion)
                                                                                 .getAbsolutePath(),
                                                                indexEntriesMap.keySet().size(),
-                                                               storageProperties.get().getBloomIndexFpp());
+                                                               storageProperties.get().getBloomIndexFpp(),
+                                                               storageProperties.get().isUseBlockedBloomFilter());
         filter.create();
         filter.insertAll(indexEntriesMap.keySet());
         filter.store();
@@ -404,6 +496,36 @@ public class StandardIndexManager implements IndexManager {
         return getIndex(segment).latestSequenceNumbers();
     }
 
+    @Override
+    public Stream<AggregateSequence> recentSequenceNumbers(int maxSegments) {
+        List<Long> activeSegments = new ArrayList<>(activeIndexes.descendingKeySet());
+        List<FileVersion> closedSegments = new ArrayList<>();
+        for (Map.Entry<Long, Integer> segment : indexesDescending.entrySet()) {
+            if (activeSegments.size() + closedSegments.size() >= maxSegments) {
+                break;
+            }
+            closedSegments.add(new FileVersion(segment.getKey(), segment.getValue()));
+        }
+        Stream<AggregateSequence> active =
+                activeSegments.stream()
+                              .limit(maxSegments)
+                              .map(activeIndexes::get)
+                              .filter(Objects::nonNull)
+                              .flatMap(index -> index.entries().entrySet().stream())
+                              .map(e -> new AggregateSequence(e.getKey(), e.getValue().lastSequenceNumber()));
+        Stream<AggregateSequence> closed =
+                closedSegments.stream()
+                              .flatMap(this::latestSequenceNumbers)
+                              .map(e -> new AggregateSequence(e.aggregateId(), e.entries().lastSequenceNumber()));
+        Stream<AggregateSequence> recent = Stream.concat(active, closed);
+        int remaining = maxSegments - activeSegments.size() - closedSegments.size();
+        IndexManager nextIndexManager = next.get();
+        if (nextIndexManager != null && remaining > 0) {
+            recent = Stream.concat(recent, nextIndexManager.recentSequenceNumbers(remaining));
+        }
+        return recent;
+    }
+
     @Override
     public SortedMap<FileVersion, IndexEntries> lookupAggregateInClosedSegments(String aggregateId,
                                                                                 long firstSequenceNumber,
@@ -412,7 +534,7 @@ public class StandardIndexManager implements IndexManager {
                                                                                 long minToken,
                                                                                 long minTokenInPreviousSegment) {
         SortedMap<FileVersion, IndexEntries> results = new TreeMap<>();
-        for (Map.Entry<Long, Integer> index : indexesDescending.entrySet()) {
+        for (Map.Entry<Long, Integer> index : closedSegmentsFor(aggregateId).entrySet()) {
             if (minTokenInPreviousSegment < minToken) {
                 return results;
             }
@@ -449,11 +571,18 @@ public class StandardIndexManager implements IndexManager {
      */
     @Override
     public void complete(FileVersion segment) {
-        doCreateIndex(segment, activeIndexes.get(segment.segment()));
+        ActiveSegmentIndex activeIndex = activeIndexes.get(segment.segment());
+        doCreateIndex(segment, activeIndex == null ? null : activeIndex.entries());
         activeIndexes.remove(segment.segment());
         updateUseMmapAfterIndex();
     }
 
+    @Override
+    public int activeAggregateCount(long segment) {
+        ActiveSegmentIndex entries = activeIndexes.get(segment);
+        return entries == null ? -1 : entries.size();
+    }
+
     /**
      * Returns the last sequence number of an aggregate if this is found.
      *
@@ -477,11 +606,15 @@ public class StandardIndexManager implements IndexManager {
                 checked++;
             }
         }
-        for (Map.Entry<Long, Integer> segment : indexesDescending.entrySet()) {
+        GlobalAggregateIndex.LastSegment lastSegment = lastSegmentFromGlobalIndex(aggregateId);
+        for (Map.Entry<Long, Integer> segment : closedSegmentsFor(aggregateId).entrySet()) {
             if (checked >= maxSegments) {
                 return Optional.empty();
             }
             if (segment.getKey() <= maxTokenHint) {
+                if (lastSegment != null && lastSegment.segment() == segment.getKey()) {
+                    return Optional.of(lastSegment.sequenceNumber());
+                }
                 IndexEntries indexEntries = getPositions(new FileVersion(segment.getKey(), segment.getValue()),
                                                          aggregateId);
                 if (indexEntries != null) {
@@ -537,7 +670,7 @@ public class StandardIndexManager implements IndexManager {
     @Override
     public SegmentIndexEntries lastIndexEntriesFromClosedSegments(String aggregateId, long maxSequenceNumber,
                                                                   long startAtToken) {
-        for (Map.Entry<Long, Integer> segment : indexesDescending.entrySet()) {
+        for (Map.Entry<Long, Integer> segment : closedSegmentsFor(aggregateId).entrySet()) {
             FileVersion fileVersion = new FileVersion(segment.getKey(), segment.getValue());
             IndexEntries indexEntries = getPositions(fileVersion, aggregateId);
             if (indexEntries != null && indexEntries.firstSequenceNumber() < maxSequenceNumber) {
@@ -555,6 +688,36 @@ public class StandardIndexManager implements IndexManager {
         return null;
     }
 
+    /**
+     * Returns the closed segments that may contain events for the aggregate. When the global index is available, this
+     * only contains the segments up to the last segment for the aggregate, or no segments at all if the aggregate does
+     * not occur in this tier.
+     */
+    private Map<Long, Integer> closedSegmentsFor(String aggregateId) {
+        GlobalAggregateIndex index = globalIndex;
+        if (index == null || !index.isReady()) {
+            return indexesDescending;
+        }
+        GlobalAggregateIndex.LastSegment lastSegment = index.get(aggregateId);
+        if (lastSegment == null) {
+            return Collections.emptyMap();
+        }
+        return indexesDescending.tailMap(lastSegment.segment(), true);
+    }
+
+    boolean isGlobalIndexReady() {
+        GlobalAggregateIndex index = globalIndex;
+        return index != null && index.isReady();
+    }
+
+    private GlobalAggregateIndex.LastSegment lastSegmentFromGlobalIndex(String aggregateId) {
+        GlobalAggregateIndex index = globalIndex;
+        if (index == null || !index.isReady()) {
+            return null;
+        }
+        return index.get(aggregateId);
+    }
+
     /**
      * Checks if the index and bloom filter for the segment exist.
      *
@@ -589,7 +752,7 @@ public class StandardIndexManager implements IndexManager {
                 if (index != null) {
                     index.close();
                 }
-                bloomFilterPerSegment.remove(fileVersion);
+                closeBloomFilter(bloomFilterPerSegment.remove(fileVersion));
             }
         }
         return FileUtils.delete(properties.index(storagePath, segment)) &&
@@ -602,7 +765,7 @@ public class StandardIndexManager implements IndexManager {
         if (index != null) {
             index.close();
         }
-        bloomFilterPerSegment.remove(fileVersion);
+        closeBloomFilter(bloomFilterPerSegment.remove(fileVersion));
         return FileUtils.delete(storageProperties.get().index(storagePath, fileVersion)) &&
                 FileUtils.delete(storageProperties.get().bloomFilter(storagePath, fileVersion));
     }
@@ -647,7 +810,8 @@ public class StandardIndexManager implements IndexManager {
             if (minTokenInPreviousSegment < minToken) {
                 return results;
             }
-            IndexEntries entries = activeIndexes.getOrDefault(segment, Collections.emptyMap()).get(aggregateId);
+            ActiveSegmentIndex activeIndex = activeIndexes.get(segment);
+            IndexEntries entries = activeIndex == null ? null : activeIndex.get(aggregateId);
             if (entries != null) {
                 int nrOfEntries = addToResult(firstSequenceNumber,
                                               lastSequenceNumber,
@@ -691,10 +855,14 @@ public class StandardIndexManager implements IndexManager {
      */
     public void cleanup(boolean delete) {
         activeIndexes.clear();
-        bloomFilterPerSegment.clear();
-        indexMap.forEach((segment, index) -> index.close());
-        indexMap.clear(); //TODO
+        bloomFilterPerSegment.clear((segment, filter) -> closeBloomFilter(filter));
+        indexMap.clear((segment, index) -> index.close());
         indexesDescending.clear();
+        GlobalAggregateIndex index = globalIndex;
+        globalIndex = null;
+        if (index != null) {
+            index.close(delete);
+        }
         if (cleanupTask != null && !cleanupTask.isDone()) {
             cleanupTask.cancel(true);
         }
@@ -723,6 +891,8 @@ public class StandardIndexManager implements IndexManager {
         private volatile boolean initialized;
         private HTreeMap<String, IndexEntries> positions;
         private DB db;
+        private volatile SortedIndexFile sortedIndex;
+        private long size;
 
 
         private StandardIndex(FileVersion fileVersion) {
@@ -730,6 +900,10 @@ public class StandardIndexManager implements IndexManager {
         }
 
         public IndexEntries getPositions(String aggregateId) {
+            SortedIndexFile sorted = sortedIndex;
+            if (sorted != null) {
+                return sorted.getPositions(aggregateId);
+            }
             return positions.get(aggregateId);
         }
 
@@ -738,6 +912,13 @@ public class StandardIndexManager implements IndexManager {
             if (logger.isDebugEnabled()) {
                 logger.debug("{}: close {}", segment, storageProperties.get().index(storagePath, segment));
             }
+            SortedIndexFile sorted = sortedIndex;
+            if (sorted != null) {
+                indexCloseMeter.mark();
+                sortedIndex = null;
+                initialized = false;
+                sorted.close(storageProperties.get().isForceCleanMmapIndex());
+            }
             if (db != null && !db.isClosed()) {
                 indexCloseMeter.mark();
                 positions.close();
@@ -745,26 +926,45 @@ public class StandardIndexManager implements IndexManager {
             }
         }
 
+        /**
+         * @return the size of the index file
+         */
+        private long size() {
+            return size;
+        }
+
+        private boolean isOpen() {
+            return initialized && (sortedIndex != null || !db.isClosed());
+        }
+
         public StandardIndex ensureReady() {
-            if (initialized && !db.isClosed()) {
+            if (isOpen()) {
                 return this;
             }
 
             synchronized (initLock) {
-                if (initialized && !db.isClosed()) {
+                if (isOpen()) {
                     return this;
                 }
 
                 StorageProperties properties = storageProperties.get();
-                if (!properties.index(storagePath, segment).exists()) {
+                File indexFile = properties.index(storagePath, segment);
+                if (!indexFile.exists()) {
                     throw new IndexNotFoundException("Index not found for segment: " + segment);
                 }
                 indexOpenMeter.mark();
-                logger.debug("{}: open {}", segment, properties.index(storagePath, segment));
-                DBMaker.Maker maker = DBMaker.fileDB(properties.index(storagePath, segment))
+                logger.debug("{}: open {}", segment, indexFile);
+                size = indexFile.length();
+                boolean useMmap = properties.isUseMmapIndex() && segment.segment() > useMmapAfterIndex.get();
+                if (SortedIndexFile.isSortedIndex(indexFile)) {
+                    this.sortedIndex = SortedIndexFile.open(indexFile, useMmap);
+                    initialized = true;
+                    return this;
+                }
+                DBMaker.Maker maker = DBMaker.fileDB(indexFile)
                                              .readOnly()
                                              .fileLockDisable();
-                if (properties.isUseMmapIndex() && segment.segment() > useMmapAfterIndex.get()) {
+                if (useMmap) {
                     maker.fileMmapEnable();
                     if (properties.isForceCleanMmapIndex()) {
                         maker.cleanerHackEnable();
@@ -781,6 +981,10 @@ public class StandardIndexManager implements IndexManager {
         }
 
         public Stream<AggregateIndexEntries> latestSequenceNumbers() {
+            SortedIndexFile sorted = sortedIndex;
+            if (sorted != null) {
+                return sorted.latestSequenceNumbers();
+            }
             return positions.entrySet().stream().map(e -> new AggregateIndexEntries(e.getKey(), e.getValue()));
         }
     }
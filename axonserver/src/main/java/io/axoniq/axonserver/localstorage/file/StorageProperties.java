@@ -10,6 +10,7 @@
 package io.axoniq.axonserver.localstorage.file;
 
 import io.axoniq.axonserver.config.SystemInfoProvider;
+import io.axoniq.axonserver.localstorage.transformation.Compression;
 import org.springframework.util.Assert;
 import org.springframework.util.unit.DataSize;
 
@@ -24,6 +25,9 @@ import java.util.Map;
 public class StorageProperties implements Cloneable {
 
     public static final String TRANSFORMED_SUFFIX = ".transformed";
+    public static final String SORTED_INDEX_FORMAT = "sorted";
+    private static final String GLOBAL_INDEX_NAME = "aggregates";
+    private static final String PREALLOCATED_SUFFIX = ".prealloc";
     private static final String PATH_FORMAT = "%s/%020d%s";
     private static final String TEMP_PATH_FORMAT = PATH_FORMAT + ".temp";
     private static final String PATH_WITH_VERSION_FORMAT = "%s/%020d_%05d%s";
@@ -54,6 +58,18 @@ public class StorageProperties implements Cloneable {
      * File suffix for bloom files.
      */
     private String bloomIndexSuffix = ".bloom";
+    /**
+     * File suffix for segment summary files.
+     */
+    private String summarySuffix = ".summary";
+    /**
+     * File suffix for transaction position index files.
+     */
+    private String positionIndexSuffix = ".pindex";
+    /**
+     * File suffix for payload type index files.
+     */
+    private String payloadTypeIndexSuffix = ".ptypes";
 
     /**
      * Size for new storage segments.
@@ -73,6 +89,11 @@ public class StorageProperties implements Cloneable {
      * False-positive percentage allowed for bloom index. Decreasing the value increases the size of the bloom indexes.
      */
     private float bloomIndexFpp = 0.03f;
+    /**
+     * Create new bloom filters as memory mapped blocked bloom filters. These filters do not use heap space and do not
+     * count for the maximum number of bloom filters in memory.
+     */
+    private boolean useBlockedBloomFilter = false;
     /**
      * Interval to force syncing files to disk (ms)
      */
@@ -81,6 +102,10 @@ public class StorageProperties implements Cloneable {
      * Number of segments to validate to on startup after unclean shutdown.
      */
     private int validationSegments = 10;
+    /**
+     * Number of segments processed in parallel when creating missing indexes and validating segments at startup
+     */
+    private int initializationThreads = 4;
     /**
      * Number of recent segments that Axon Server keeps memory mapped
      */
@@ -97,14 +122,67 @@ public class StorageProperties implements Cloneable {
      * Maximum number of indexes to keep open in memory
      */
     private int maxIndexesInMemory = 50;
+    /**
+     * Maximum size (in bytes) of the index files kept open. When set, the open indexes are limited by their size
+     * instead of by {@code maxIndexesInMemory}.
+     */
+    private long indexCacheMemory = 0;
     /**
      * Maximum number of bloom filters to keep in memory
      */
     private int maxBloomFiltersInMemory = 100;
+    /**
+     * Maximum memory (in bytes) for bloom filters on the heap. When set, the bloom filters in memory are limited by
+     * their size instead of by {@code maxBloomFiltersInMemory}.
+     */
+    private long bloomFilterCacheMemory = 0;
+    /**
+     * Maximum memory (in bytes) for payload type indexes of completed segments kept in memory.
+     */
+    private long payloadTypeIndexCacheMemory = 16 * 1024 * 1024;
+    /**
+     * Maximum memory (in bytes) for recently stored events kept in memory to serve aggregate reads. The cache is
+     * disabled when this is 0.
+     */
+    private long recentEventsCacheMemory = 0;
     /**
      * Interval (ms) to check if there are files that are complete and can be closed
      */
     private long syncInterval = 1000;
+    /**
+     * Confirm transactions only after they are forced to disk, forcing pending transactions as a group
+     */
+    private boolean groupCommit = false;
+    /**
+     * Maximum time (microseconds) a transaction waits for a group commit
+     */
+    private long groupCommitMaxWait = 500;
+    /**
+     * Number of pending bytes that triggers an immediate group commit
+     */
+    private int groupCommitMaxBytes = 1024 * 1024;
+    /**
+     * Number of pending transactions that triggers an immediate group commit
+     */
+    private int groupCommitMaxTransactions = 1000;
+    /**
+     * Prepare the file for the next segment in the background before the current segment is full. Not supported on
+     * Windows, as memory mapped files cannot be renamed there.
+     */
+    private boolean preallocateSegments = false;
+    /**
+     * Combine transactions that are waiting for the storage into a single block
+     */
+    private boolean combineTransactions = false;
+    /**
+     * Maximum size (bytes) of the events in a combined transaction
+     */
+    private int combineTransactionsMaxBytes = 1024 * 1024;
+    /**
+     * Compression algorithm for events in new segments (NONE or LZ4). Existing segments are read with the algorithm
+     * they were written with.
+     */
+    private Compression compression = Compression.NONE;
 
     /**
      * Use memory mapped files for index files
@@ -124,6 +202,11 @@ public class StorageProperties implements Cloneable {
      * Define how many events to prefetch from disk when streaming events to the client
      */
     private int eventsPerSegmentPrefetch = 10;
+    /**
+     * Number of segments that are read concurrently when reading the events for an aggregate. The segments are
+     * opened and read on the data fetcher threads, the events are still returned in sequence number order.
+     */
+    private int aggregateReadSegmentConcurrency = 2;
 
     /**
      * Size of the buffer when reading from non-memory mapped files. Defaults to 32kiB.
@@ -140,7 +223,45 @@ public class StorageProperties implements Cloneable {
     private Duration[] retentionTime = new Duration[]{
             Duration.ofDays(7)
     };
+    /**
+     * Format for new index files, {@value #SORTED_INDEX_FORMAT} for immutable sorted index files, otherwise MapDB
+     */
     private String indexFormat;
+    /**
+     * Maintain a global index with the last segment and sequence number per aggregate, to avoid checking all segments
+     * when looking for an aggregate.
+     */
+    private boolean useGlobalIndex = false;
+    /**
+     * Write a summary file with the token and timestamp ranges for each completed segment, to avoid scanning segments
+     * when searching for a token by timestamp.
+     */
+    private boolean useSegmentSummary = false;
+    /**
+     * Number of bytes between entries in the sparse index with the positions of transactions in a segment. Readers
+     * starting at a token in the middle of a segment use this index to skip to a nearby transaction. Set to 0 to
+     * disable the index.
+     */
+    private int transactionPositionIndexInterval = 0;
+    /**
+     * Maintain an index per segment with the payload types in the segment, so tracking event processors that ignore
+     * payload types can skip blocks of events that only contain these types.
+     */
+    private boolean usePayloadTypeIndex = false;
+    /**
+     * Keep the index of the active segments in direct memory instead of on the heap. Reduces the heap usage when the
+     * active segments contain events for a large number of aggregates.
+     */
+    private boolean offHeapActiveIndex = false;
+    /**
+     * Maximum number of aggregates in the cache with the last sequence numbers, used to validate the sequence numbers
+     * of new events.
+     */
+    private int sequenceNumberCacheSize = 100_000;
+    /**
+     * Number of recent segments to read at startup to fill the sequence number cache, 0 to disable.
+     */
+    private int sequenceNumberCacheWarmUpSegments = 0;
     private int segmentsForSequenceNumberCheck = 10;
 
     public StorageProperties(SystemInfoProvider systemInfoProvider) {
@@ -148,8 +269,12 @@ public class StorageProperties implements Cloneable {
     }
 
     public StorageProperties(SystemInfoProvider systemInfoProvider, String eventsSuffix, String indexSuffix,
-                             String bloomIndexSuffix, String newIndexSuffix, String globalIndexSuffix) {
+                             String bloomIndexSuffix, String newIndexSuffix, String globalIndexSuffix,
+                             String summarySuffix, String positionIndexSuffix, String payloadTypeIndexSuffix) {
         this(systemInfoProvider);
+        this.payloadTypeIndexSuffix = payloadTypeIndexSuffix;
+        this.summarySuffix = summarySuffix;
+        this.positionIndexSuffix = positionIndexSuffix;
         this.eventsSuffix = eventsSuffix;
         this.indexSuffix = indexSuffix;
         this.bloomIndexSuffix = bloomIndexSuffix;
@@ -230,6 +355,20 @@ public class StorageProperties implements Cloneable {
         this.eventsPerSegmentPrefetch = eventsPerSegmentPrefetch;
     }
 
+    public int getAggregateReadSegmentConcurrency() {
+        return aggregateReadSegmentConcurrency;
+    }
+
+    public void setAggregateReadSegmentConcurrency(int aggregateReadSegmentConcurrency) {
+        this.aggregateReadSegmentConcurrency = aggregateReadSegmentConcurrency;
+    }
+
+    public StorageProperties withAggregateReadSegmentConcurrency(int aggregateReadSegmentConcurrency) {
+        StorageProperties clone = cloneProperties();
+        clone.aggregateReadSegmentConcurrency = aggregateReadSegmentConcurrency;
+        return clone;
+    }
+
 
     public float getBloomIndexFpp() {
         return bloomIndexFpp;
@@ -239,6 +378,20 @@ public class StorageProperties implements Cloneable {
         this.bloomIndexFpp = bloomIndexFpp;
     }
 
+    public boolean isUseBlockedBloomFilter() {
+        return useBlockedBloomFilter;
+    }
+
+    public void setUseBlockedBloomFilter(boolean useBlockedBloomFilter) {
+        this.useBlockedBloomFilter = useBlockedBloomFilter;
+    }
+
+    public StorageProperties withUseBlockedBloomFilter(boolean useBlockedBloomFilter) {
+        StorageProperties clone = cloneProperties();
+        clone.useBlockedBloomFilter = useBlockedBloomFilter;
+        return clone;
+    }
+
     public File bloomFilter(String customStorage, long segment) {
         return new File(String.format(PATH_FORMAT, customStorage, segment, bloomIndexSuffix));
     }
@@ -339,7 +492,7 @@ public class StorageProperties implements Cloneable {
     }
 
     public int getFlags() {
-        return flags;
+        return flags | compression.flag();
     }
 
     public String getPrimaryStorage(String context) {
@@ -383,6 +536,20 @@ public class StorageProperties implements Cloneable {
         this.validationSegments = validationSegments;
     }
 
+    public int getInitializationThreads() {
+        return initializationThreads;
+    }
+
+    public void setInitializationThreads(int initializationThreads) {
+        this.initializationThreads = initializationThreads;
+    }
+
+    public StorageProperties withInitializationThreads(int initializationThreads) {
+        StorageProperties clone = cloneProperties();
+        clone.initializationThreads = initializationThreads;
+        return clone;
+    }
+
     public int getMemoryMappedSegments() {
         return memoryMappedSegments;
     }
@@ -431,6 +598,92 @@ public class StorageProperties implements Cloneable {
         this.syncInterval = syncInterval;
     }
 
+    public boolean isGroupCommit() {
+        return groupCommit;
+    }
+
+    public void setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    public long getGroupCommitMaxWait() {
+        return groupCommitMaxWait;
+    }
+
+    public void setGroupCommitMaxWait(long groupCommitMaxWait) {
+        this.groupCommitMaxWait = groupCommitMaxWait;
+    }
+
+    public int getGroupCommitMaxBytes() {
+        return groupCommitMaxBytes;
+    }
+
+    public void setGroupCommitMaxBytes(int groupCommitMaxBytes) {
+        this.groupCommitMaxBytes = groupCommitMaxBytes;
+    }
+
+    public int getGroupCommitMaxTransactions() {
+        return groupCommitMaxTransactions;
+    }
+
+    public void setGroupCommitMaxTransactions(int groupCommitMaxTransactions) {
+        this.groupCommitMaxTransactions = groupCommitMaxTransactions;
+    }
+
+    public StorageProperties withGroupCommit(boolean groupCommit) {
+        StorageProperties clone = cloneProperties();
+        clone.groupCommit = groupCommit;
+        return clone;
+    }
+
+    public boolean isPreallocateSegments() {
+        return preallocateSegments && !systemInfoProvider.javaOnWindows();
+    }
+
+    public void setPreallocateSegments(boolean preallocateSegments) {
+        this.preallocateSegments = preallocateSegments;
+    }
+
+    public boolean isCombineTransactions() {
+        return combineTransactions;
+    }
+
+    public void setCombineTransactions(boolean combineTransactions) {
+        this.combineTransactions = combineTransactions;
+    }
+
+    public int getCombineTransactionsMaxBytes() {
+        return combineTransactionsMaxBytes;
+    }
+
+    public void setCombineTransactionsMaxBytes(int combineTransactionsMaxBytes) {
+        this.combineTransactionsMaxBytes = combineTransactionsMaxBytes;
+    }
+
+    public StorageProperties withCombineTransactions(boolean combineTransactions) {
+        StorageProperties clone = cloneProperties();
+        clone.combineTransactions = combineTransactions;
+        return clone;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public StorageProperties withCompression(Compression compression) {
+        StorageProperties clone = cloneProperties();
+        clone.compression = compression;
+        return clone;
+    }
+
+    public File preallocatedSegment(String storagePath) {
+        return new File(storagePath + File.separator + "next" + eventsSuffix + PREALLOCATED_SUFFIX);
+    }
+
     public int getReadBufferSize() {
         return readBufferSize;
     }
@@ -520,12 +773,196 @@ public class StorageProperties implements Cloneable {
         this.indexFormat = indexFormat;
     }
 
+    public boolean isUseGlobalIndex() {
+        return useGlobalIndex;
+    }
+
+    public void setUseGlobalIndex(boolean useGlobalIndex) {
+        this.useGlobalIndex = useGlobalIndex;
+    }
+
+    public StorageProperties withUseGlobalIndex(boolean useGlobalIndex) {
+        StorageProperties clone = cloneProperties();
+        clone.useGlobalIndex = useGlobalIndex;
+        return clone;
+    }
+
+    public File globalIndex(String storagePath) {
+        return new File(storagePath, GLOBAL_INDEX_NAME + globalIndexSuffix);
+    }
+
+    public String getSummarySuffix() {
+        return summarySuffix;
+    }
+
+    public void setSummarySuffix(String summarySuffix) {
+        this.summarySuffix = summarySuffix;
+    }
+
+    public boolean isUseSegmentSummary() {
+        return useSegmentSummary;
+    }
+
+    public void setUseSegmentSummary(boolean useSegmentSummary) {
+        this.useSegmentSummary = useSegmentSummary;
+    }
+
+    public StorageProperties withUseSegmentSummary(boolean useSegmentSummary) {
+        StorageProperties clone = cloneProperties();
+        clone.useSegmentSummary = useSegmentSummary;
+        return clone;
+    }
+
+    public File summary(String storagePath, long segment) {
+        return new File(String.format(PATH_FORMAT, storagePath, segment, summarySuffix));
+    }
+
+    public String getPositionIndexSuffix() {
+        return positionIndexSuffix;
+    }
+
+    public void setPositionIndexSuffix(String positionIndexSuffix) {
+        this.positionIndexSuffix = positionIndexSuffix;
+    }
+
+    public int getTransactionPositionIndexInterval() {
+        return transactionPositionIndexInterval;
+    }
+
+    public void setTransactionPositionIndexInterval(int transactionPositionIndexInterval) {
+        this.transactionPositionIndexInterval = transactionPositionIndexInterval;
+    }
+
+    public StorageProperties withTransactionPositionIndexInterval(int transactionPositionIndexInterval) {
+        StorageProperties clone = cloneProperties();
+        clone.transactionPositionIndexInterval = transactionPositionIndexInterval;
+        return clone;
+    }
+
+    public File positionIndex(String storagePath, FileVersion segment) {
+        return new File(String.format(PATH_WITH_VERSION_FORMAT,
+                                      storagePath,
+                                      segment.segment(),
+                                      segment.segmentVersion(),
+                                      positionIndexSuffix));
+    }
+
+    public String getPayloadTypeIndexSuffix() {
+        return payloadTypeIndexSuffix;
+    }
+
+    public void setPayloadTypeIndexSuffix(String payloadTypeIndexSuffix) {
+        this.payloadTypeIndexSuffix = payloadTypeIndexSuffix;
+    }
+
+    public boolean isUsePayloadTypeIndex() {
+        return usePayloadTypeIndex;
+    }
+
+    public void setUsePayloadTypeIndex(boolean usePayloadTypeIndex) {
+        this.usePayloadTypeIndex = usePayloadTypeIndex;
+    }
+
+    public StorageProperties withUsePayloadTypeIndex(boolean usePayloadTypeIndex) {
+        StorageProperties clone = cloneProperties();
+        clone.usePayloadTypeIndex = usePayloadTypeIndex;
+        return clone;
+    }
+
+    public long getPayloadTypeIndexCacheMemory() {
+        return payloadTypeIndexCacheMemory;
+    }
+
+    public void setPayloadTypeIndexCacheMemory(long payloadTypeIndexCacheMemory) {
+        this.payloadTypeIndexCacheMemory = payloadTypeIndexCacheMemory;
+    }
+
+    public long getRecentEventsCacheMemory() {
+        return recentEventsCacheMemory;
+    }
+
+    public void setRecentEventsCacheMemory(long recentEventsCacheMemory) {
+        this.recentEventsCacheMemory = recentEventsCacheMemory;
+    }
+
+    public StorageProperties withRecentEventsCacheMemory(long recentEventsCacheMemory) {
+        StorageProperties clone = cloneProperties();
+        clone.recentEventsCacheMemory = recentEventsCacheMemory;
+        return clone;
+    }
+
+    public File payloadTypeIndex(String storagePath, long segment) {
+        return new File(String.format(PATH_FORMAT, storagePath, segment, payloadTypeIndexSuffix));
+    }
+
+    public boolean isOffHeapActiveIndex() {
+        return offHeapActiveIndex;
+    }
+
+    public void setOffHeapActiveIndex(boolean offHeapActiveIndex) {
+        this.offHeapActiveIndex = offHeapActiveIndex;
+    }
+
+    public StorageProperties withOffHeapActiveIndex(boolean offHeapActiveIndex) {
+        StorageProperties clone = cloneProperties();
+        clone.offHeapActiveIndex = offHeapActiveIndex;
+        return clone;
+    }
+
+    public int getSequenceNumberCacheSize() {
+        return sequenceNumberCacheSize;
+    }
+
+    public void setSequenceNumberCacheSize(int sequenceNumberCacheSize) {
+        this.sequenceNumberCacheSize = sequenceNumberCacheSize;
+    }
+
+    public int getSequenceNumberCacheWarmUpSegments() {
+        return sequenceNumberCacheWarmUpSegments;
+    }
+
+    public void setSequenceNumberCacheWarmUpSegments(int sequenceNumberCacheWarmUpSegments) {
+        this.sequenceNumberCacheWarmUpSegments = sequenceNumberCacheWarmUpSegments;
+    }
+
+    public boolean isSortedIndexFormat() {
+        return SORTED_INDEX_FORMAT.equalsIgnoreCase(indexFormat);
+    }
+
     public StorageProperties withIndexFormat(String indexFormat) {
         StorageProperties clone = cloneProperties();
         clone.indexFormat = indexFormat;
         return clone;
     }
 
+    public long getIndexCacheMemory() {
+        return indexCacheMemory;
+    }
+
+    public void setIndexCacheMemory(long indexCacheMemory) {
+        this.indexCacheMemory = indexCacheMemory;
+    }
+
+    public StorageProperties withIndexCacheMemory(long indexCacheMemory) {
+        StorageProperties clone = cloneProperties();
+        clone.indexCacheMemory = indexCacheMemory;
+        return clone;
+    }
+
+    public long getBloomFilterCacheMemory() {
+        return bloomFilterCacheMemory;
+    }
+
+    public void setBloomFilterCacheMemory(long bloomFilterCacheMemory) {
+        this.bloomFilterCacheMemory = bloomFilterCacheMemory;
+    }
+
+    public StorageProperties withBloomFilterCacheMemory(long bloomFilterCacheMemory) {
+        StorageProperties clone = cloneProperties();
+        clone.bloomFilterCacheMemory = bloomFilterCacheMemory;
+        return clone;
+    }
+
     public StorageProperties withMaxIndexesInMemory(int maxIndexesInMemory) {
         StorageProperties clone = cloneProperties();
         clone.maxIndexesInMemory = maxIndexesInMemory;
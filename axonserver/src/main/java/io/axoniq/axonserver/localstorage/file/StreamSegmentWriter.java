@@ -79,7 +79,7 @@ public class StreamSegmentWriter implements SegmentWriter {
         dataOutputStream.write(TRANSACTION_VERSION);
         dataOutputStream.writeShort(events.size());
         dataOutputStream.write(eventBytes);
-        Checksum checksum = new Checksum();
+        Checksum checksum = Checksum.forTransactionVersion(TRANSACTION_VERSION);
         pos += eventBytes.length + 4 + 7;
         dataOutputStream.writeInt(checksum.update(eventBytes).get());
     }
@@ -14,14 +14,25 @@ import io.axoniq.axonserver.exception.ErrorCode;
 import io.axoniq.axonserver.exception.MessagingPlatformException;
 import io.axoniq.axonserver.localstorage.EventTypeContext;
 import io.axoniq.axonserver.localstorage.StorageCallback;
+import io.axoniq.axonserver.metric.BaseMetricName;
+import io.axoniq.axonserver.metric.MeterFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executors;
@@ -29,12 +40,17 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 /**
  * Thread responsible to close the segment when it got full. Also confirms to writer when transaction blocks are close.
- * One instance per event-type (Event,Snapshot) per context
+ * One instance per event-type (Event,Snapshot) per context.
+ * <p>
+ * When group commit is enabled, transactions are only confirmed after they are forced to disk. Completed transactions
+ * are collected and forced together as soon as the number of pending transactions or bytes reaches its threshold, or
+ * when the oldest pending transaction has waited for the configured maximum wait time.
  *
  * @author Zoltan Altfatter
  */
@@ -54,15 +70,38 @@ public class Synchronizer {
     private volatile ScheduledFuture<?> forceJob;
     private volatile ScheduledFuture<?> syncJob;
 
+    private final boolean groupCommit;
+    private final ScheduledExecutorService groupCommitExecutor;
+    private final ConcurrentLinkedQueue<PendingCommit> pendingCommits = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCommitBytes = new AtomicInteger();
+    private final AtomicInteger pendingCommitCount = new AtomicInteger();
+    private final AtomicBoolean groupCommitScheduled = new AtomicBoolean();
+    private final DistributionSummary groupCommitBatchSize;
+    private final Timer groupCommitForceTimer;
+
     public Synchronizer(EventTypeContext context, StorageProperties storageProperties,
-                        Consumer<WritePosition> completeSegmentCallback) {
+                        Consumer<WritePosition> completeSegmentCallback, MeterFactory meterFactory) {
         this.context = context;
         this.storageProperties = storageProperties;
         this.completeSegmentCallback = completeSegmentCallback;
         fsync = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory(context + "-synchronizer-"));
+        this.groupCommit = storageProperties.isGroupCommit();
+        if (groupCommit) {
+            groupCommitExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new CustomizableThreadFactory(context + "-group-commit-"));
+        } else {
+            groupCommitExecutor = null;
+        }
+        Tags tags = Tags.of(MeterFactory.CONTEXT, context.getContext(), "type", context.getEventType().name());
+        groupCommitBatchSize = meterFactory.distributionSummary(BaseMetricName.AXON_GROUP_COMMIT_BATCH_SIZE, tags);
+        groupCommitForceTimer = meterFactory.timer(BaseMetricName.AXON_GROUP_COMMIT_FORCE_DURATION, tags);
     }
 
     public void notifyWritePositions() {
+        if (groupCommit) {
+            collectWritePositions();
+            return;
+        }
         try {
             boolean removed = false;
             for (Iterator<Map.Entry<WritePosition, StorageCallback>> iterator = writePositions
@@ -102,6 +141,108 @@ public class Synchronizer {
         }
     }
 
+    /**
+     * Moves transactions that are completely written from the write positions to the pending commits. The transactions
+     * are confirmed to the writer after the next group commit. Synchronized to keep the pending commits in the same
+     * order as the write positions.
+     */
+    private void collectWritePositions() {
+        synchronized (pendingCommits) {
+            doCollectWritePositions();
+        }
+    }
+
+    private void doCollectWritePositions() {
+        try {
+            boolean collected = false;
+            for (Iterator<Map.Entry<WritePosition, StorageCallback>> iterator = writePositions
+                    .entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<WritePosition, StorageCallback> writePositionEntry = iterator.next();
+
+                WritePosition current = currentRef.get();
+
+                WritePosition writePosition = writePositionEntry.getKey();
+                if (!writePosition.isComplete()) {
+                    break;
+                }
+
+                if (writePosition.sequence > current.sequence + writePosition.prevEntries) {
+                    break;
+                }
+
+                WritePosition closeSegment = canSyncAt(writePosition, current) ? current : null;
+                // position 0 marks the opening of a new segment, the bytes at this position are the file header
+                int bytes = writePosition.position == 0 ? 0 :
+                        Math.max(0, writePosition.buffer.getInt(writePosition.position));
+                pendingCommits.add(new PendingCommit(writePosition, writePositionEntry.getValue(), closeSegment, bytes));
+                pendingCommitBytes.addAndGet(bytes);
+                pendingCommitCount.incrementAndGet();
+                collected = true;
+                currentRef.updateAndGet(old -> old.sequence < writePosition.sequence ? writePosition : old);
+                iterator.remove();
+            }
+            if (collected) {
+                scheduleGroupCommit();
+                fsync.execute(this::notifyWritePositions);
+            }
+        } catch (RuntimeException t) {
+            writePositions.entrySet().iterator().forEachRemaining(e -> e.getValue().error(t));
+            log.error("Caught exception in the synchronizer for {}", context, t);
+        }
+    }
+
+    private void scheduleGroupCommit() {
+        if (pendingCommitCount.get() >= storageProperties.getGroupCommitMaxTransactions() ||
+                pendingCommitBytes.get() >= storageProperties.getGroupCommitMaxBytes()) {
+            groupCommitExecutor.execute(this::groupCommit);
+        } else if (groupCommitScheduled.compareAndSet(false, true)) {
+            groupCommitExecutor.schedule(this::groupCommit,
+                                         storageProperties.getGroupCommitMaxWait(),
+                                         TimeUnit.MICROSECONDS);
+        }
+    }
+
+    /**
+     * Forces all pending transactions to disk and confirms them to the writers. Segments that are completed by these
+     * transactions are passed on to the sync job afterwards, so the indexes contain all confirmed transactions.
+     */
+    private void groupCommit() {
+        synchronized (groupCommitExecutor) {
+            doGroupCommit();
+        }
+    }
+
+    private void doGroupCommit() {
+        groupCommitScheduled.set(false);
+        List<PendingCommit> batch = new ArrayList<>();
+        PendingCommit pendingCommit;
+        while ((pendingCommit = pendingCommits.poll()) != null) {
+            batch.add(pendingCommit);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        pendingCommitCount.addAndGet(-batch.size());
+        pendingCommitBytes.addAndGet(-batch.stream().mapToInt(p -> p.bytes).sum());
+        try {
+            Set<WritableEventSource> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+            batch.forEach(p -> buffers.add(p.writePosition.buffer));
+            long before = System.nanoTime();
+            buffers.forEach(WritableEventSource::force);
+            groupCommitForceTimer.record(System.nanoTime() - before, TimeUnit.NANOSECONDS);
+            groupCommitBatchSize.record(batch.size());
+            for (PendingCommit commit : batch) {
+                commit.callback.complete(commit.writePosition.sequence);
+                if (commit.closeSegment != null) {
+                    syncAndCloseFile.add(commit.closeSegment);
+                }
+            }
+        } catch (RuntimeException t) {
+            batch.forEach(p -> p.callback.error(t));
+            log.error("Caught exception in the group commit for {}", context, t);
+        }
+    }
+
     private boolean syncAndCloseFile() {
         WritePosition toSync = syncAndCloseFile.pollFirst();
         if (toSync != null) {
@@ -171,12 +312,18 @@ public class Synchronizer {
         syncJob = null;
         forceJob = null;
         waitForPendingWrites();
+        if (groupCommit) {
+            groupCommit();
+        }
         boolean closeMore = true;
         while (closeMore && !syncAndCloseFile.isEmpty()) {
             closeMore = syncAndCloseFile();
         }
         if (shutdown) {
             fsync.shutdown();
+            if (groupCommitExecutor != null) {
+                groupCommitExecutor.shutdown();
+            }
         }
         WritePosition writePosition = currentRef.getAndSet(null);
         if (writePosition != null) {
@@ -196,4 +343,20 @@ public class Synchronizer {
             }
         }
     }
+
+    private static class PendingCommit {
+
+        private final WritePosition writePosition;
+        private final StorageCallback callback;
+        private final WritePosition closeSegment;
+        private final int bytes;
+
+        private PendingCommit(WritePosition writePosition, StorageCallback callback, WritePosition closeSegment,
+                              int bytes) {
+            this.writePosition = writePosition;
+            this.callback = callback;
+            this.closeSegment = closeSegment;
+            this.bytes = bytes;
+        }
+    }
 }
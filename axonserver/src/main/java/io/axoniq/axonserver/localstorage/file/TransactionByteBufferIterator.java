@@ -18,6 +18,7 @@ import io.axoniq.axonserver.localstorage.SerializedTransactionWithToken;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -43,6 +44,11 @@ public class TransactionByteBufferIterator implements TransactionIterator {
 
     private void forwardTo(long firstSequence) {
         reader.position(5);
+        Map.Entry<Long, Integer> transaction = eventSource.floorTransaction(firstSequence);
+        if (transaction != null && transaction.getKey() > currentSequenceNumber) {
+            reader.position(transaction.getValue());
+            currentSequenceNumber = transaction.getKey();
+        }
         while (firstSequence > currentSequenceNumber) {
 
             int size = reader.getInt();
@@ -80,7 +86,7 @@ public class TransactionByteBufferIterator implements TransactionIterator {
         currentSequenceNumber += nrOfMessages;
         int chk = reader.getInt(); // checksum
         if (validating) {
-            Checksum checksum = new Checksum();
+            Checksum checksum = Checksum.forTransactionVersion(eventFormatVersion);
             checksum.update(reader, position, size);
             if( chk != checksum.get()) {
                 throw new MessagingPlatformException(ErrorCode.VALIDATION_FAILED, "Invalid checksum at " + currentSequenceNumber);
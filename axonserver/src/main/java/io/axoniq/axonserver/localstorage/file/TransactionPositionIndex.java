@@ -0,0 +1,181 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import io.axoniq.axonserver.exception.ErrorCode;
+import io.axoniq.axonserver.exception.MessagingPlatformException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sparse index with the file positions of the start of transactions in a segment. Used to start reading a segment
+ * close to a requested token, instead of skipping all transactions from the start of the segment.
+ * <p>
+ * For active segments the index is kept in memory. When the segment is completed it is written to a file, where
+ * lookups use a binary search on the file, so the index of completed segments does not use heap space.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class TransactionPositionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPositionIndex.class);
+    private static final int MAGIC = 0x41585450;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 12;
+
+    private final ConcurrentNavigableMap<Long, Integer> positions;
+    private final File file;
+
+    private TransactionPositionIndex(ConcurrentNavigableMap<Long, Integer> positions, File file) {
+        this.positions = positions;
+        this.file = file;
+    }
+
+    /**
+     * Creates an index for an active segment, kept in memory.
+     *
+     * @return the index
+     */
+    public static TransactionPositionIndex inMemory() {
+        return new TransactionPositionIndex(new ConcurrentSkipListMap<>(), null);
+    }
+
+    /**
+     * Creates an index reading from a file. If the file does not exist the index is empty.
+     *
+     * @param file the index file
+     * @return the index
+     */
+    public static TransactionPositionIndex persisted(File file) {
+        return new TransactionPositionIndex(null, file);
+    }
+
+    /**
+     * Checks if the position following a transaction should be added to the index. This is the case when the
+     * transaction crosses a boundary between intervals, so the index contains the first transaction starting in each
+     * interval.
+     *
+     * @param start    position where the transaction starts
+     * @param end      position where the transaction ends
+     * @param interval the number of bytes between index entries, 0 to disable the index
+     * @return true if the position following the transaction should be added to the index
+     */
+    public static boolean isIndexed(int start, int end, int interval) {
+        return interval > 0 && start / interval != end / interval;
+    }
+
+    /**
+     * Adds the start of a transaction to an in-memory index.
+     *
+     * @param token    the token of the first event in the transaction
+     * @param position the position of the transaction in the segment
+     */
+    public void add(long token, int position) {
+        positions.put(token, position);
+    }
+
+    /**
+     * @return the number of entries in an in-memory index
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Finds the last transaction starting at or before the given token.
+     *
+     * @param token the token to search for
+     * @return entry with the token and position of the transaction or null when there is no such entry
+     */
+    public Map.Entry<Long, Integer> floor(long token) {
+        if (positions != null) {
+            return positions.floorEntry(token);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return floor(channel, token);
+        } catch (NoSuchFileException noSuchFile) {
+            return null;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("{}: failed to read transaction position index", file, ex);
+            return null;
+        }
+    }
+
+    private Map.Entry<Long, Integer> floor(FileChannel channel, long token) throws IOException {
+        ByteBuffer header = read(channel, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            logger.warn("{}: invalid transaction position index", file);
+            return null;
+        }
+        int low = 0;
+        int high = header.getInt() - 1;
+        Map.Entry<Long, Integer> result = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            ByteBuffer entry = read(channel, HEADER_SIZE + (long) mid * ENTRY_SIZE, ENTRY_SIZE);
+            long entryToken = entry.getLong();
+            if (entryToken <= token) {
+                result = new AbstractMap.SimpleImmutableEntry<>(entryToken, entry.getInt());
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes an in-memory index to a file.
+     *
+     * @param target the file to write to
+     */
+    public void write(File target) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(positions.size());
+            for (Map.Entry<Long, Integer> entry : positions.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.INDEX_WRITE_ERROR,
+                                                 target + ": failed to write transaction position index",
+                                                 e);
+        }
+    }
+}
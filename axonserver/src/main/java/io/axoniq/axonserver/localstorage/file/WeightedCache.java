@@ -0,0 +1,258 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import io.axoniq.axonserver.metric.BaseMetricName;
+import io.axoniq.axonserver.metric.MeterFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache for per-segment resources (indexes, bloom filters), limited by the total weight of the entries. Entries are
+ * evicted as soon as the total weight exceeds the maximum weight.
+ * <p>
+ * Eviction uses a segmented LRU policy: entries that were accessed only once since they were loaded are evicted before
+ * entries that were accessed more than once, so a single scan over all segments does not evict frequently used
+ * entries. Within each group the least recently used entry is evicted first. Entries with weight 0 are never evicted,
+ * so they are not tracked in the eviction order.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class WeightedCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalWeight = new AtomicLong();
+    private final Object evictionLock = new Object();
+    /**
+     * Entries accessed only once since they were loaded, in order of loading. Guarded by {@code evictionLock}.
+     */
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>();
+    /**
+     * Entries accessed more than once, in access order. Guarded by {@code evictionLock}.
+     */
+    private final LinkedHashMap<K, Entry<V>> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ToLongFunction<V> weigher;
+    private final LongSupplier maxWeight;
+    private final BiConsumer<K, V> evictionListener;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Timer loadTimer;
+
+    /**
+     * @param name             name of the cache, added as tag to the metrics
+     * @param weigher          function returning the weight of an entry
+     * @param maxWeight        supplies the maximum total weight of the entries
+     * @param evictionListener called for entries that are evicted from the cache
+     * @param meterFactory     factory to create metrics meter
+     * @param tags             tags for the metrics
+     */
+    public WeightedCache(String name, ToLongFunction<V> weigher, LongSupplier maxWeight,
+                         BiConsumer<K, V> evictionListener, MeterFactory meterFactory, Tags tags) {
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+        this.evictionListener = evictionListener;
+        Tags cacheTags = tags.and("cache", name);
+        this.hits = meterFactory.counter(BaseMetricName.AXON_FILE_CACHE_HIT, cacheTags);
+        this.misses = meterFactory.counter(BaseMetricName.AXON_FILE_CACHE_MISS, cacheTags);
+        this.evictions = meterFactory.counter(BaseMetricName.AXON_FILE_CACHE_EVICTION, cacheTags);
+        this.loadTimer = meterFactory.timer(BaseMetricName.AXON_FILE_CACHE_LOAD, cacheTags);
+        meterFactory.gauge(BaseMetricName.AXON_FILE_CACHE_WEIGHT, cacheTags, totalWeight, AtomicLong::get);
+    }
+
+    /**
+     * Returns the value for the key, loading it if it is not in the cache. If the loader returns null, nothing is
+     * cached and null is returned.
+     *
+     * @param key    the key
+     * @param loader function to load the value for the key
+     * @return the value
+     */
+    public V get(K key, Function<K, V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            hits.increment();
+            touch(key, entry);
+            return entry.value;
+        }
+
+        misses.increment();
+        Entry<V> created = entries.computeIfAbsent(key, k -> {
+            long start = System.nanoTime();
+            V value = loader.apply(k);
+            loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (value == null) {
+                return null;
+            }
+            Entry<V> loaded = new Entry<>(value, weigher.applyAsLong(value));
+            totalWeight.addAndGet(loaded.weight);
+            return loaded;
+        });
+        if (created == null) {
+            return null;
+        }
+        if (created.added.compareAndSet(false, true)) {
+            added(key, created);
+        } else {
+            touch(key, created);
+        }
+        return created.value;
+    }
+
+    /**
+     * Adds a value to the cache, replacing an existing value for the key. The replaced value is not passed to the
+     * eviction listener.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, weigher.applyAsLong(value));
+        entry.added.set(true);
+        totalWeight.addAndGet(entry.weight);
+        Entry<V> old = entries.put(key, entry);
+        if (old != null) {
+            totalWeight.addAndGet(-old.weight);
+        }
+        added(key, entry);
+    }
+
+    /**
+     * Removes an entry from the cache. The removed value is not passed to the eviction listener.
+     *
+     * @param key the key
+     * @return the removed value or null when the key was not in the cache
+     */
+    public V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        totalWeight.addAndGet(-entry.weight);
+        if (entry.weight > 0) {
+            synchronized (evictionLock) {
+                probation.remove(key, entry);
+                protectedEntries.remove(key, entry);
+            }
+        }
+        return entry.value;
+    }
+
+    /**
+     * Removes all entries from the cache. The removed values are passed to the given consumer.
+     *
+     * @param consumer consumer for the removed values
+     */
+    public void clear(BiConsumer<K, V> consumer) {
+        for (K key : new ArrayList<>(entries.keySet())) {
+            V value = remove(key);
+            if (value != null) {
+                consumer.accept(key, value);
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total weight of the entries in the cache
+     */
+    public long weight() {
+        return totalWeight.get();
+    }
+
+    private void added(K key, Entry<V> entry) {
+        if (entry.weight == 0 && totalWeight.get() <= maxWeight.getAsLong()) {
+            return;
+        }
+        synchronized (evictionLock) {
+            if (entry.weight > 0 && entries.get(key) == entry) {
+                protectedEntries.remove(key);
+                probation.put(key, entry);
+            }
+            evict(key);
+        }
+    }
+
+    private void touch(K key, Entry<V> entry) {
+        if (entry.weight == 0) {
+            return;
+        }
+        synchronized (evictionLock) {
+            if (probation.remove(key, entry)) {
+                protectedEntries.put(key, entry);
+            } else {
+                // moves the entry to the end of the access order
+                protectedEntries.get(key);
+            }
+        }
+    }
+
+    /**
+     * Evicts entries until the total weight is below the maximum, first from the entries accessed only once, then from
+     * the entries accessed more than once. Must be called while holding the eviction lock.
+     */
+    private void evict(K keep) {
+        long max = maxWeight.getAsLong();
+        evict(probation, keep, max);
+        evict(protectedEntries, keep, max);
+    }
+
+    private void evict(Map<K, Entry<V>> group, K keep, long max) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = group.entrySet().iterator();
+        while (totalWeight.get() > max && iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> candidate = iterator.next();
+            if (candidate.getKey().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                totalWeight.addAndGet(-candidate.getValue().weight);
+                evictions.increment();
+                evictionListener.accept(candidate.getKey(), candidate.getValue().value);
+            }
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long weight;
+        /**
+         * Set when the entry is added to the eviction order.
+         */
+        private final AtomicBoolean added = new AtomicBoolean();
+
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -25,8 +25,9 @@ public class WritableEventSource extends ByteBufferEventSource {
     private static final Logger logger = LoggerFactory.getLogger(WritableEventSource.class);
 
     public WritableEventSource(String file, ByteBuffer buffer, long segment, int version,
-                               EventTransformer eventTransformer, boolean cleanerHack) {
-        super(file, buffer, segment, version, eventTransformer, cleanerHack);
+                               EventTransformer eventTransformer, boolean cleanerHack,
+                               TransactionPositionIndex positionIndex) {
+        super(file, buffer, segment, version, eventTransformer, cleanerHack, positionIndex);
     }
 
     private MappedByteBuffer mappedByteBuffer() {
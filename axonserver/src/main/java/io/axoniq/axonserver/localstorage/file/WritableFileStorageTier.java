@@ -19,7 +19,10 @@ import io.axoniq.axonserver.localstorage.transformation.EventTransformer;
 import io.axoniq.axonserver.localstorage.transformation.EventTransformerFactory;
 import io.axoniq.axonserver.localstorage.transformation.ProcessedEvent;
 import io.axoniq.axonserver.localstorage.transformation.WrappedEvent;
+import io.axoniq.axonserver.metric.BaseMetricName;
 import io.axoniq.axonserver.metric.MeterFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Tags;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,13 +44,13 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static io.axoniq.axonserver.localstorage.file.FileEventStorageEngine.MAX_EVENTS_PER_BLOCK;
@@ -59,13 +62,20 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
 
     private final Synchronizer synchronizer;
     private final FileSystemMonitor fileSystemMonitor;
+    private final EventTransformerFactory eventTransformerFactory;
     private final EventTransformer eventTransformer;
+    private final DistributionSummary compressionRatio;
+    private final SegmentPreallocator segmentPreallocator;
 
     protected final AtomicReference<WritePosition> writePositionRef = new AtomicReference<>();
     protected final AtomicLong lastToken = new AtomicLong(-1);
     protected final ConcurrentNavigableMap<Long, ByteBufferEventSource> readBuffers = new ConcurrentSkipListMap<>(
             Comparator.reverseOrder());
-
+    private final Map<Long, SegmentSummary.Builder> summaryBuilders = new ConcurrentHashMap<>();
+    private final Map<Long, SegmentSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<Long, PayloadTypeIndex> activePayloadTypeIndexes = new ConcurrentHashMap<>();
+    private final WeightedCache<Long, PayloadTypeIndex> payloadTypeIndexes;
+    private final RecentEventsCache recentEventsCache;
 
     public WritableFileStorageTier(EventTypeContext eventTypeContext, IndexManager indexManager,
                                    Supplier<StorageProperties> storagePropertiesSupplier,
@@ -79,8 +89,40 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
               meterFactory,
               storagePath);
         this.fileSystemMonitor = fileSystemMonitor;
+        this.eventTransformerFactory = eventTransformerFactory;
         eventTransformer = eventTransformerFactory.get(storagePropertiesSupplier.get().getFlags());
-        synchronizer = new Synchronizer(eventTypeContext, storagePropertiesSupplier.get(), this::completeSegment);
+        compressionRatio = meterFactory.distributionSummary(BaseMetricName.AXON_COMPRESSION_RATIO,
+                                                            Tags.of(MeterFactory.CONTEXT,
+                                                                    context,
+                                                                    "type",
+                                                                    eventTypeContext.getEventType().name()));
+        StorageProperties storageProperties = storagePropertiesSupplier.get();
+        segmentPreallocator = storageProperties.isPreallocateSegments() ?
+                new SegmentPreallocator(eventTypeContext.toString(), storageProperties.preallocatedSegment(storagePath)) :
+                null;
+        payloadTypeIndexes = storageProperties.isUsePayloadTypeIndex() ?
+                new WeightedCache<>("payload-types",
+                                    PayloadTypeIndex::size,
+                                    () -> storagePropertiesSupplier.get().getPayloadTypeIndexCacheMemory(),
+                                    this::payloadTypeIndexEvicted,
+                                    meterFactory,
+                                    Tags.of(MeterFactory.CONTEXT,
+                                            context,
+                                            "type",
+                                            eventTypeContext.getEventType().name())) :
+                null;
+        recentEventsCache = eventTypeContext.isEvent() ?
+                new RecentEventsCache(() -> storagePropertiesSupplier.get().getRecentEventsCacheMemory(),
+                                      meterFactory,
+                                      Tags.of(MeterFactory.CONTEXT,
+                                              context,
+                                              "type",
+                                              eventTypeContext.getEventType().name())) :
+                null;
+        synchronizer = new Synchronizer(eventTypeContext,
+                                        storagePropertiesSupplier.get(),
+                                        this::completeSegment,
+                                        meterFactory);
     }
 
     public void initSegments(long lastInitialized, long defaultFirstIndex) {
@@ -88,7 +130,11 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         File storageDir = new File(storagePath);
         FileUtils.checkCreateDirectory(storageDir);
         indexManager.init();
+        if (storageProperties.isUseSegmentSummary()) {
+            loadSummaries(storageDir, storageProperties);
+        }
         initLatestSegment(lastInitialized, storageDir, defaultFirstIndex, storageProperties);
+        prepareNextSegment();
 
         fileSystemMonitor.registerPath(storeName(), storageDir.toPath());
     }
@@ -107,9 +153,21 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         indexManager.remove(realFirst);
         long sequence = realFirst.segment();
         Map<String, List<IndexEntry>> loadedEntries = new HashMap<>();
+        summaryBuilders.remove(realFirst.segment());
+        SegmentSummary.Builder summaryBuilder = summaryBuilder(realFirst.segment());
+        activePayloadTypeIndexes.remove(realFirst.segment());
+        PayloadTypeIndex payloadTypeIndex = activePayloadTypeIndex(realFirst.segment());
         try (EventByteBufferIterator iterator = new EventByteBufferIterator(buffer, realFirst.segment())) {
             while (iterator.hasNext()) {
                 EventInformation event = iterator.next();
+                if (summaryBuilder != null) {
+                    summaryBuilder.add(sequence, event.getEvent().getTimestamp());
+                }
+                if (payloadTypeIndex != null) {
+                    payloadTypeIndex.add(sequence,
+                                         event.getEvent().getPayload().getType(),
+                                         event.getEvent().getPayload().getRevision());
+                }
                 if (event.isDomainEvent()) {
                     IndexEntry indexEntry = new IndexEntry(
                             event.getEvent().getAggregateSequenceNumber(),
@@ -126,10 +184,18 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         }
 
         indexManager.addToActiveSegment(realFirst.segment(), loadedEntries);
-
-        buffer.putInt(buffer.position(), 0);
+        initPositionIndex(buffer, storageProperties.getTransactionPositionIndexInterval());
+
+        int position = buffer.position();
+        if (sequence > realFirst.segment() && buffer.getInt(VERSION_BYTES) != storageProperties.getFlags()) {
+            // events in the latest segment are stored with other options (e.g. compression), continue in a new segment
+            logger.info("{}: Storage options changed, next transaction starts a new segment", eventTypeContext);
+            buffer.putInt(position, -1);
+            position = buffer.capacity() - 4;
+        }
+        buffer.putInt(position, 0);
         WritePosition writePosition = new WritePosition(sequence,
-                                                        buffer.position(),
+                                                        position,
                                                         realFirst.segmentVersion(),
                                                         buffer,
                                                         realFirst.segment(),
@@ -138,9 +204,160 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         synchronizer.init(writePosition);
     }
 
+    private void initPositionIndex(WritableEventSource buffer, int interval) {
+        TransactionPositionIndex positionIndex = buffer.positionIndex();
+        if (positionIndex == null) {
+            return;
+        }
+        int position = FILE_HEADER_SIZE;
+        long token = buffer.segment();
+        int size = buffer.getInt(position);
+        while (size > 0) {
+            int end = position + HEADER_BYTES + size + TX_CHECKSUM_BYTES;
+            token += buffer.getBuffer().getShort(position + TRANSACTION_LENGTH_BYTES + VERSION_BYTES);
+            if (TransactionPositionIndex.isIndexed(position, end, interval)) {
+                positionIndex.add(token, end);
+            }
+            position = end;
+            size = buffer.getInt(position);
+        }
+    }
+
+    private void writePositionIndex(long segment, int version) {
+        ByteBufferEventSource source = readBuffers.get(segment);
+        TransactionPositionIndex positionIndex = source == null ? null : source.positionIndex();
+        if (positionIndex == null || positionIndex.size() == 0) {
+            return;
+        }
+        File positionIndexFile = storagePropertiesSupplier.get().positionIndex(storagePath,
+                                                                               new FileVersion(segment, version));
+        try {
+            positionIndex.write(positionIndexFile);
+        } catch (MessagingPlatformException ex) {
+            logger.warn("{}: Failed to write transaction position index {}", eventTypeContext, positionIndexFile, ex);
+            FileUtils.delete(positionIndexFile);
+        }
+    }
+
+    private PayloadTypeIndex activePayloadTypeIndex(long segment) {
+        if (!storagePropertiesSupplier.get().isUsePayloadTypeIndex()) {
+            return null;
+        }
+        return activePayloadTypeIndexes.computeIfAbsent(segment, PayloadTypeIndex::new);
+    }
+
+    private void completePayloadTypeIndex(long segment) {
+        PayloadTypeIndex payloadTypeIndex = activePayloadTypeIndexes.get(segment);
+        if (payloadTypeIndex == null) {
+            return;
+        }
+        File payloadTypeIndexFile = storagePropertiesSupplier.get().payloadTypeIndex(storagePath, segment);
+        try {
+            payloadTypeIndex.write(payloadTypeIndexFile);
+            if (payloadTypeIndexes != null) {
+                payloadTypeIndexes.put(segment, payloadTypeIndex);
+            }
+        } catch (MessagingPlatformException ex) {
+            logger.warn("{}: Failed to write payload type index {}", eventTypeContext, payloadTypeIndexFile, ex);
+            FileUtils.delete(payloadTypeIndexFile);
+        }
+        activePayloadTypeIndexes.remove(segment);
+    }
+
+    private void payloadTypeIndexEvicted(long segment, PayloadTypeIndex payloadTypeIndex) {
+        logger.debug("{}: Removed payload type index for {} from memory", eventTypeContext, segment);
+    }
+
+    private PayloadTypeIndex loadPayloadTypeIndex(long segment) {
+        File payloadTypeIndexFile = storagePropertiesSupplier.get().payloadTypeIndex(storagePath, segment);
+        if (!payloadTypeIndexFile.exists()) {
+            return null;
+        }
+        try {
+            return PayloadTypeIndex.read(payloadTypeIndexFile);
+        } catch (MessagingPlatformException ex) {
+            logger.warn("{}: Ignoring payload type index {}", eventTypeContext, payloadTypeIndexFile, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the payload type index for a segment, if available.
+     *
+     * @param segment the first token in the segment
+     * @return the payload type index for the segment
+     */
+    public Optional<PayloadTypeIndex> payloadTypeIndex(long segment) {
+        PayloadTypeIndex active = activePayloadTypeIndexes.get(segment);
+        if (active != null) {
+            return Optional.of(active);
+        }
+        if (payloadTypeIndexes == null || !storagePropertiesSupplier.get().isUsePayloadTypeIndex()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(payloadTypeIndexes.get(segment, this::loadPayloadTypeIndex));
+    }
+
+    private void loadSummaries(File storageDir, StorageProperties storageProperties) {
+        for (String file : FileUtils.getFilesWithSuffix(storageDir, storageProperties.getSummarySuffix())) {
+            long segment = FileUtils.process(file).segment();
+            File summaryFile = storageProperties.summary(storagePath, segment);
+            try {
+                summaries.put(segment, SegmentSummary.read(summaryFile));
+            } catch (MessagingPlatformException ex) {
+                logger.warn("{}: Ignoring segment summary {}", eventTypeContext, summaryFile, ex);
+                FileUtils.delete(summaryFile);
+            }
+        }
+    }
+
+    private SegmentSummary.Builder summaryBuilder(long segment) {
+        if (!storagePropertiesSupplier.get().isUseSegmentSummary()) {
+            return null;
+        }
+        return summaryBuilders.computeIfAbsent(segment, SegmentSummary.Builder::new);
+    }
+
+    private void completeSummary(long segment, int aggregateCount) {
+        SegmentSummary.Builder summaryBuilder = summaryBuilders.remove(segment);
+        if (summaryBuilder == null) {
+            return;
+        }
+        SegmentSummary summary = summaryBuilder.build(aggregateCount);
+        File summaryFile = storagePropertiesSupplier.get().summary(storagePath, segment);
+        try {
+            summary.write(summaryFile);
+            summaries.put(segment, summary);
+        } catch (MessagingPlatformException ex) {
+            logger.warn("{}: Failed to write segment summary {}", eventTypeContext, summaryFile, ex);
+            FileUtils.delete(summaryFile);
+        }
+    }
+
+    private void removeSummary(long segment) {
+        if (summaries.remove(segment) != null) {
+            FileUtils.delete(storagePropertiesSupplier.get().summary(storagePath, segment));
+        }
+    }
+
+    /**
+     * Returns the summary of a completed segment, if available.
+     *
+     * @param segment the first token in the segment
+     * @return the summary of the segment
+     */
+    public Optional<SegmentSummary> summary(long segment) {
+        return Optional.ofNullable(summaries.get(segment));
+    }
+
     private void createMissingIndexes() {
         SortedSet<FileVersion> segmentsWithoutIndex = segmentsWithoutIndex();
-        segmentsWithoutIndex.forEach(this::createIndex);
+        new ParallelSegmentProcessor(eventTypeContext + "-create-index",
+                                     storagePropertiesSupplier.get().getInitializationThreads())
+                .process(segmentsWithoutIndex, segment -> {
+                    createIndex(segment);
+                    return segment;
+                });
     }
 
     @Override
@@ -175,6 +392,10 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         return readBuffers.size();
     }
 
+    public boolean segmentPrepared() {
+        return segmentPreallocator != null && segmentPreallocator.isPrepared();
+    }
+
     private FileVersion firstSegmentIfLatestCompleted(FileVersion latestSegment, StorageProperties storageProperties) {
         if (!indexManager.validIndex(latestSegment)) {
             return latestSegment;
@@ -205,9 +426,18 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
     }
 
     private FilePreparedTransaction prepareTransaction(List<Event> origEventList, int segmentVersion) {
-        List<ProcessedEvent> eventList = origEventList.stream().map(s -> new WrappedEvent(s, eventTransformer)).collect(
-                Collectors.toList());
+        List<ProcessedEvent> eventList = new ArrayList<>(origEventList.size());
+        for (Event event : origEventList) {
+            eventList.add(new WrappedEvent(event, eventTransformer));
+        }
         int eventSize = eventBlockSize(eventList);
+        if (!eventTransformer.isIdentity()) {
+            long originalSize = 0;
+            for (Event event : origEventList) {
+                originalSize += 4 + event.getSerializedSize();
+            }
+            compressionRatio.record(originalSize / (double) eventSize);
+        }
         WritePosition writePosition = claim(eventSize, eventList.size(), segmentVersion);
         return new FilePreparedTransaction(writePosition, eventSize, eventList);
     }
@@ -226,6 +456,10 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
             Map<String, List<IndexEntry>> indexEntries = new HashMap<>();
             FilePreparedTransaction preparedTransaction = prepareTransaction(events, segmentVersion);
             WritePosition writePosition = preparedTransaction.getWritePosition();
+            int nrOfEvents = preparedTransaction.getEventList().size();
+            int transactionEnd = writePosition.position + transactionSize(preparedTransaction.getEventSize(),
+                                                                          nrOfEvents);
+            int positionIndexInterval = storagePropertiesSupplier.get().getTransactionPositionIndexInterval();
 
             synchronizer.register(writePosition, new StorageCallback() {
                 private final AtomicBoolean running = new AtomicBoolean();
@@ -234,8 +468,19 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
                 public boolean complete(long firstToken) {
                     if (running.compareAndSet(false, true)) {
                         indexManager.addToActiveSegment(writePosition.segment, indexEntries);
+                        addToPayloadTypeIndex(writePosition, preparedTransaction.getEventList());
+                        if (recentEventsCache != null) {
+                            recentEventsCache.add(events);
+                        }
+                        TransactionPositionIndex positionIndex = writePosition.buffer.positionIndex();
+                        if (positionIndex != null && TransactionPositionIndex.isIndexed(writePosition.position,
+                                                                                        transactionEnd,
+                                                                                        positionIndexInterval)) {
+                            positionIndex.add(writePosition.sequence + nrOfEvents, transactionEnd);
+                        }
+                        // update the last token before completing, listeners on the completion read new events
+                        lastToken.set(firstToken + nrOfEvents - 1);
                         completableFuture.complete(firstToken);
-                        lastToken.set(firstToken + preparedTransaction.getEventList().size() - 1);
                         return true;
                     }
                     return false;
@@ -280,20 +525,44 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
             }
         }
 
+        MappedByteBuffer buffer = null;
+        if (!file.exists() && segmentPreallocator != null) {
+            buffer = segmentPreallocator.claim(file, size);
+            prepareNextSegment();
+        }
+        if (buffer == null) {
+            buffer = map(file, size, segment);
+        } else {
+            logger.info("Opening preallocated file {}", file);
+        }
+        int flags = storageProperties.getFlags();
+        EventTransformer segmentTransformer = eventTransformer;
+        if (buffer.get(0) == EVENT_FORMAT_VERSION && buffer.getInt(FILE_HEADER_SIZE) != 0
+                && buffer.getInt(VERSION_BYTES) != flags) {
+            // segment already contains events stored with other options, keep reading them with these options
+            flags = buffer.getInt(VERSION_BYTES);
+            segmentTransformer = eventTransformerFactory.get(flags);
+        }
+        buffer.put(EVENT_FORMAT_VERSION);
+        buffer.putInt(flags);
+        TransactionPositionIndex positionIndex = storageProperties.getTransactionPositionIndexInterval() > 0 ?
+                TransactionPositionIndex.inMemory() : null;
+        WritableEventSource writableEventSource = new WritableEventSource(file.getAbsolutePath(),
+                                                                          buffer,
+                                                                          segment.segment(),
+                                                                          segment.segmentVersion(),
+                                                                          segmentTransformer,
+                                                                          storageProperties.isCleanRequired(),
+                                                                          positionIndex);
+        readBuffers.put(segment.segment(), writableEventSource);
+        return writableEventSource;
+    }
+
+    private MappedByteBuffer map(File file, int size, FileVersion segment) {
         try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
              FileChannel fileChannel = raf.getChannel()) {
             logger.info("Opening file {}", file);
-            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
-            buffer.put(EVENT_FORMAT_VERSION);
-            buffer.putInt(storageProperties.getFlags());
-            WritableEventSource writableEventSource = new WritableEventSource(file.getAbsolutePath(),
-                                                                              buffer,
-                                                                              segment.segment(),
-                                                                              segment.segmentVersion(),
-                                                                              eventTransformer,
-                                                                              storageProperties.isCleanRequired());
-            readBuffers.put(segment.segment(), writableEventSource);
-            return writableEventSource;
+            return fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
         } catch (IOException ioException) {
             throw new MessagingPlatformException(ErrorCode.DATAFILE_READ_ERROR,
                                                  "Failed to open segment: " + segment,
@@ -301,6 +570,12 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         }
     }
 
+    private void prepareNextSegment() {
+        if (segmentPreallocator != null) {
+            segmentPreallocator.prepare(storagePropertiesSupplier.get().getSegmentSize());
+        }
+    }
+
     private int eventBlockSize(List<ProcessedEvent> eventList) {
         long size = 0;
         for (ProcessedEvent event : eventList) {
@@ -376,7 +651,11 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
     }
 
     private void completeSegment(WritePosition writePosition) {
+        int aggregateCount = indexManager.activeAggregateCount(writePosition.segment);
         indexManager.complete(new FileVersion(writePosition.segment, 0));
+        completeSummary(writePosition.segment, aggregateCount);
+        writePositionIndex(writePosition.segment, writePosition.version);
+        completePayloadTypeIndex(writePosition.segment);
         applyOnNext(n ->
                             n.handover(new Segment() {
                                 @Override
@@ -423,12 +702,15 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         int count = eventList.size();
         int from = 0;
         int to = Math.min(count, from + MAX_EVENTS_PER_BLOCK);
-        int firstSize = writeBlock(writeBuffer, eventList, 0, to, indexEntries, writePosition.sequence);
+        SegmentSummary.Builder summaryBuilder = summaryBuilder(writePosition.segment);
+        int firstSize = writeBlock(writeBuffer, eventList, 0, to, indexEntries, summaryBuilder,
+                                   writePosition.sequence);
         while (to < count) {
             from = to;
             to = Math.min(count, from + MAX_EVENTS_PER_BLOCK);
             int positionBefore = writeBuffer.position();
-            int blockSize = writeBlock(writeBuffer, eventList, from, to, indexEntries, writePosition.sequence + from);
+            int blockSize = writeBlock(writeBuffer, eventList, from, to, indexEntries, summaryBuilder,
+                                       writePosition.sequence + from);
             int positionAfter = writeBuffer.position();
             writeBuffer.putInt(positionBefore, blockSize);
             writeBuffer.position(positionAfter);
@@ -438,34 +720,70 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
     }
 
     private int writeBlock(ByteBuffer writeBuffer, List<ProcessedEvent> eventList, int from, int to,
-                           Map<String, List<IndexEntry>> indexEntries, long token) {
+                           Map<String, List<IndexEntry>> indexEntries, SegmentSummary.Builder summaryBuilder,
+                           long token) {
         writeBuffer.putInt(0);
         writeBuffer.put(TRANSACTION_VERSION);
         writeBuffer.putShort((short) (to - from));
-        Checksum checksum = new Checksum();
-        int eventsPosition = writeBuffer.position();
+        Checksum checksum = Checksum.forTransactionVersion(TRANSACTION_VERSION);
         int eventsSize = 0;
         for (int i = from; i < to; i++) {
             ProcessedEvent event = eventList.get(i);
             int position = writeBuffer.position();
-            writeBuffer.putInt(event.getSerializedSize());
-            writeBuffer.put(event.toByteArray());
+            int size = event.getSerializedSize();
+            writeBuffer.putInt(size);
+            event.writeTo(writeBuffer);
+            checksum.update(writeBuffer, position, size + 4);
             if (event.isDomainEvent()) {
                 indexEntries.computeIfAbsent(event.getAggregateIdentifier(),
                                              k -> new ArrayList<>())
                             .add(new IndexEntry(event.getAggregateSequenceNumber(), position, token));
             }
-            eventsSize += event.getSerializedSize() + 4;
+            if (summaryBuilder != null) {
+                summaryBuilder.add(token, event.getTimestamp());
+            }
+            eventsSize += size + 4;
             token++;
         }
 
-        writeBuffer.putInt(checksum.update(writeBuffer, eventsPosition, writeBuffer.position() - eventsPosition).get());
+        writeBuffer.putInt(checksum.get());
         return eventsSize;
     }
 
-    private WritePosition claim(int eventBlockSize, int nrOfEvents, int segmentVersion) {
+    /**
+     * Returns the recently stored events for the aggregate with sequence number in the range
+     * [{@code firstSequenceNumber}, {@code lastSequenceNumber}) from the recent events cache.
+     *
+     * @param aggregateId         the aggregate identifier
+     * @param firstSequenceNumber the first sequence number to return
+     * @param lastSequenceNumber  the sequence number of the first event not to return
+     * @return the cached events, or null when there are no cached events for the aggregate in the range
+     */
+    public RecentEventsCache.CachedEvents recentEvents(String aggregateId, long firstSequenceNumber,
+                                                       long lastSequenceNumber) {
+        return recentEventsCache == null ? null : recentEventsCache.get(aggregateId,
+                                                                        firstSequenceNumber,
+                                                                        lastSequenceNumber);
+    }
+
+    private void addToPayloadTypeIndex(WritePosition writePosition, List<ProcessedEvent> eventList) {
+        PayloadTypeIndex payloadTypeIndex = activePayloadTypeIndex(writePosition.segment);
+        if (payloadTypeIndex == null) {
+            return;
+        }
+        for (int i = 0; i < eventList.size(); i++) {
+            ProcessedEvent event = eventList.get(i);
+            payloadTypeIndex.add(writePosition.sequence + i, event.getPayloadType(), event.getPayloadRevision());
+        }
+    }
+
+    private int transactionSize(int eventBlockSize, int nrOfEvents) {
         int blocks = (int) Math.ceil(nrOfEvents / (double) MAX_EVENTS_PER_BLOCK);
-        int totalSize = eventBlockSize + blocks * (HEADER_BYTES + TX_CHECKSUM_BYTES);
+        return eventBlockSize + blocks * (HEADER_BYTES + TX_CHECKSUM_BYTES);
+    }
+
+    private WritePosition claim(int eventBlockSize, int nrOfEvents, int segmentVersion) {
+        int totalSize = transactionSize(eventBlockSize, nrOfEvents);
         if (totalSize > MAX_TRANSACTION_SIZE || eventBlockSize <= 0) {
             throw new MessagingPlatformException(ErrorCode.DATAFILE_WRITE_ERROR,
                                                  String.format("Illegal transaction size: %d", eventBlockSize));
@@ -554,6 +872,9 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         fileSystemMonitor.unregisterPath(storeName());
 
         synchronizer.shutdown(true);
+        if (segmentPreallocator != null) {
+            segmentPreallocator.close();
+        }
         readBuffers.forEach((s, source) -> {
             source.clean(0);
             if (deleteData) {
@@ -562,6 +883,9 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
         });
 
         applyOnNext(n -> n.close(deleteData));
+        if (recentEventsCache != null) {
+            recentEventsCache.clear();
+        }
 
         indexManager.cleanup(deleteData);
         if (deleteData) {
@@ -616,6 +940,7 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
 
         FileVersion fileVersion = new FileVersion(segment, version);
         return indexManager.remove(fileVersion) &&
+                FileUtils.delete(storagePropertiesSupplier.get().positionIndex(storagePath, fileVersion)) &&
                 FileUtils.delete(dataFile(fileVersion));
     }
 
@@ -631,6 +956,15 @@ public class WritableFileStorageTier extends AbstractFileStorageTier {
 
     @Override
     public void activateSegmentVersion(long segment, int segmentVersion) {
+        // the new version may contain events with other timestamps or payload types
+        removeSummary(segment);
+        if (payloadTypeIndexes != null) {
+            payloadTypeIndexes.remove(segment);
+        }
+        if (recentEventsCache != null) {
+            recentEventsCache.clear();
+        }
+        FileUtils.delete(storagePropertiesSupplier.get().payloadTypeIndex(storagePath, segment));
         applyOnNext(n -> n.activateSegmentVersion(segment, segmentVersion));
     }
 }
@@ -10,14 +10,50 @@
 package io.axoniq.axonserver.localstorage.transaction;
 
 import io.axoniq.axonserver.localstorage.EventStorageEngine;
+import io.axoniq.axonserver.localstorage.file.EmbeddedDBProperties;
+import io.axoniq.axonserver.localstorage.file.StorageProperties;
+import io.axoniq.axonserver.metric.MeterFactory;
 
 /**
  * @author Marc Gathier
  */
 public class DefaultStorageTransactionManagerFactory implements StorageTransactionManagerFactory {
 
+    private final EmbeddedDBProperties embeddedDBProperties;
+    private final MeterFactory meterFactory;
+
+    public DefaultStorageTransactionManagerFactory() {
+        this(null);
+    }
+
+    /**
+     * @param embeddedDBProperties the storage properties for events and snapshots, used to determine if transactions
+     *                             may be combined
+     */
+    public DefaultStorageTransactionManagerFactory(EmbeddedDBProperties embeddedDBProperties) {
+        this(embeddedDBProperties, null);
+    }
+
+    /**
+     * @param embeddedDBProperties the storage properties for events and snapshots, used to determine if transactions
+     *                             may be combined
+     * @param meterFactory         factory to create metrics meter, may be null
+     */
+    public DefaultStorageTransactionManagerFactory(EmbeddedDBProperties embeddedDBProperties,
+                                                   MeterFactory meterFactory) {
+        this.embeddedDBProperties = embeddedDBProperties;
+        this.meterFactory = meterFactory;
+    }
+
     @Override
     public StorageTransactionManager createTransactionManager(EventStorageEngine eventStore) {
-        return new SingleInstanceTransactionManager(eventStore);
+        return new SingleInstanceTransactionManager(eventStore, storageProperties(eventStore), meterFactory);
+    }
+
+    private StorageProperties storageProperties(EventStorageEngine eventStore) {
+        if (embeddedDBProperties == null) {
+            return null;
+        }
+        return eventStore.getType().isEvent() ? embeddedDBProperties.getEvent() : embeddedDBProperties.getSnapshot();
     }
 }
@@ -13,42 +13,86 @@ import io.axoniq.axonserver.exception.ErrorCode;
 import io.axoniq.axonserver.exception.MessagingPlatformException;
 import io.axoniq.axonserver.grpc.event.Event;
 import io.axoniq.axonserver.localstorage.EventStorageEngine;
+import io.axoniq.axonserver.localstorage.file.AggregateSequence;
+import io.axoniq.axonserver.metric.BaseMetricName;
+import io.axoniq.axonserver.metric.MeterFactory;
 import io.axoniq.axonserver.util.DaemonThreadFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
 import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Maintains a cache of last sequence numbers per aggregate. Used to verify new events coming in, also considering
  * pending transactions.
- * Cache is limited in the number of entries, eviction policy is least recently used.
+ * <p>
+ * Cache is limited in the number of entries. The eviction policy is based on W-TinyLFU: new entries are added to a
+ * small LRU window, entries leaving the window are only admitted to the main LRU region when they are used more often
+ * than the entry they would replace. Usage frequencies are estimated with a count-min sketch. Entries that were
+ * updated recently are never evicted, as they may be reserved for a transaction that is not stored yet.
  *
  * @author Marc Gathier
  * @since 4.2
  */
 public class SequenceNumberCache {
 
+    private static final Logger logger = LoggerFactory.getLogger(SequenceNumberCache.class);
+
     private static final ScheduledExecutorService SCHEDULED_EXECUTOR_SERVICE = Executors.newScheduledThreadPool(1,
                                                                                                                 new DaemonThreadFactory(
                                                                                                                         "cache-cleanup"));
+    private static final int WARM_UP_THREADS = 2;
+    /**
+     * Runs the warm up of the caches, separate from the cleanup so warm ups for different contexts do not delay the
+     * cleanup. Threads stop when there are no warm ups to run.
+     */
+    private static final ThreadPoolExecutor WARM_UP_EXECUTOR_SERVICE = warmUpExecutorService();
     private static final EventStorageEngine.SearchHint[] NO_HINTS = {};
     private static final EventStorageEngine.SearchHint[] SEARCH_RECENT = {EventStorageEngine.SearchHint.RECENT_ONLY};
+    private static final Runnable NO_OP = () -> {
+    };
+    /**
+     * Minimum time an entry stays in the cache after it is updated.
+     */
+    private static final long MIN_RETENTION_MILLIS = TimeUnit.SECONDS.toMillis(10);
 
     private final int maxSize;
     private final BiFunction<String, EventStorageEngine.SearchHint[], Optional<Long>> aggregateSequenceNumberProvider;
     private final Clock clock;
     private final Map<String, SequenceNumber> sequenceNumbersPerAggregate = new ConcurrentHashMap<>();
+    private final EvictionPolicy evictionPolicy;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
     private final ScheduledFuture<?> cleanupTask;
+    private volatile Future<?> warmUpTask;
 
     /**
      * Creates a sequence number cache with specified aggregateSequenceNumber provider and default clock and cache size.
@@ -70,9 +114,35 @@ public class SequenceNumberCache {
     public SequenceNumberCache(
             BiFunction<String, EventStorageEngine.SearchHint[], Optional<Long>> aggregateSequenceNumberProvider,
             Clock clock, int maxSize) {
+        this(aggregateSequenceNumberProvider, clock, maxSize, null, Tags.empty());
+    }
+
+    /**
+     * Creates a sequence number cache with specified aggregateSequenceNumber provider, clock and cache size, that
+     * reports the number of cache hits, misses and evictions.
+     *
+     * @param aggregateSequenceNumberProvider function to retrieve the last sequence number for an aggregate
+     * @param clock                           clock to use to set last used time
+     * @param maxSize                         maximum number of entries for the cache
+     * @param meterFactory                    factory to create metrics meter, null to disable metrics
+     * @param tags                            tags for the metrics
+     */
+    public SequenceNumberCache(
+            BiFunction<String, EventStorageEngine.SearchHint[], Optional<Long>> aggregateSequenceNumberProvider,
+            Clock clock, int maxSize, MeterFactory meterFactory, Tags tags) {
         this.aggregateSequenceNumberProvider = aggregateSequenceNumberProvider;
         this.clock = clock;
         this.maxSize = maxSize;
+        this.evictionPolicy = new EvictionPolicy(maxSize);
+        if (meterFactory != null) {
+            this.hits = meterFactory.counter(BaseMetricName.AXON_SEQUENCE_CACHE_HIT, tags);
+            this.misses = meterFactory.counter(BaseMetricName.AXON_SEQUENCE_CACHE_MISS, tags);
+            this.evictions = meterFactory.counter(BaseMetricName.AXON_SEQUENCE_CACHE_EVICTION, tags);
+        } else {
+            this.hits = null;
+            this.misses = null;
+            this.evictions = null;
+        }
         this.cleanupTask = SCHEDULED_EXECUTOR_SERVICE.scheduleAtFixedRate(() -> clearOld(TimeUnit.MINUTES.toMillis(30)),
                                                                           15,
                                                                           15,
@@ -94,11 +164,48 @@ public class SequenceNumberCache {
      * Option {@code force} is used by enterprise edition to set sequence numbers for aggregates of transactions that
      * were
      * previously validated.
+     * <p>
+     * Most transactions contain events for a single aggregate. These are checked without building intermediate
+     * collections.
      *
      * @param events list of events to store
      * @param force  accept the sequence numbers from the events list as valid
      */
     public Runnable reserveSequenceNumbers(List<Event> events, boolean force) {
+        String aggregateId = null;
+        long min = 0;
+        long max = 0;
+        for (Event event : events) {
+            if (isDomainEvent(event)) {
+                if (aggregateId == null) {
+                    aggregateId = event.getAggregateIdentifier();
+                    min = event.getAggregateSequenceNumber();
+                    max = min;
+                } else if (aggregateId.equals(event.getAggregateIdentifier())) {
+                    if (event.getAggregateSequenceNumber() != max + 1) {
+                        throw invalidSequence(event.getAggregateSequenceNumber(), aggregateId, max + 1);
+                    }
+                    max = event.getAggregateSequenceNumber();
+                } else {
+                    return reserveSequenceNumbersMultipleAggregates(events, force);
+                }
+            }
+        }
+
+        if (aggregateId == null) {
+            return NO_OP;
+        }
+        if (force) {
+            put(aggregateId, new SequenceNumber(max));
+            return NO_OP;
+        }
+        reserve(aggregateId, min, max);
+        String reservedAggregateId = aggregateId;
+        long previous = min - 1;
+        return () -> put(reservedAggregateId, new SequenceNumber(previous));
+    }
+
+    private Runnable reserveSequenceNumbersMultipleAggregates(List<Event> events, boolean force) {
         Map<String, MinMaxPair> minMaxPerAggregate = new HashMap<>();
         events.stream()
               .filter(this::isDomainEvent)
@@ -108,33 +215,51 @@ public class SequenceNumberCache {
                                               .setMax(e.getAggregateSequenceNumber()));
 
         Map<String, SequenceNumber> oldSequenceNumberPerAggregate = new HashMap<>();
-        Runnable unreserve = () -> oldSequenceNumberPerAggregate
-                .forEach(sequenceNumbersPerAggregate::put);
-            for (Map.Entry<String, MinMaxPair> entry : minMaxPerAggregate.entrySet()) {
-                if (force) {
-                    sequenceNumbersPerAggregate.put(entry.getKey(), new SequenceNumber(entry.getValue().getMax()));
-                } else {
-                    SequenceNumber updated = sequenceNumbersPerAggregate.compute(entry.getKey(),
-                                                                                 (aggId, old) -> checkAndUpdateSequenceNumber(
-                                                                                         aggId,
-                                                                                         old,
-                                                                                         entry.getValue()));
-                    if (!updated.isValid()) {
-                        unreserve.run();
-                        throw new MessagingPlatformException(ErrorCode.INVALID_SEQUENCE,
-                                                             String.format(
-                                                                     "Invalid sequence number %d for aggregate %s, expected %d",
-                                                                     entry.getValue().getMin(),
-                                                                     entry.getKey(),
-                                                                     updated.get() + 1));
-                    }
-                    oldSequenceNumberPerAggregate.putIfAbsent(entry.getKey(),
-                                                              new SequenceNumber(entry.getValue().getMin() - 1));
+        Runnable unreserve = () -> oldSequenceNumberPerAggregate.forEach(this::put);
+        for (Map.Entry<String, MinMaxPair> entry : minMaxPerAggregate.entrySet()) {
+            if (force) {
+                put(entry.getKey(), new SequenceNumber(entry.getValue().getMax()));
+            } else {
+                try {
+                    reserve(entry.getKey(), entry.getValue().getMin(), entry.getValue().getMax());
+                } catch (MessagingPlatformException invalidSequence) {
+                    unreserve.run();
+                    throw invalidSequence;
                 }
+                oldSequenceNumberPerAggregate.putIfAbsent(entry.getKey(),
+                                                          new SequenceNumber(entry.getValue().getMin() - 1));
             }
+        }
         return unreserve;
     }
 
+    private void reserve(String aggregateId, long min, long max) {
+        SequenceNumber updated = sequenceNumbersPerAggregate.compute(aggregateId,
+                                                                     (aggId, old) -> checkAndUpdateSequenceNumber(
+                                                                             aggId,
+                                                                             old,
+                                                                             min,
+                                                                             max));
+        evictionPolicy.recordAccess(aggregateId);
+        if (!updated.isValid()) {
+            throw invalidSequence(min, aggregateId, updated.get() + 1);
+        }
+    }
+
+    private void put(String aggregateId, SequenceNumber sequenceNumber) {
+        sequenceNumbersPerAggregate.put(aggregateId, sequenceNumber);
+        evictionPolicy.recordAccess(aggregateId);
+    }
+
+    private MessagingPlatformException invalidSequence(long sequenceNumber, String aggregateId, long expected) {
+        return new MessagingPlatformException(ErrorCode.INVALID_SEQUENCE,
+                                              String.format(
+                                                      "Invalid sequence number %d for aggregate %s, expected %d",
+                                                      sequenceNumber,
+                                                      aggregateId,
+                                                      expected));
+    }
+
     private boolean isDomainEvent(Event e) {
         return !StringUtils.isEmpty(e.getAggregateType());
     }
@@ -142,29 +267,39 @@ public class SequenceNumberCache {
     /**
      * Checks if the min sequence number for an aggregate has the correct value and updates the cache. If the min
      * sequence number is valid
-     * it returns a new {@link SequenceNumber} object with max sequence number from minMaxPair.
-     * If the min sequence number supplied in the minMaxPair parameter is not valid, it returns the current sequence
+     * it returns a new {@link SequenceNumber} object with max sequence number.
+     * If the min sequence number is not valid, it returns the current sequence
      * number, with a flag
      * indicating that the last check was invalid.
      *
      * @param aggregateIdentfier aggregate identifier to check
      * @param current            currently cached SequenceNumber for this aggregate
-     * @param minMaxPair         min value to check and max value to set
+     * @param min                min value to check
+     * @param max                max value to set
      * @return updated SequenceNumber containing the new sequence number or updated valid flag.
      */
     private SequenceNumber checkAndUpdateSequenceNumber(String aggregateIdentfier, SequenceNumber current,
-                                                        MinMaxPair minMaxPair) {
+                                                        long min, long max) {
         if (current == null) {
+            increment(misses);
             current = new SequenceNumber(aggregateSequenceNumberProvider
-                                                 .apply(aggregateIdentfier, searchHints(minMaxPair.min)).orElse(-1L));
+                                                 .apply(aggregateIdentfier, searchHints(min)).orElse(-1L));
+        } else {
+            increment(hits);
         }
-        if (minMaxPair.getMin() == current.get() + 1) {
-            return new SequenceNumber(minMaxPair.max);
+        if (min == current.get() + 1) {
+            return new SequenceNumber(max);
         }
 
         return current.invalid();
     }
 
+    private void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
     /**
      * Determine the search hints to use in finding an aggregate. If the expected next sequence number is 0, we expect
      * the aggregate not to exist, in which case we may not want to scan the entire event store, but only the recent
@@ -183,6 +318,16 @@ public class SequenceNumberCache {
 
     public void clear() {
         sequenceNumbersPerAggregate.clear();
+        evictionPolicy.clear();
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return the number of entries in the cache
+     */
+    public int size() {
+        return sequenceNumbersPerAggregate.size();
     }
 
     /**
@@ -193,17 +338,270 @@ public class SequenceNumberCache {
     public void clearOld(long timeout) {
         if (sequenceNumbersPerAggregate.size() > maxSize) {
             long minTimestamp = clock.millis() - timeout;
-            sequenceNumbersPerAggregate.entrySet().removeIf(e -> e.getValue().timestamp() < minTimestamp);
+            List<String> removed = new ArrayList<>();
+            sequenceNumbersPerAggregate.entrySet().removeIf(e -> {
+                if (e.getValue().timestamp() < minTimestamp) {
+                    removed.add(e.getKey());
+                    return true;
+                }
+                return false;
+            });
+            evictionPolicy.removeAll(removed);
+        }
+    }
+
+    /**
+     * Fills the cache in the background with the last sequence numbers of aggregates, for instance from the most recent
+     * segments after a restart. The source must return the most recent sequence number for an aggregate first, later
+     * occurrences of the same aggregate are ignored. Aggregates that are already in the cache are not updated, and
+     * the warm up stops when it has added the maximum number of entries for the cache.
+     *
+     * @param recentSequenceNumbers supplies the aggregates and their last sequence numbers
+     */
+    public void warmUp(Supplier<Stream<AggregateSequence>> recentSequenceNumbers) {
+        warmUpTask = WARM_UP_EXECUTOR_SERVICE.submit(() -> doWarmUp(recentSequenceNumbers));
+    }
+
+    private static ThreadPoolExecutor warmUpExecutorService() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(WARM_UP_THREADS,
+                                                             WARM_UP_THREADS,
+                                                             1,
+                                                             TimeUnit.MINUTES,
+                                                             new LinkedBlockingQueue<>(),
+                                                             new DaemonThreadFactory("cache-warm-up"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void doWarmUp(Supplier<Stream<AggregateSequence>> recentSequenceNumbers) {
+        long start = System.currentTimeMillis();
+        Set<String> seen = new HashSet<>();
+        int added = 0;
+        try (Stream<AggregateSequence> sequences = recentSequenceNumbers.get()) {
+            Iterator<AggregateSequence> iterator = sequences.iterator();
+            while (iterator.hasNext() && seen.size() < maxSize && !Thread.currentThread().isInterrupted()) {
+                AggregateSequence aggregateSequence = iterator.next();
+                String aggregateId = aggregateSequence.aggregateId();
+                if (seen.add(aggregateId) && sequenceNumbersPerAggregate.putIfAbsent(aggregateId,
+                                                                                      new SequenceNumber(
+                                                                                              aggregateSequence.lastSequenceNumber()))
+                        == null) {
+                    evictionPolicy.recordAccess(aggregateId);
+                    added++;
+                }
+            }
+        } catch (Exception ex) {
+            logger.warn("Failed to warm up sequence number cache", ex);
         }
+        logger.info("Sequence number cache warmed up with {} aggregates in {}ms",
+                    added,
+                    System.currentTimeMillis() - start);
     }
 
     /**
-     * Stops the scheduled cleanupTask for the cache.
+     * Stops the scheduled cleanupTask and a running warm up for the cache.
      */
     public void close() {
         if (cleanupTask != null && !cleanupTask.isDone()) {
             cleanupTask.cancel(true);
         }
+        Future<?> task = warmUpTask;
+        if (task != null && !task.isDone()) {
+            task.cancel(true);
+        }
+    }
+
+    private boolean evict(String aggregateId) {
+        long maxTimestamp = clock.millis() - MIN_RETENTION_MILLIS;
+        boolean[] evicted = new boolean[1];
+        sequenceNumbersPerAggregate.computeIfPresent(aggregateId, (key, current) -> {
+            if (current.timestamp() > maxTimestamp) {
+                return current;
+            }
+            evicted[0] = true;
+            return null;
+        });
+        if (evicted[0]) {
+            increment(evictions);
+        }
+        return evicted[0] || !sequenceNumbersPerAggregate.containsKey(aggregateId);
+    }
+
+    /**
+     * Keeps track of the usage of the entries in the cache and evicts entries when the cache exceeds its maximum
+     * size. Accesses are added to a lock-free queue, the thread that gets the lock processes the queued accesses, other
+     * threads continue without waiting. Entries are removed from the cache after the lock is released, as removing an
+     * entry may have to wait for a thread that is reading the sequence number of the same aggregate from the event
+     * store.
+     */
+    private class EvictionPolicy {
+
+        private final int windowSize;
+        private final int mainSize;
+        private final Queue<String> accesses = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        /**
+         * Entries per region, with the time of the last access.
+         */
+        private final LinkedHashMap<String, Long> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, Long> main = new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch sketch;
+
+        EvictionPolicy(int maxSize) {
+            this.windowSize = Math.max(1, maxSize / 100);
+            this.mainSize = Math.max(1, maxSize - windowSize);
+            this.sketch = new FrequencySketch(maxSize);
+        }
+
+        void recordAccess(String aggregateId) {
+            accesses.offer(aggregateId);
+            if (!lock.tryLock()) {
+                return;
+            }
+            List<String> evicted = new ArrayList<>();
+            try {
+                String next;
+                while ((next = accesses.poll()) != null) {
+                    apply(next, evicted);
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (String victim : evicted) {
+                if (!evict(victim)) {
+                    // updated recently, keep tracking it
+                    accesses.offer(victim);
+                }
+            }
+        }
+
+        private void apply(String aggregateId, List<String> evicted) {
+            long now = clock.millis();
+            sketch.increment(aggregateId.hashCode());
+            if (window.containsKey(aggregateId)) {
+                window.put(aggregateId, now);
+                return;
+            }
+            if (main.containsKey(aggregateId)) {
+                main.put(aggregateId, now);
+                return;
+            }
+            window.put(aggregateId, now);
+            if (window.size() <= windowSize) {
+                return;
+            }
+            Map.Entry<String, Long> eldest = eldest(window);
+            String candidate = eldest.getKey();
+            long candidateAccess = eldest.getValue();
+            window.remove(candidate);
+            main.put(candidate, candidateAccess);
+            long minAccess = now - MIN_RETENTION_MILLIS;
+            while (main.size() > mainSize) {
+                Map.Entry<String, Long> victim = eldest(main);
+                String removed = admit(candidate, victim.getKey()) ? victim.getKey() : candidate;
+                long removedAccess = removed.equals(candidate) ? candidateAccess : victim.getValue();
+                if (removedAccess > minAccess) {
+                    // updated recently, try the other entry
+                    String other = removed.equals(candidate) ? victim.getKey() : candidate;
+                    long otherAccess = removed.equals(candidate) ? victim.getValue() : candidateAccess;
+                    if (other == null || other.equals(removed) || otherAccess > minAccess) {
+                        return;
+                    }
+                    removed = other;
+                }
+                main.remove(removed);
+                evicted.add(removed);
+                if (removed.equals(candidate)) {
+                    candidate = null;
+                }
+            }
+        }
+
+        private boolean admit(String candidate, String victim) {
+            return candidate == null ||
+                    (!candidate.equals(victim)
+                            && sketch.frequency(candidate.hashCode()) > sketch.frequency(victim.hashCode()));
+        }
+
+        void removeAll(Collection<String> aggregateIds) {
+            lock.lock();
+            try {
+                window.keySet().removeAll(aggregateIds);
+                main.keySet().removeAll(aggregateIds);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                accesses.clear();
+                window.clear();
+                main.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Map.Entry<String, Long> eldest(LinkedHashMap<String, Long> region) {
+            return region.entrySet().iterator().next();
+        }
+    }
+
+    /**
+     * Count-min sketch with 4-bit counters to estimate how often an aggregate is used. Counters are halved when the
+     * number of additions reaches ten times the size of the cache, so older usage counts less.
+     */
+    private static class FrequencySketch {
+
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            int capacity = Integer.highestOneBit(Math.max(16, maxSize) - 1) << 1;
+            this.counters = new byte[capacity];
+            this.mask = capacity - 1;
+            this.sampleSize = 10 * Math.max(16, maxSize);
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, counters[index(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
     }
 
     private class MinMaxPair {
@@ -228,12 +626,7 @@ public class SequenceNumberCache {
 
         public void setMax(long max) {
             if (max != this.max + 1) {
-                throw new MessagingPlatformException(ErrorCode.INVALID_SEQUENCE,
-                                                     String.format(
-                                                             "Invalid sequence number %d for aggregate %s, expected %d",
-                                                             max,
-                                                             key,
-                                                             this.max + 1));
+                throw invalidSequence(max, key, this.max + 1);
             }
             this.max = max;
         }
@@ -11,26 +11,84 @@ package io.axoniq.axonserver.localstorage.transaction;
 
 import io.axoniq.axonserver.grpc.event.Event;
 import io.axoniq.axonserver.localstorage.EventStorageEngine;
+import io.axoniq.axonserver.localstorage.file.StorageProperties;
+import io.axoniq.axonserver.metric.MeterFactory;
+import io.micrometer.core.instrument.Tags;
 import reactor.core.publisher.Mono;
 
+import java.time.Clock;
 import java.util.List;
 
+import static io.axoniq.axonserver.localstorage.file.FileEventStorageEngine.MAX_EVENTS_PER_BLOCK;
+
 /**
  * @author Marc Gathier
  */
 public class SingleInstanceTransactionManager implements StorageTransactionManager{
     private final EventStorageEngine eventStorageEngine;
     private final SequenceNumberCache sequenceNumberCache;
+    private final TransactionCombiner transactionCombiner;
+    private final int warmUpSegments;
 
     public SingleInstanceTransactionManager(
             EventStorageEngine eventStorageEngine) {
+        this(eventStorageEngine, null);
+    }
+
+    /**
+     * @param eventStorageEngine the storage engine to store the events in
+     * @param storageProperties  the storage properties for the engine, when these enable combining transactions,
+     *                           concurrent transactions are stored as a single block
+     */
+    public SingleInstanceTransactionManager(EventStorageEngine eventStorageEngine,
+                                            StorageProperties storageProperties) {
+        this(eventStorageEngine, storageProperties, null);
+    }
+
+    /**
+     * @param eventStorageEngine the storage engine to store the events in
+     * @param storageProperties  the storage properties for the engine, when these enable combining transactions,
+     *                           concurrent transactions are stored as a single block
+     * @param meterFactory       factory to create metrics meter for the sequence number cache, may be null
+     */
+    public SingleInstanceTransactionManager(EventStorageEngine eventStorageEngine,
+                                            StorageProperties storageProperties,
+                                            MeterFactory meterFactory) {
         this.eventStorageEngine = eventStorageEngine;
-        this.sequenceNumberCache = new SequenceNumberCache(eventStorageEngine::getLastSequenceNumber);
+        this.sequenceNumberCache = new SequenceNumberCache(eventStorageEngine::getLastSequenceNumber,
+                                                           Clock.systemUTC(),
+                                                           storageProperties != null ?
+                                                                   storageProperties.getSequenceNumberCacheSize() :
+                                                                   100_000,
+                                                           meterFactory,
+                                                           meterFactory != null ?
+                                                                   tags(eventStorageEngine) :
+                                                                   Tags.empty());
+        if (storageProperties != null && storageProperties.isCombineTransactions()) {
+            this.transactionCombiner = new TransactionCombiner(eventStorageEngine::store,
+                                                               MAX_EVENTS_PER_BLOCK,
+                                                               storageProperties.getCombineTransactionsMaxBytes(),
+                                                               eventStorageEngine.getType().toString());
+            eventStorageEngine.registerCloseListener(transactionCombiner::close);
+        } else {
+            this.transactionCombiner = null;
+        }
+        this.warmUpSegments = storageProperties != null ? storageProperties.getSequenceNumberCacheWarmUpSegments() : 0;
         eventStorageEngine.registerCloseListener(sequenceNumberCache::close);
     }
 
+    private static Tags tags(EventStorageEngine eventStorageEngine) {
+        return Tags.of(MeterFactory.CONTEXT,
+                       eventStorageEngine.getType().getContext(),
+                       "type",
+                       eventStorageEngine.getType().getEventType().name());
+    }
+
     @Override
     public Mono<Long> storeBatch(List<Event> eventList) {
+        if (transactionCombiner != null) {
+            return Mono.fromFuture(transactionCombiner.store(eventList));
+        }
         return Mono.fromFuture(eventStorageEngine.store(eventList));
     }
 
@@ -43,4 +101,11 @@ public class SingleInstanceTransactionManager implements StorageTransactionManag
     public void clearSequenceNumberCache() {
         sequenceNumberCache.clear();
     }
+
+    @Override
+    public void warmUpSequenceNumberCache() {
+        if (warmUpSegments > 0) {
+            sequenceNumberCache.warmUp(() -> eventStorageEngine.recentSequenceNumbers(warmUpSegments));
+        }
+    }
 }
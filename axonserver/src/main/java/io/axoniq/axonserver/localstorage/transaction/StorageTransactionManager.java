@@ -44,4 +44,11 @@ public interface StorageTransactionManager {
     default void clearSequenceNumberCache() {
 
     }
+
+    /**
+     * Starts filling the sequence number cache in the background with the aggregates from the most recent segments.
+     */
+    default void warmUpSequenceNumberCache() {
+
+    }
 }
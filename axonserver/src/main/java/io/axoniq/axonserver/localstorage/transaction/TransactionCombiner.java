@@ -0,0 +1,187 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.transaction;
+
+import io.axoniq.axonserver.grpc.event.Event;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Combines transactions that are waiting for the storage into a single store operation. The first thread that finds
+ * the storage idle writes its own transaction together with the transactions that are queued at that moment, as a
+ * single batch. Transactions that are still queued after this batch are written by the combiner's own thread, so a
+ * caller never writes more than one batch. Each transaction completes with the token of its own first event.
+ * <p>
+ * A combined transaction contains at most {@code maxEvents} events and {@code maxBytes} bytes, a single transaction
+ * that exceeds these limits is stored on its own.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class TransactionCombiner {
+
+    private final Function<List<Event>, CompletableFuture<Long>> storage;
+    private final int maxEvents;
+    private final int maxBytes;
+    private final Queue<PendingTransaction> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final ExecutorService writer;
+
+    /**
+     * @param storage   the operation storing a list of events, returning the token of the first event
+     * @param maxEvents maximum number of events in a combined transaction
+     * @param maxBytes  maximum size of the events in a combined transaction
+     */
+    public TransactionCombiner(Function<List<Event>, CompletableFuture<Long>> storage, int maxEvents, int maxBytes) {
+        this(storage, maxEvents, maxBytes, "transaction-combiner");
+    }
+
+    /**
+     * @param storage   the operation storing a list of events, returning the token of the first event
+     * @param maxEvents maximum number of events in a combined transaction
+     * @param maxBytes  maximum size of the events in a combined transaction
+     * @param name      name of the storage, used to name the thread writing queued transactions
+     */
+    public TransactionCombiner(Function<List<Event>, CompletableFuture<Long>> storage, int maxEvents, int maxBytes,
+                               String name) {
+        this.storage = storage;
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+        this.writer = Executors.newSingleThreadExecutor(new CustomizableThreadFactory(name + "-combiner-"));
+    }
+
+    /**
+     * Stores the events, possibly combined with other pending transactions.
+     *
+     * @param events the events in the transaction
+     * @return completable future with the token of the first event in the transaction
+     */
+    public CompletableFuture<Long> store(List<Event> events) {
+        PendingTransaction transaction = new PendingTransaction(events);
+        pending.add(transaction);
+        drain();
+        return transaction.result;
+    }
+
+    /**
+     * Writes one batch of pending transactions, if no other thread is writing. When there are transactions left after
+     * the batch, the next batch is written by the combiner's thread.
+     */
+    private void drain() {
+        if (pending.isEmpty() || !writing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            PendingTransaction transaction = pending.poll();
+            if (transaction != null) {
+                write(nextBatch(transaction));
+            }
+        } finally {
+            writing.set(false);
+        }
+        // re-check the queue after releasing the flag, a transaction may have been added while writing
+        if (!pending.isEmpty()) {
+            try {
+                writer.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                // combiner is closed
+                PendingTransaction transaction;
+                while ((transaction = pending.poll()) != null) {
+                    transaction.result.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the thread writing queued transactions.
+     */
+    public void close() {
+        writer.shutdown();
+    }
+
+    private List<PendingTransaction> nextBatch(PendingTransaction first) {
+        List<PendingTransaction> batch = new ArrayList<>();
+        batch.add(first);
+        int events = first.events.size();
+        int bytes = first.size;
+        PendingTransaction next;
+        while ((next = pending.peek()) != null
+                && events + next.events.size() <= maxEvents
+                && bytes + next.size <= maxBytes) {
+            // only the thread holding the writing flag removes entries, so the peeked entry is the one polled
+            pending.poll();
+            batch.add(next);
+            events += next.events.size();
+            bytes += next.size;
+        }
+        return batch;
+    }
+
+    private void write(List<PendingTransaction> batch) {
+        if (batch.size() == 1) {
+            PendingTransaction transaction = batch.get(0);
+            try {
+                storage.apply(transaction.events).whenComplete(transaction::complete);
+            } catch (RuntimeException ex) {
+                transaction.result.completeExceptionally(ex);
+            }
+            return;
+        }
+
+        List<Event> combined = new ArrayList<>();
+        batch.forEach(transaction -> combined.addAll(transaction.events));
+        try {
+            storage.apply(combined).whenComplete((firstToken, error) -> {
+                long offset = 0;
+                for (PendingTransaction transaction : batch) {
+                    transaction.complete(firstToken == null ? null : firstToken + offset, error);
+                    offset += transaction.events.size();
+                }
+            });
+        } catch (RuntimeException ex) {
+            batch.forEach(transaction -> transaction.result.completeExceptionally(ex));
+        }
+    }
+
+    private static class PendingTransaction {
+
+        private final List<Event> events;
+        private final int size;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        private PendingTransaction(List<Event> events) {
+            this.events = events;
+            int bytes = 0;
+            for (Event event : events) {
+                bytes += event.getSerializedSize();
+            }
+            this.size = bytes;
+        }
+
+        private void complete(Long firstToken, Throwable error) {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(firstToken);
+            }
+        }
+    }
+}
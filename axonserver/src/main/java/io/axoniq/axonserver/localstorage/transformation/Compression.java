@@ -0,0 +1,63 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.transformation;
+
+/**
+ * Compression algorithms for events in a segment. The algorithm is stored in the flags in the segment header, so each
+ * segment is read with the algorithm it was written with.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public enum Compression {
+    /**
+     * Events are stored uncompressed.
+     */
+    NONE(0),
+    /**
+     * Events are compressed using LZ4.
+     */
+    LZ4(0x100);
+
+    /**
+     * Bits in the segment flags reserved for the compression algorithm.
+     */
+    public static final int MASK = 0xF00;
+
+    private final int flag;
+
+    Compression(int flag) {
+        this.flag = flag;
+    }
+
+    /**
+     * @return the value of this compression algorithm in the segment flags
+     */
+    public int flag() {
+        return flag;
+    }
+
+    /**
+     * Returns the compression algorithm from the flags in a segment header. Flags that do not contain a known
+     * compression algorithm are treated as uncompressed, as older versions did not reserve these bits.
+     *
+     * @param flags the flags in the segment header
+     * @return the compression algorithm
+     */
+    public static Compression fromFlags(int flags) {
+        int compressionFlag = flags & MASK;
+        for (Compression compression : values()) {
+            if (compression.flag == compressionFlag) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+}
@@ -10,13 +10,20 @@
 package io.axoniq.axonserver.localstorage.transformation;
 
 /**
+ * Returns the event transformer for the compression algorithm in the segment flags.
+ *
  * @author Marc Gathier
  */
 public class DefaultEventTransformerFactory implements EventTransformerFactory {
 
     @Override
     public EventTransformer get(int flags) {
-        return NoOpEventTransformer.INSTANCE;
+        switch (Compression.fromFlags(flags)) {
+            case LZ4:
+                return Lz4EventTransformer.INSTANCE;
+            default:
+                return NoOpEventTransformer.INSTANCE;
+        }
     }
 
 }
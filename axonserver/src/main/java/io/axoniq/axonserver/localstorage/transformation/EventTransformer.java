@@ -32,4 +32,14 @@ public interface EventTransformer {
      * @return transformed bytes to store
      */
     byte[] toStorage(byte[] bytes);
+
+    /**
+     * Checks if the transformer stores the protobuf event bytes unchanged. If so, events can be serialized directly
+     * into the storage buffer.
+     *
+     * @return true if stored bytes are equal to the protobuf event bytes
+     */
+    default boolean isIdentity() {
+        return false;
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.transformation;
+
+import io.axoniq.axonserver.exception.ErrorCode;
+import io.axoniq.axonserver.exception.MessagingPlatformException;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.util.Arrays;
+
+/**
+ * Compresses events using LZ4. Each stored event starts with a marker byte. Events that are too small to benefit from
+ * compression, or that do not become smaller when compressed, are stored uncompressed after the marker. For compressed
+ * events the marker is followed by the uncompressed length (4 bytes) and the compressed bytes.
+ *
+ * @author Marc Gathier
+ * @since 2023.1.0
+ */
+public class Lz4EventTransformer implements EventTransformer {
+
+    public static final Lz4EventTransformer INSTANCE = new Lz4EventTransformer();
+
+    private static final byte UNCOMPRESSED = 0;
+    private static final byte COMPRESSED = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int MIN_COMPRESS_SIZE = 64;
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    private Lz4EventTransformer() {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        compressor = factory.fastCompressor();
+        decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public byte[] fromStorage(byte[] eventBytes) {
+        if (eventBytes[0] == UNCOMPRESSED) {
+            return Arrays.copyOfRange(eventBytes, 1, eventBytes.length);
+        }
+        if (eventBytes[0] != COMPRESSED) {
+            throw new MessagingPlatformException(ErrorCode.DATAFILE_READ_ERROR,
+                                                 "Unknown compression marker: " + eventBytes[0]);
+        }
+        int length = readInt(eventBytes);
+        byte[] result = new byte[length];
+        try {
+            int decompressed = decompressor.decompress(eventBytes,
+                                                       HEADER_SIZE,
+                                                       eventBytes.length - HEADER_SIZE,
+                                                       result,
+                                                       0,
+                                                       length);
+            if (decompressed != length) {
+                throw new MessagingPlatformException(ErrorCode.DATAFILE_READ_ERROR,
+                                                     "Decompressed event has unexpected length: " + decompressed);
+            }
+        } catch (LZ4Exception ex) {
+            throw new MessagingPlatformException(ErrorCode.DATAFILE_READ_ERROR, "Failed to decompress event", ex);
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] toStorage(byte[] bytes) {
+        if (bytes.length >= MIN_COMPRESS_SIZE) {
+            byte[] compressed = new byte[HEADER_SIZE + compressor.maxCompressedLength(bytes.length)];
+            int compressedLength = compressor.compress(bytes,
+                                                       0,
+                                                       bytes.length,
+                                                       compressed,
+                                                       HEADER_SIZE,
+                                                       compressed.length - HEADER_SIZE);
+            if (compressedLength + HEADER_SIZE < bytes.length + 1) {
+                compressed[0] = COMPRESSED;
+                writeInt(compressed, bytes.length);
+                return Arrays.copyOf(compressed, compressedLength + HEADER_SIZE);
+            }
+        }
+        byte[] result = new byte[bytes.length + 1];
+        result[0] = UNCOMPRESSED;
+        System.arraycopy(bytes, 0, result, 1, bytes.length);
+        return result;
+    }
+
+    private static int readInt(byte[] bytes) {
+        return ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+    }
+
+    private static void writeInt(byte[] bytes, int value) {
+        bytes[1] = (byte) (value >>> 24);
+        bytes[2] = (byte) (value >>> 16);
+        bytes[3] = (byte) (value >>> 8);
+        bytes[4] = (byte) value;
+    }
+}
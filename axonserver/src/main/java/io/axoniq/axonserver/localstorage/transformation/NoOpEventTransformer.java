@@ -28,4 +28,9 @@ public class NoOpEventTransformer implements EventTransformer {
     public byte[] toStorage(byte[] event) {
         return event;
     }
+
+    @Override
+    public boolean isIdentity() {
+        return true;
+    }
 }
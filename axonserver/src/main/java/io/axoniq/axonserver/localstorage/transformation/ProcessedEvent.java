@@ -11,6 +11,7 @@ package io.axoniq.axonserver.localstorage.transformation;
 
 import io.axoniq.axonserver.grpc.MetaDataValue;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -22,6 +23,16 @@ public interface ProcessedEvent {
 
     byte[] toByteArray();
 
+    /**
+     * Writes the bytes to store for this event to the buffer, starting at the current position of the buffer. Advances
+     * the position of the buffer with {@link #getSerializedSize()} bytes.
+     *
+     * @param buffer the buffer to write the event to
+     */
+    default void writeTo(ByteBuffer buffer) {
+        buffer.put(toByteArray());
+    }
+
     String getAggregateIdentifier();
 
     long getAggregateSequenceNumber();
@@ -9,13 +9,21 @@
 
 package io.axoniq.axonserver.localstorage.transformation;
 
+import com.google.protobuf.CodedOutputStream;
+import io.axoniq.axonserver.exception.ErrorCode;
+import io.axoniq.axonserver.exception.MessagingPlatformException;
 import io.axoniq.axonserver.grpc.MetaDataValue;
 import io.axoniq.axonserver.grpc.event.Event;
 import io.axoniq.axonserver.util.StringUtils;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
+ * Wrapper for an event to store. When the event transformer does not change the event bytes, the event is serialized
+ * directly into the storage buffer, without creating an intermediate byte array.
+ *
  * @author Marc Gathier
  */
 public class WrappedEvent implements ProcessedEvent {
@@ -25,17 +33,32 @@ public class WrappedEvent implements ProcessedEvent {
 
     public WrappedEvent(Event event, EventTransformer eventTransformer) {
         this.event = event;
-        this.dataForWrite = eventTransformer.toStorage(event.toByteArray());
+        this.dataForWrite = eventTransformer.isIdentity() ? null : eventTransformer.toStorage(event.toByteArray());
     }
 
     @Override
     public int getSerializedSize() {
-        return dataForWrite.length;
+        return dataForWrite == null ? event.getSerializedSize() : dataForWrite.length;
     }
 
     @Override
     public byte[] toByteArray() {
-        return dataForWrite;
+        return dataForWrite == null ? event.toByteArray() : dataForWrite;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if (dataForWrite != null) {
+            buffer.put(dataForWrite);
+            return;
+        }
+        try {
+            CodedOutputStream outputStream = CodedOutputStream.newInstance(buffer);
+            event.writeTo(outputStream);
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new MessagingPlatformException(ErrorCode.DATAFILE_WRITE_ERROR, "Failed to write event", e);
+        }
     }
 
     @Override
@@ -83,15 +83,31 @@ public enum BaseMetricName implements MetricName {
     AXON_INDEX_CLOSE("file.index.close", "Rate of index files closed"),
     AXON_BLOOM_OPEN("file.bloom.open", "Number of bloom filter files opened"),
     AXON_BLOOM_CLOSE("file.bloom.close", "Number of bloom filter files closed"),
+    AXON_FILE_CACHE_HIT("file.cache.hit", "Number of lookups of indexes or bloom filters found in the cache"),
+    AXON_FILE_CACHE_MISS("file.cache.miss", "Number of lookups of indexes or bloom filters not found in the cache"),
+    AXON_FILE_CACHE_LOAD("file.cache.load", "Time to load an index or bloom filter in the cache"),
+    AXON_FILE_CACHE_EVICTION("file.cache.eviction", "Number of indexes or bloom filters evicted from the cache"),
+    AXON_FILE_CACHE_WEIGHT("file.cache.weight", "Total weight of the indexes or bloom filters in the cache"),
     AXON_SEGMENT_OPEN("file.segment.open", "Number of event store segment files opened"),
     AXON_SEGMENT_MOVE_INITIATED("file.segment.moved.initiated", "Number of event store segment files initiated to be moved to next tier"),
     AXON_SEGMENT_MOVED("file.segment.moved.completed", "Number of event store segment files moved to next tier"),
     AXON_SEGMENT_MOVED_DURATION("file.segment.moved.duration", "Duration of moving event store segment files to next tier"),
     AXON_SEGMENTS_PER_TIER( "file.segment.per.tier", "Current number of segments in a tier"),
+    AXON_GROUP_COMMIT_BATCH_SIZE("file.groupcommit.batch.size", "Number of transactions forced to disk in a single group commit"),
+    AXON_GROUP_COMMIT_FORCE_DURATION("file.groupcommit.force.duration", "Time to force a group commit to disk"),
+    AXON_COMPRESSION_RATIO("file.compression.ratio", "Ratio between the size of the events in a transaction and the size stored in the event store"),
     AXON_AGGREGATE_READTIME("local.aggregate.readtime", "Elapsed time for reading events from the event store"),
     AXON_AGGREGATE_SEGMENT_COUNT("local.aggregate.segments", "Number of segments where aggregate is found"),
     AXON_LAST_SEQUENCE_READTIME("local.lastsequence.readtime",
                                 "Elapsed time for retrieving the last sequence number for an aggregate"),
+    AXON_SEQUENCE_CACHE_HIT("local.sequencecache.hit",
+                            "Number of sequence number checks for aggregates found in the sequence number cache"),
+    AXON_SEQUENCE_CACHE_MISS("local.sequencecache.miss",
+                             "Number of sequence number checks that needed to find the aggregate in the event store"),
+    AXON_SEQUENCE_CACHE_EVICTION("local.sequencecache.eviction",
+                                 "Number of aggregates evicted from the sequence number cache"),
+    AXON_TRACKER_QUEUE_DELAY("local.tracker.queue.delay",
+                             "Time between a tracking event processor being woken up and sending events to it"),
     LOCAL_QUERY_RESPONSE_TIME("local.query.responsetime",
                               "Response time for query execution from time received by Axon Server to response received"),
     INTERCEPTOR_DURATION("local.interceptor.duration",
@@ -350,7 +350,7 @@ public class LocalEventStoreTest {
         @Override
         public CloseableIterator<SerializedEventWithToken> getGlobalIterator(long start) {
             return new CloseableIterator<SerializedEventWithToken>() {
-                int index = 0;
+                int index = (int) start;
 
                 @Override
                 public boolean hasNext() {
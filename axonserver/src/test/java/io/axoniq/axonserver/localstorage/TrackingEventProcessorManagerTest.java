@@ -16,8 +16,12 @@ import io.grpc.stub.StreamObserver;
 import org.junit.*;
 import org.springframework.data.util.CloseableIterator;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -65,7 +69,9 @@ public class TrackingEventProcessorManagerTest {
                 }
             };
         };
-        testSubject = new TrackingEventProcessorManager("demo", iteratorBuilder, 5);
+        testSubject = TrackingEventProcessorManager.builder("demo", iteratorBuilder)
+                                                   .blacklistedSendAfter(5)
+                                                   .build();
     }
 
     @Test
@@ -147,6 +153,318 @@ public class TrackingEventProcessorManagerTest {
         assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(10, messagesReceived.get()));
     }
 
+    @Test
+    public void blacklistSkipsEvents() throws InterruptedException {
+        List<Long> iteratorStarts = new CopyOnWriteArrayList<>();
+        Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder = token -> {
+            iteratorStarts.add(token);
+            AtomicLong nextToken = new AtomicLong(token);
+            return new CloseableIterator<SerializedEventWithToken>() {
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextToken.get() < 2000;
+                }
+
+                @Override
+                public SerializedEventWithToken next() {
+                    long current = nextToken.getAndIncrement();
+                    return new SerializedEventWithToken(current,
+                                                        Event.newBuilder()
+                                                             .setPayload(SerializedObject.newBuilder()
+                                                                                         .setType(current < 1000 ?
+                                                                                                          "DemoType" :
+                                                                                                          "OtherType")
+                                                                                         .setRevision("1.0"))
+                                                             .build());
+                }
+            };
+        };
+        TrackingEventProcessorManager manager = TrackingEventProcessorManager.builder("demo", iteratorBuilder)
+                                                                             .nextCandidateToken((token, excluded) ->
+                                                                                     Math.max(token, 1000L))
+                                                                             .blacklistedSendAfter(10_000)
+                                                                             .build();
+        List<Long> received = new CopyOnWriteArrayList<>();
+        TrackingEventProcessorManager.EventTracker tracker =
+                manager.createEventTracker(0L, "", true, new StreamObserver<SerializedEventWithToken>() {
+                    @Override
+                    public void onNext(SerializedEventWithToken value) {
+                        received.add(value.getToken());
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+        tracker.addPermits(5);
+        tracker.addBlacklist(Collections.singletonList(PayloadDescription.newBuilder()
+                                                                         .setType("DemoType")
+                                                                         .setRevision("1.0")
+                                                                         .build()));
+        tracker.start();
+        try {
+            assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(5, received.size()));
+            assertEquals(Long.valueOf(1000), received.get(0));
+            assertEquals(Arrays.asList(0L, 1000L), iteratorStarts);
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void sharedTail() throws InterruptedException {
+        AtomicLong lastToken = new AtomicLong(99);
+        AtomicInteger eventsRead = new AtomicInteger();
+        Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder = token -> {
+            AtomicLong nextToken = new AtomicLong(token);
+            return new CloseableIterator<SerializedEventWithToken>() {
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextToken.get() <= lastToken.get();
+                }
+
+                @Override
+                public SerializedEventWithToken next() {
+                    eventsRead.incrementAndGet();
+                    return new SerializedEventWithToken(nextToken.getAndIncrement(),
+                                                        Event.newBuilder()
+                                                             .setPayload(SerializedObject.newBuilder()
+                                                                                         .setType("DemoType")
+                                                                                         .setRevision("1.0"))
+                                                             .build());
+                }
+            };
+        };
+        TrackingEventProcessorManager manager = TrackingEventProcessorManager.builder("demo", iteratorBuilder)
+                                                                             .blacklistedSendAfter(10_000)
+                                                                             .sharedTailSize(50)
+                                                                             .build();
+        List<List<Long>> received = new CopyOnWriteArrayList<>();
+        List<TrackingEventProcessorManager.EventTracker> trackers = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            List<Long> tokens = new CopyOnWriteArrayList<>();
+            received.add(tokens);
+            TrackingEventProcessorManager.EventTracker tracker =
+                    manager.createEventTracker(0L, "", true, new StreamObserver<SerializedEventWithToken>() {
+                        @Override
+                        public void onNext(SerializedEventWithToken value) {
+                            tokens.add(value.getToken());
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                        }
+                    });
+            trackers.add(tracker);
+            tracker.addPermits(1000);
+            tracker.start();
+        }
+        try {
+            assertWithin(1, TimeUnit.SECONDS, () -> received.forEach(tokens -> assertEquals(100, tokens.size())));
+            assertEquals(500, eventsRead.get());
+
+            lastToken.set(199);
+            manager.reschedule();
+            assertWithin(1, TimeUnit.SECONDS, () -> received.forEach(tokens -> assertEquals(200, tokens.size())));
+            assertEquals(600, eventsRead.get());
+
+            // tracker 0 runs out of permits and falls behind the shared tail
+            trackers.get(0).addPermits(-790);
+            lastToken.set(499);
+            manager.reschedule();
+            assertWithin(1, TimeUnit.SECONDS, () -> received.subList(1, 5)
+                                                            .forEach(tokens -> assertEquals(500, tokens.size())));
+            assertEquals(210, received.get(0).size());
+            trackers.get(0).addPermits(1000);
+            assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(500, received.get(0).size()));
+            // 300 events read once for the trackers in the shared tail, 290 read by tracker 0 itself
+            assertEquals(1190, eventsRead.get());
+
+            for (List<Long> tokens : received) {
+                for (int i = 0; i < tokens.size(); i++) {
+                    assertEquals(Long.valueOf(i), tokens.get(i));
+                }
+            }
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void idleTrackersAreNotPolled() throws InterruptedException {
+        AtomicLong lastToken = new AtomicLong(9);
+        AtomicInteger hasNextCalls = new AtomicInteger();
+        Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder = token -> {
+            AtomicLong nextToken = new AtomicLong(token);
+            return new CloseableIterator<SerializedEventWithToken>() {
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public boolean hasNext() {
+                    hasNextCalls.incrementAndGet();
+                    return nextToken.get() <= lastToken.get();
+                }
+
+                @Override
+                public SerializedEventWithToken next() {
+                    return new SerializedEventWithToken(nextToken.getAndIncrement(),
+                                                        Event.newBuilder()
+                                                             .setPayload(SerializedObject.newBuilder()
+                                                                                         .setType("DemoType")
+                                                                                         .setRevision("1.0"))
+                                                             .build());
+                }
+            };
+        };
+        TrackingEventProcessorManager manager = TrackingEventProcessorManager.builder("demo", iteratorBuilder)
+                                                                             .blacklistedSendAfter(10_000)
+                                                                             .build();
+        AtomicInteger received = new AtomicInteger();
+        TrackingEventProcessorManager.EventTracker tracker =
+                manager.createEventTracker(0L, "", true, new StreamObserver<SerializedEventWithToken>() {
+                    @Override
+                    public void onNext(SerializedEventWithToken value) {
+                        received.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+        tracker.addPermits(100);
+        tracker.start();
+        try {
+            assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(10, received.get()));
+            Thread.sleep(50);
+            int calls = hasNextCalls.get();
+            Thread.sleep(250);
+            assertEquals(calls, hasNextCalls.get());
+
+            lastToken.set(10);
+            manager.reschedule();
+            assertWithin(50, TimeUnit.MILLISECONDS, () -> assertEquals(11, received.get()));
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void replayingTrackerDoesNotDelayLiveTracker() throws InterruptedException {
+        AtomicLong lastToken = new AtomicLong(9_999);
+        Function<Long, CloseableIterator<SerializedEventWithToken>> iteratorBuilder = token -> {
+            AtomicLong nextToken = new AtomicLong(token);
+            return new CloseableIterator<SerializedEventWithToken>() {
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextToken.get() <= lastToken.get();
+                }
+
+                @Override
+                public SerializedEventWithToken next() {
+                    return new SerializedEventWithToken(nextToken.getAndIncrement(),
+                                                        Event.newBuilder()
+                                                             .setPayload(SerializedObject.newBuilder()
+                                                                                         .setType("DemoType")
+                                                                                         .setRevision("1.0"))
+                                                             .build());
+                }
+            };
+        };
+        TrackerSchedulingProperties scheduling = new TrackerSchedulingProperties();
+        scheduling.setReplayThreads(2);
+        scheduling.setReplayEventsPerRun(100);
+        TrackingEventProcessorManager manager = TrackingEventProcessorManager.builder("demo", iteratorBuilder)
+                                                                             .blacklistedSendAfter(10_000)
+                                                                             .scheduling(scheduling)
+                                                                             .build();
+        CountDownLatch replayBlocked = new CountDownLatch(1);
+        AtomicInteger replayed = new AtomicInteger();
+        TrackingEventProcessorManager.EventTracker replayingTracker =
+                manager.createEventTracker(0L, "replay", "replaying-processor", true,
+                                           new StreamObserver<SerializedEventWithToken>() {
+                    @Override
+                    public void onNext(SerializedEventWithToken value) {
+                        if (replayed.incrementAndGet() == 50) {
+                            try {
+                                replayBlocked.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+        AtomicInteger live = new AtomicInteger();
+        TrackingEventProcessorManager.EventTracker liveTracker =
+                manager.createEventTracker(10_000L, "live", "live-processor", true,
+                                           new StreamObserver<SerializedEventWithToken>() {
+                    @Override
+                    public void onNext(SerializedEventWithToken value) {
+                        live.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+        replayingTracker.addPermits(100_000);
+        replayingTracker.start();
+        liveTracker.addPermits(100);
+        liveTracker.start();
+        try {
+            assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(50, replayed.get()));
+            Thread.sleep(50);
+
+            lastToken.set(10_009);
+            manager.reschedule();
+            assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(10, live.get()));
+            assertEquals(50, replayed.get());
+
+            replayBlocked.countDown();
+            assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(10_010, replayed.get()));
+        } finally {
+            replayBlocked.countDown();
+            manager.close();
+        }
+    }
+
     @Test
     public void testStopAllWhereRequestIsNotForLocalStoreOnly() throws InterruptedException {
         AtomicInteger useLocalStoreMessagesReceived = new AtomicInteger();
@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link BlockedBloomFilter}.
+ *
+ * @author Marc Gathier
+ */
+public class BlockedBloomFilterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void noFalseNegativesAfterReopen() throws IOException {
+        File file = temporaryFolder.newFile("00000000000000000000.bloom");
+        BlockedBloomFilter filter = BlockedBloomFilter.create(10_000, 0.03);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("aggregate-" + i);
+        }
+        filter.write(file.toPath());
+
+        assertTrue(BlockedBloomFilter.isBlockedBloomFilter(file.toPath()));
+        BlockedBloomFilter reopened = BlockedBloomFilter.open(file.toPath());
+        assertTrue(reopened.isMapped());
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(reopened.mightContain("aggregate-" + i));
+        }
+        reopened.close(true);
+    }
+
+    @Test
+    public void falsePositiveRateCloseToConfigured() {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(10_000, 0.03);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("aggregate-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positives: " + falsePositives, falsePositives < 5_000);
+    }
+
+    @Test
+    public void persistedBloomFilterReadsBothFormats() throws IOException {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add("aggregate-" + i);
+        }
+        for (boolean blocked : new boolean[]{true, false}) {
+            String path = temporaryFolder.newFile().getAbsolutePath();
+            PersistedBloomFilter created = new PersistedBloomFilter(path, keys.size(), 0.03f, blocked);
+            created.create();
+            created.insertAll(keys);
+            created.store();
+
+            PersistedBloomFilter loaded = new PersistedBloomFilter(path, 0, 0.03f);
+            loaded.load();
+            assertTrue(loaded.mightContain("aggregate-42"));
+            assertFalse(loaded.mightContain("aggregate-100") && loaded.mightContain("aggregate-101")
+                                && loaded.mightContain("aggregate-102"));
+            assertTrue(blocked == loaded.isMapped());
+            loaded.close(true);
+            created.close(true);
+        }
+    }
+}
@@ -88,4 +88,35 @@ class ChecksumTest {
         }, "Size parameter greater than data should cause an IllegalArgumentException");
         assertEquals("The ByteBuffer is smaller than expected", e.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCrc32cChecksum() {
+        Checksum checksum = Checksum.forTransactionVersion(AbstractFileStorageTier.TRANSACTION_VERSION_CRC32C);
+        checksum.update(SAMPLE_BYTE_BUFFER, 0, BYTES.length);
+        assertEquals(1822525864, checksum.get(), WRONG_CHECKSUM);
+    }
+
+    @Test
+    void testCrc32cPositionGreaterThan0() {
+        Checksum checksum = Checksum.forTransactionVersion(AbstractFileStorageTier.TRANSACTION_VERSION_CRC32C);
+        checksum.update(SAMPLE_BYTE_BUFFER, 5, BYTES.length - 5);
+        assertEquals(821320425, checksum.get(), WRONG_CHECKSUM);
+    }
+
+    @Test
+    void testOldTransactionVersionUsesCrc32() {
+        Checksum checksum = Checksum.forTransactionVersion(AbstractFileStorageTier.TRANSACTION_VERSION_CRC32);
+        checksum.update(SAMPLE_BYTE_BUFFER, 0, BYTES.length);
+        assertEquals(1895619624, checksum.get(), WRONG_CHECKSUM);
+    }
+
+    @Test
+    void testUpdateKeepsBufferPosition() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BYTES.length);
+        buffer.put(BYTES);
+        Checksum checksum = new Checksum();
+        checksum.update(buffer, 0, BYTES.length);
+        assertEquals(BYTES.length, buffer.position());
+        assertEquals(1895619624, checksum.get(), WRONG_CHECKSUM);
+    }
+}
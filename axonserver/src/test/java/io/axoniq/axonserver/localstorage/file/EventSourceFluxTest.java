@@ -94,8 +94,8 @@ class EventSourceFluxTest {
         assertWithin(100, TimeUnit.MILLISECONDS, () -> assertEquals(READ_ITERATIONS, closedCount.get()));
     }
 
-    private Integer[] createIntArray(int i) {
-        Integer[] ints = new Integer[i];
+    private int[] createIntArray(int i) {
+        int[] ints = new int[i];
         for (int j = 0; j < i; j++) {
             ints[j] = i;
         }
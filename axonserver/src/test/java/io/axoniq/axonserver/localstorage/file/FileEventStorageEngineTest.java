@@ -15,12 +15,14 @@ import io.axoniq.axonserver.config.FileSystemMonitor;
 import io.axoniq.axonserver.config.SystemInfoProvider;
 import io.axoniq.axonserver.grpc.SerializedObject;
 import io.axoniq.axonserver.grpc.event.Event;
+import io.axoniq.axonserver.grpc.event.PayloadDescription;
 import io.axoniq.axonserver.localstorage.EventType;
 import io.axoniq.axonserver.localstorage.EventTypeContext;
 import io.axoniq.axonserver.localstorage.QueryOptions;
 import io.axoniq.axonserver.localstorage.SerializedEvent;
 import io.axoniq.axonserver.localstorage.SerializedEventWithToken;
 import io.axoniq.axonserver.localstorage.SerializedTransactionWithToken;
+import io.axoniq.axonserver.localstorage.transformation.Compression;
 import io.axoniq.axonserver.localstorage.transformation.DefaultEventTransformerFactory;
 import io.axoniq.axonserver.localstorage.transformation.EventTransformerFactory;
 import io.axoniq.axonserver.metric.DefaultMetricCollector;
@@ -37,8 +39,11 @@ import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
@@ -46,8 +51,10 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static io.axoniq.axonserver.test.AssertUtils.assertWithin;
 import static java.util.Collections.singletonList;
@@ -58,6 +65,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 
 
@@ -71,6 +79,7 @@ public class FileEventStorageEngineTest {
     private final String context = "junit";
     private final EmbeddedDBProperties embeddedDBProperties;
     private final MeterFactory meterFactory = new MeterFactory(new SimpleMeterRegistry(), new DefaultMetricCollector());
+    private final Map<String, Long> nextSequenceNumbers = new HashMap<>();
 
     public FileEventStorageEngineTest() {
         embeddedDBProperties = new EmbeddedDBProperties(new SystemInfoProvider() {
@@ -278,7 +287,9 @@ public class FileEventStorageEngineTest {
         Set<String> expectedFilenames = Sets.newHashSet("00000000000000000000.events",
                                                         "00000000000000000001_00001.events");
         for (File f : file.listFiles()) {
-            assertTrue(expectedFilenames.remove(f.getName()));
+            if (!f.equals(embeddedDBProperties.getEvent().preallocatedSegment(file.getPath()))) {
+                assertTrue(expectedFilenames.remove(f.getName()));
+            }
         }
         assertTrue(expectedFilenames.isEmpty());
     }
@@ -301,7 +312,9 @@ public class FileEventStorageEngineTest {
         Set<String> expectedFilenames = Sets.newHashSet(
                 "00000000000000000000_00001.events");
         for (File f : file.listFiles()) {
-            assertTrue(expectedFilenames.remove(f.getName()));
+            if (!f.equals(embeddedDBProperties.getEvent().preallocatedSegment(file.getPath()))) {
+                assertTrue(expectedFilenames.remove(f.getName()));
+            }
         }
         assertTrue(expectedFilenames.isEmpty());
 
@@ -415,6 +428,37 @@ public class FileEventStorageEngineTest {
         testSubject.store(singletonList(newEvent)).get(1, TimeUnit.SECONDS);
     }
 
+    /**
+     * Stores a transaction with {@code count} events for the aggregate, continuing the sequence numbers of the events
+     * stored by earlier calls for the same aggregate.
+     */
+    private void storeEvents(FileEventStorageEngine testSubject, String aggregateId, int count, int payloadSize)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        long first = nextSequenceNumbers.getOrDefault(aggregateId, 0L);
+        nextSequenceNumbers.put(aggregateId, first + count);
+        storeEvents(testSubject, count, i -> event(aggregateId, first + i, payloadSize).build());
+    }
+
+    private void storeEvents(FileEventStorageEngine testSubject, int count, IntFunction<Event> eventFactory)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        List<Event> events = IntStream.range(0, count)
+                                      .mapToObj(eventFactory)
+                                      .collect(Collectors.toList());
+        testSubject.store(events).get(1, TimeUnit.SECONDS);
+    }
+
+    private static Event.Builder event(String aggregateId, long sequenceNumber, int payloadSize) {
+        return Event.newBuilder()
+                    .setAggregateIdentifier(aggregateId)
+                    .setAggregateSequenceNumber(sequenceNumber)
+                    .setAggregateType("Demo")
+                    .setPayload(payload(payloadSize));
+    }
+
+    private static SerializedObject.Builder payload(int size) {
+        return SerializedObject.newBuilder().setData(ByteString.copyFrom(new byte[size]));
+    }
+
     private void storeEventWithNewVersion(FileEventStorageEngine testSubject, int payloadSize, int segmentVersion)
             throws ExecutionException, InterruptedException, TimeoutException {
         byte[] buffer = new byte[(int) payloadSize];
@@ -459,6 +503,251 @@ public class FileEventStorageEngineTest {
         }
     }
 
+    @Test
+    public void preallocatedSegments() throws ExecutionException, InterruptedException, TimeoutException {
+        embeddedDBProperties.getEvent().setPreallocateSegments(true);
+        FileEventStorageEngine testSubject = primaryEventStore();
+        File preallocated = embeddedDBProperties.getEvent().preallocatedSegment(
+                embeddedDBProperties.getEvent().getPrimaryStorage(context));
+        assertWithin(1, TimeUnit.SECONDS, () -> assertTrue(testSubject.segmentPrepared()));
+        assertTrue(preallocated.exists());
+
+        for (int i = 0; i < 10; i++) {
+            storeEvent(testSubject, embeddedDBProperties.getEvent().getSegmentSize() / 4);
+        }
+
+        assertTrue(testSubject.getBackupFilenames(-1, 0, true).count() > 1);
+        assertEquals(10, testSubject.nextToken());
+        assertWithin(1, TimeUnit.SECONDS, () -> assertTrue(testSubject.segmentPrepared()));
+        assertTrue(preallocated.exists());
+        try (CloseableIterator<SerializedEventWithToken> iterator = testSubject.getGlobalIterator(0)) {
+            long counter = 0;
+            while (iterator.hasNext()) {
+                assertEquals(counter++, iterator.next().getToken());
+            }
+            assertEquals(10, counter);
+        }
+    }
+
+    @Test
+    public void compressionChangedOnRestart() throws ExecutionException, InterruptedException, TimeoutException {
+        FileEventStorageEngine testSubject = primaryEventStore();
+        for (int i = 0; i < 3; i++) {
+            storeEvent(testSubject, 1000);
+        }
+        testSubject.close(false);
+        reset(fileSystemMonitor);
+
+        embeddedDBProperties.getEvent().setCompression(Compression.LZ4);
+        testSubject = primaryEventStore();
+        for (int i = 0; i < 3; i++) {
+            storeEvent(testSubject, 1000);
+        }
+
+        assertEquals(2, testSubject.getBackupFilenames(-1, 0, true).count());
+        try (CloseableIterator<SerializedEventWithToken> iterator = testSubject.getGlobalIterator(0)) {
+            long counter = 0;
+            while (iterator.hasNext()) {
+                SerializedEventWithToken event = iterator.next();
+                assertEquals(counter++, event.getToken());
+                assertEquals(1000, event.asEvent().getPayload().getData().size());
+            }
+            assertEquals(6, counter);
+        }
+    }
+
+    @Test
+    public void groupCommit() throws InterruptedException {
+        embeddedDBProperties.getEvent().setGroupCommit(true);
+        embeddedDBProperties.getEvent().setGroupCommitMaxTransactions(10);
+        FileEventStorageEngine testSubject = primaryEventStore();
+        CountDownLatch latch = new CountDownLatch(1000);
+        Set<Long> firstTokens = Sets.newConcurrentHashSet();
+        IntStream.range(0, 1000).parallel().forEach(j -> {
+            Event event = event(UUID.randomUUID().toString(), 0, 1000).build();
+            testSubject.store(singletonList(event)).thenAccept(t -> {
+                firstTokens.add(t);
+                latch.countDown();
+            });
+        });
+
+        if (!latch.await(5, TimeUnit.SECONDS)) {
+            throw new RuntimeException("Timeout storing events");
+        }
+        assertEquals(1000, firstTokens.size());
+        assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(999, testSubject.getLastToken()));
+    }
+
+    @Test
+    public void transactionPositionIndex() throws ExecutionException, InterruptedException, TimeoutException {
+        embeddedDBProperties.getEvent().setTransactionPositionIndexInterval(4096);
+        FileEventStorageEngine testSubject = primaryEventStore();
+        for (int i = 0; i < 1200; i++) {
+            storeEvents(testSubject, "position-" + i, 1 + i % 3, 500);
+        }
+        assertWithin(5, TimeUnit.SECONDS, () -> assertEquals(1, testSubject.activeSegmentCount()));
+        File positionIndexFile = embeddedDBProperties.getEvent()
+                                                     .positionIndex(embeddedDBProperties.getEvent()
+                                                                                        .getPrimaryStorage(context),
+                                                                    new FileVersion(0, 0));
+        assertTrue(positionIndexFile.exists());
+        long lastToken = testSubject.getLastToken();
+        testSubject.close(false);
+        reset(fileSystemMonitor);
+
+        FileEventStorageEngine restarted = primaryEventStore();
+        for (long start = 0; start <= lastToken; start += 97) {
+            try (CloseableIterator<SerializedEventWithToken> iterator = restarted.getGlobalIterator(start)) {
+                long expected = start;
+                while (iterator.hasNext() && expected < start + 50) {
+                    assertEquals(expected++, iterator.next().getToken());
+                }
+                assertEquals(Math.min(start + 50, lastToken + 1), expected);
+            }
+        }
+
+        int transactions = 0;
+        try (CloseableIterator<SerializedTransactionWithToken> iterator =
+                     restarted.transactionIterator(lastToken - 2, lastToken + 1)) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                transactions++;
+            }
+        }
+        assertEquals(1, transactions);
+    }
+
+    @Test
+    public void recentSequenceNumbers() throws ExecutionException, InterruptedException, TimeoutException {
+        FileEventStorageEngine testSubject = primaryEventStore();
+        for (int i = 0; i < 10; i++) {
+            storeEvents(testSubject, "A", 100, 1000);
+        }
+        for (int i = 0; i < 5; i++) {
+            testSubject.store(singletonList(Event.newBuilder()
+                                                 .setAggregateIdentifier("B")
+                                                 .setAggregateType("Demo")
+                                                 .setAggregateSequenceNumber(i)
+                                                 .setPayload(SerializedObject.newBuilder().build())
+                                                 .build())).get(1, TimeUnit.SECONDS);
+        }
+
+        assertWithin(1, TimeUnit.SECONDS, () -> {
+            Map<String, Long> lastSequenceNumbers = new HashMap<>();
+            testSubject.recentSequenceNumbers(2)
+                       .forEach(s -> lastSequenceNumbers.putIfAbsent(s.aggregateId(), s.lastSequenceNumber()));
+            assertEquals(Long.valueOf(999), lastSequenceNumbers.get("A"));
+            assertEquals(Long.valueOf(4), lastSequenceNumbers.get("B"));
+        });
+        assertEquals(0, testSubject.recentSequenceNumbers(0).count());
+    }
+
+    @Test
+    public void aggregateEventsFromConcurrentSegments()
+            throws ExecutionException, InterruptedException, TimeoutException {
+        embeddedDBProperties.getEvent().setAggregateReadSegmentConcurrency(8);
+        FileEventStorageEngine testSubject = primaryEventStore();
+        for (int i = 0; i < 30; i++) {
+            storeEvents(testSubject, "A", 100, 1000);
+        }
+
+        StepVerifier.create(testSubject.eventsPerAggregate("A", 50, 2950, 0)
+                                       .map(SerializedEvent::getAggregateSequenceNumber), 10)
+                    .expectNextSequence(LongStream.range(50, 60).boxed().collect(Collectors.toList()))
+                    .thenRequest(Long.MAX_VALUE)
+                    .expectNextSequence(LongStream.range(60, 2950).boxed().collect(Collectors.toList()))
+                    .verifyComplete();
+    }
+
+    @Test
+    public void recentEventsCache() throws ExecutionException, InterruptedException, TimeoutException {
+        embeddedDBProperties.getEvent().setRecentEventsCacheMemory(1024 * 1024);
+        FileEventStorageEngine testSubject = primaryEventStore();
+        for (int i = 0; i < 10; i++) {
+            storeEvents(testSubject, "A", 100, 1000);
+        }
+
+        List<SerializedEvent> events = testSubject.eventsPerAggregate("A", 0, Long.MAX_VALUE, 0)
+                                                  .collectList().block();
+        assertNotNull(events);
+        assertEquals(1000, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, events.get(i).getAggregateSequenceNumber());
+        }
+
+        List<SerializedEvent> tail = testSubject.eventsPerAggregate("A", 990, 995, 0).collectList().block();
+        assertNotNull(tail);
+        assertEquals(5, tail.size());
+        assertEquals(990, tail.get(0).getAggregateSequenceNumber());
+
+        List<Long> processed = new ArrayList<>();
+        testSubject.processEventsPerAggregate("A", 800, 1000, 0,
+                                              e -> processed.add(e.getAggregateSequenceNumber()));
+        assertEquals(LongStream.range(800, 1000).boxed().collect(Collectors.toList()), processed);
+    }
+
+    @Test
+    public void payloadTypeIndex() throws ExecutionException, InterruptedException, TimeoutException {
+        embeddedDBProperties.getEvent().setUsePayloadTypeIndex(true);
+        FileEventStorageEngine testSubject = primaryEventStore();
+        for (int i = 0; i < 30; i++) {
+            int transaction = i;
+            storeEvents(testSubject, 100, j -> Event.newBuilder()
+                                                    .setPayload(payload(500)
+                                                                        .setType(transaction * 100 + j == 2500 ?
+                                                                                         "Rare" : "Common")
+                                                                        .setRevision("1"))
+                                                    .build());
+        }
+        assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(2999, testSubject.getLastToken()));
+        Set<PayloadDescription> excluded = Sets.newHashSet(PayloadDescription.newBuilder()
+                                                                             .setType("Common")
+                                                                             .setRevision("1")
+                                                                             .build());
+        testSubject.close(false);
+        reset(fileSystemMonitor);
+
+        FileEventStorageEngine restarted = primaryEventStore();
+        long candidate = restarted.nextCandidateToken(0, excluded);
+        assertTrue(candidate > 2500 - PayloadTypeIndex.BLOCK_SIZE);
+        assertTrue(candidate <= 2500);
+        assertEquals(2501, restarted.nextCandidateToken(2501, excluded));
+        assertEquals(3000, restarted.nextCandidateToken(2800, excluded));
+        assertEquals(100, restarted.nextCandidateToken(100, Collections.emptySet()));
+    }
+
+    @Test
+    public void segmentSummary() throws ExecutionException, InterruptedException, TimeoutException {
+        embeddedDBProperties.getEvent().setUseSegmentSummary(true);
+        FileEventStorageEngine testSubject = primaryEventStore();
+        for (int i = 0; i < 20; i++) {
+            int transaction = i;
+            storeEvents(testSubject, 100, j -> event("summary-" + transaction, j, 1000)
+                    .setTimestamp(1000 + (transaction * 100 + j) * 10L)
+                    .build());
+        }
+        assertWithin(5, TimeUnit.SECONDS, () -> assertEquals(1, testSubject.activeSegmentCount()));
+        File summaryFile = embeddedDBProperties.getEvent()
+                                               .summary(embeddedDBProperties.getEvent().getPrimaryStorage(context), 0);
+        assertTrue(summaryFile.exists());
+        testSubject.close(false);
+        reset(fileSystemMonitor);
+
+        FileEventStorageEngine restarted = primaryEventStore();
+        assertEquals(0, restarted.getTokenAt(500));
+        assertEquals(0, restarted.getTokenAt(1000));
+        assertEquals(1234, restarted.getTokenAt(1000 + 12340));
+        assertEquals(1235, restarted.getTokenAt(1000 + 12345));
+        assertEquals(2000, restarted.getTokenAt(1_000_000));
+
+        AtomicInteger counter = new AtomicInteger();
+        restarted.query(new QueryOptions(0, Long.MAX_VALUE, 1000 + 15000), e -> {
+            counter.incrementAndGet();
+            return true;
+        });
+        assertEquals(500, counter.get());
+    }
+
    /* @Test
     public void testTransformation() throws InterruptedException {
         PrimaryEventStore testSubject = primaryEventStore();
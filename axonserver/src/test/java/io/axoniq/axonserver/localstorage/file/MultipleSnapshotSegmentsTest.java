@@ -57,7 +57,7 @@ public class MultipleSnapshotSegmentsTest {
             public String getHostName() throws UnknownHostException {
                 return null;
             }
-        }, ".snapshots", ".sindex", ".sbloom", ".snindex", ".sxref");
+        }, ".snapshots", ".sindex", ".sbloom", ".snindex", ".sxref", ".ssummary", ".spindex", ".sptypes");
 
         IndexManager indexManager = new StandardIndexManager("default",
                                                              () -> storageProperties,
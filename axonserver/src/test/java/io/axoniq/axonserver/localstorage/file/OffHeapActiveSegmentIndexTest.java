@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link OffHeapActiveSegmentIndex}.
+ *
+ * @author Marc Gathier
+ */
+public class OffHeapActiveSegmentIndexTest {
+
+    private final OffHeapActiveSegmentIndex testSubject = new OffHeapActiveSegmentIndex();
+
+    @Test
+    public void addAndGet() {
+        for (int i = 0; i < 10_000; i++) {
+            testSubject.add("aggregate-" + i, new IndexEntry(5, i * 10, i));
+        }
+        testSubject.addAll("aggregate-42", Arrays.asList(new IndexEntry(6, 100_001, 10_001),
+                                                         new IndexEntry(7, 100_002, 10_002)));
+
+        assertEquals(10_000, testSubject.size());
+        assertNull(testSubject.get("aggregate-10000"));
+        IndexEntries entries = testSubject.get("aggregate-42");
+        assertEquals(5, entries.firstSequenceNumber());
+        assertEquals(7, entries.lastSequenceNumber());
+        assertEquals(Arrays.asList(420, 100_001, 100_002), entries.positions());
+        assertEquals(Arrays.asList(9_990), testSubject.get("aggregate-999").positions());
+    }
+
+    @Test
+    public void manyEventsForAggregate() {
+        for (int i = 0; i < 5_000; i++) {
+            testSubject.add("aggregate", new IndexEntry(i, i * 7, i));
+        }
+        IndexEntries entries = testSubject.get("aggregate");
+        assertEquals(5_000, entries.size());
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(i * 7, entries.position(i));
+        }
+    }
+
+    @Test
+    public void entries() {
+        testSubject.add("aggregate-1", new IndexEntry(0, 10, 0));
+        testSubject.add("aggregate-2", new IndexEntry(3, 20, 1));
+        testSubject.add("aggregate-1", new IndexEntry(1, 30, 2));
+        testSubject.add("äggregate", new IndexEntry(0, 40, 3));
+
+        Map<String, IndexEntries> entries = testSubject.entries();
+        assertEquals(3, entries.size());
+        assertEquals(Arrays.asList(10, 30), entries.get("aggregate-1").positions());
+        assertEquals(3, entries.get("aggregate-2").firstSequenceNumber());
+        assertEquals(Arrays.asList(40), entries.get("äggregate").positions());
+    }
+
+    @Test
+    public void concurrentReaders() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            Future<?>[] readers = new Future[4];
+            for (int r = 0; r < readers.length; r++) {
+                readers[r] = executorService.submit(() -> {
+                    while (!done.get()) {
+                        for (int i = 0; i < 100; i++) {
+                            IndexEntries entries = testSubject.get("aggregate-" + i);
+                            if (entries != null) {
+                                for (int j = 0; j < entries.size(); j++) {
+                                    assertEquals(i * 100_000 + j, entries.position(j));
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+            for (int j = 0; j < 2_000; j++) {
+                for (int i = 0; i < 100; i++) {
+                    testSubject.add("aggregate-" + i, new IndexEntry(j, i * 100_000 + j, 0));
+                }
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertEquals(2_000, testSubject.get("aggregate-99").size());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ParallelSegmentProcessor}.
+ *
+ * @author Marc Gathier
+ */
+public class ParallelSegmentProcessorTest {
+
+    private final List<Long> segments = LongStream.range(0, 100).boxed().collect(Collectors.toList());
+
+    @Test
+    public void processesAllSegmentsWithLimitedConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Long> result = new ParallelSegmentProcessor("test", 3).process(segments, segment -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return segment * 2;
+        });
+
+        assertEquals(segments.stream().map(s -> s * 2).collect(Collectors.toList()), result);
+        assertTrue("Max running: " + maxRunning.get(), maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void rethrowsException() {
+        try {
+            new ParallelSegmentProcessor("test", 4).process(segments, segment -> {
+                if (segment == 42) {
+                    throw new IllegalStateException("failed on 42");
+                }
+                return segment;
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException ex) {
+            assertEquals("failed on 42", ex.getMessage());
+        }
+    }
+}
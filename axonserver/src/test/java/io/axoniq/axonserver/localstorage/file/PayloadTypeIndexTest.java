@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link PayloadTypeIndex}.
+ *
+ * @author Marc Gathier
+ */
+public class PayloadTypeIndexTest {
+
+    @ClassRule
+    public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final Set<String> EXCLUDE_COMMON = Collections.singleton(PayloadTypeIndex.key("Common", "1"));
+
+    private PayloadTypeIndex index() {
+        PayloadTypeIndex index = new PayloadTypeIndex(1000);
+        for (long token = 1000; token < 11000; token++) {
+            if (token == 5000 || token == 9999) {
+                index.add(token, "Rare", "1");
+            } else {
+                index.add(token, "Common", "1");
+            }
+        }
+        return index;
+    }
+
+    @Test
+    public void skipsBlocksWithExcludedTypesOnly() {
+        PayloadTypeIndex testSubject = index();
+
+        long blockOf5000 = 1000 + ((5000 - 1000) / PayloadTypeIndex.BLOCK_SIZE) * PayloadTypeIndex.BLOCK_SIZE;
+        assertEquals(blockOf5000, testSubject.nextCandidate(1000, EXCLUDE_COMMON));
+        assertEquals(5001, testSubject.nextCandidate(5001, EXCLUDE_COMMON));
+        long blockOf9999 = 1000 + ((9999 - 1000) / PayloadTypeIndex.BLOCK_SIZE) * PayloadTypeIndex.BLOCK_SIZE;
+        assertEquals(blockOf9999, testSubject.nextCandidate(5500, EXCLUDE_COMMON));
+        assertEquals(11000, testSubject.nextCandidate(10500, EXCLUDE_COMMON));
+    }
+
+    @Test
+    public void noSkipWithoutExcludedTypes() {
+        assertEquals(1234, index().nextCandidate(1234, Collections.emptySet()));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        File file = tempFolder.newFile();
+        index().write(file);
+
+        PayloadTypeIndex testSubject = PayloadTypeIndex.read(file);
+        assertEquals(10999, testSubject.lastToken());
+        assertEquals(11000, testSubject.nextCandidate(10500, EXCLUDE_COMMON));
+        assertEquals(5001, testSubject.nextCandidate(5001, EXCLUDE_COMMON));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import com.google.protobuf.ByteString;
+import io.axoniq.axonserver.grpc.SerializedObject;
+import io.axoniq.axonserver.grpc.event.Event;
+import io.axoniq.axonserver.metric.DefaultMetricCollector;
+import io.axoniq.axonserver.metric.MeterFactory;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link RecentEventsCache}.
+ *
+ * @author Marc Gathier
+ */
+public class RecentEventsCacheTest {
+
+    private final AtomicLong maxSize = new AtomicLong(100_000);
+    private final RecentEventsCache testSubject = new RecentEventsCache(maxSize::get,
+                                                                       new MeterFactory(new SimpleMeterRegistry(),
+                                                                                        new DefaultMetricCollector()),
+                                                                       Tags.empty());
+
+    @Test
+    public void returnsCachedRange() {
+        testSubject.add(events("A", 0, 5, 10));
+        testSubject.add(events("A", 5, 10, 10));
+
+        RecentEventsCache.CachedEvents cachedEvents = testSubject.get("A", 3, 7);
+        assertEquals(3, cachedEvents.firstSequenceNumber());
+        assertEquals(Arrays.asList(3L, 4L, 5L, 6L), sequenceNumbers(cachedEvents));
+        assertEquals(10, testSubject.get("A", 0, Long.MAX_VALUE).events().size());
+        assertNull(testSubject.get("A", 10, Long.MAX_VALUE));
+        assertNull(testSubject.get("B", 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void returnsPartialRange() {
+        testSubject.add(events("A", 20, 25, 10));
+
+        RecentEventsCache.CachedEvents cachedEvents = testSubject.get("A", 0, Long.MAX_VALUE);
+        assertEquals(20, cachedEvents.firstSequenceNumber());
+        assertEquals(5, cachedEvents.events().size());
+        assertNull(testSubject.get("A", 0, 20));
+    }
+
+    @Test
+    public void restartsOnGap() {
+        testSubject.add(events("A", 0, 5, 10));
+        testSubject.add(events("A", 7, 9, 10));
+
+        RecentEventsCache.CachedEvents cachedEvents = testSubject.get("A", 0, Long.MAX_VALUE);
+        assertEquals(7, cachedEvents.firstSequenceNumber());
+        assertEquals(Arrays.asList(7L, 8L), sequenceNumbers(cachedEvents));
+    }
+
+    @Test
+    public void limitsSizePerAggregate() {
+        testSubject.add(events("A", 0, 100, 1000));
+
+        RecentEventsCache.CachedEvents cachedEvents = testSubject.get("A", 0, Long.MAX_VALUE);
+        assertEquals(99, sequenceNumbers(cachedEvents).get(cachedEvents.events().size() - 1).longValue());
+        assertEquals(100 - cachedEvents.events().size(), cachedEvents.firstSequenceNumber());
+        assertEquals(true, testSubject.size() <= maxSize.get() / 16);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        for (int i = 0; i < 150; i++) {
+            testSubject.add(events("A-" + i, 0, 1, 1000));
+            testSubject.get("A-0", 0, Long.MAX_VALUE);
+        }
+
+        assertEquals(true, testSubject.size() <= maxSize.get());
+        assertEquals(1, testSubject.get("A-0", 0, Long.MAX_VALUE).events().size());
+        assertNull(testSubject.get("A-1", 0, Long.MAX_VALUE));
+        assertEquals(1, testSubject.get("A-149", 0, Long.MAX_VALUE).events().size());
+    }
+
+    @Test
+    public void clearedWhenDisabled() {
+        testSubject.add(events("A", 0, 5, 10));
+        maxSize.set(0);
+        testSubject.add(events("A", 5, 6, 10));
+        maxSize.set(100_000);
+
+        assertEquals(0, testSubject.size());
+        assertNull(testSubject.get("A", 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void ignoresNonDomainEvents() {
+        testSubject.add(singletonList(Event.newBuilder().setPayload(SerializedObject.newBuilder().build()).build()));
+
+        assertEquals(0, testSubject.size());
+    }
+
+    private List<Long> sequenceNumbers(RecentEventsCache.CachedEvents cachedEvents) {
+        return cachedEvents.events().stream().map(e -> e.getAggregateSequenceNumber()).collect(Collectors.toList());
+    }
+
+    private List<Event> events(String aggregateId, long first, long last, int payloadSize) {
+        return IntStream.range((int) first, (int) last)
+                        .mapToObj(i -> Event.newBuilder()
+                                            .setAggregateIdentifier(aggregateId)
+                                            .setAggregateType("Demo")
+                                            .setAggregateSequenceNumber(i)
+                                            .setPayload(SerializedObject.newBuilder()
+                                                                        .setData(ByteString.copyFrom(
+                                                                                new byte[payloadSize])))
+                                            .build())
+                        .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SegmentSummary}.
+ *
+ * @author Marc Gathier
+ */
+public class SegmentSummaryTest {
+
+    @ClassRule
+    public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void buildsSummary() {
+        SegmentSummary.Builder builder = new SegmentSummary.Builder(1000);
+        for (long token = 1000; token < 11000; token++) {
+            builder.add(token, token * 2);
+        }
+        SegmentSummary summary = builder.build(15);
+
+        assertEquals(1000, summary.firstToken());
+        assertEquals(10999, summary.lastToken());
+        assertEquals(2000, summary.firstTimestamp());
+        assertEquals(2000, summary.minTimestamp());
+        assertEquals(21998, summary.maxTimestamp());
+        assertEquals(10000, summary.eventCount());
+        assertEquals(15, summary.aggregateCount());
+    }
+
+    @Test
+    public void startTokenSkipsOlderEvents() {
+        SegmentSummary.Builder builder = new SegmentSummary.Builder(0);
+        for (long token = 0; token < 10_000; token++) {
+            builder.add(token, token);
+        }
+        SegmentSummary summary = builder.build(-1);
+
+        assertEquals(0, summary.startTokenFor(0));
+        assertEquals(0, summary.startTokenFor(SegmentSummary.SAMPLE_INTERVAL - 1));
+        assertEquals(SegmentSummary.SAMPLE_INTERVAL, summary.startTokenFor(SegmentSummary.SAMPLE_INTERVAL));
+        assertEquals(9 * SegmentSummary.SAMPLE_INTERVAL, summary.startTokenFor(9_999));
+    }
+
+    @Test
+    public void startTokenWithTimestampsOutOfOrder() {
+        SegmentSummary.Builder builder = new SegmentSummary.Builder(0);
+        for (long token = 3000; token >= 0; token--) {
+            builder.add(token, token == 10 ? 5000 : token);
+        }
+        SegmentSummary summary = builder.build(-1);
+
+        assertEquals(0, summary.startTokenFor(2500));
+        assertEquals(0, summary.startTokenFor(5000));
+        assertEquals(2 * SegmentSummary.SAMPLE_INTERVAL, summary.startTokenFor(5001));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        SegmentSummary.Builder builder = new SegmentSummary.Builder(100);
+        for (long token = 100; token < 5000; token++) {
+            builder.add(token, 10_000 + token);
+        }
+        File file = tempFolder.newFile();
+        builder.build(7).write(file);
+
+        SegmentSummary summary = SegmentSummary.read(file);
+        assertEquals(100, summary.firstToken());
+        assertEquals(4999, summary.lastToken());
+        assertEquals(10_100, summary.minTimestamp());
+        assertEquals(14_999, summary.maxTimestamp());
+        assertEquals(4900, summary.eventCount());
+        assertEquals(7, summary.aggregateCount());
+        assertEquals(100 + 2 * SegmentSummary.SAMPLE_INTERVAL, summary.startTokenFor(10_100 + 2500));
+    }
+
+    @Test
+    public void emptySegment() {
+        SegmentSummary summary = new SegmentSummary.Builder(100).build(0);
+        assertEquals(0, summary.eventCount());
+        assertTrue(summary.lastToken() < summary.firstToken());
+        assertEquals(100, summary.startTokenFor(1000));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.junit.*;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+
+import java.io.IOException;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ * @author Marc Gathier
+ */
+public class StandardIndexEntriesSerializerTest {
+
+    private final StandardIndexEntriesSerializer testSubject = StandardIndexEntriesSerializer.get();
+
+    @Test
+    public void serializeAndDeserialize() throws IOException {
+        StandardIndexEntries entries = new StandardIndexEntries(5, new int[]{5, 120, 130, 70000, 70001});
+        DataOutput2 out = new DataOutput2();
+        testSubject.serialize(out, entries);
+
+        IndexEntries result = testSubject.deserialize(new DataInput2.ByteArray(out.copyBytes()), out.pos);
+
+        assertEquals(5, result.firstSequenceNumber());
+        assertEquals(asList(5, 120, 130, 70000, 70001), result.positions());
+    }
+
+    @Test
+    public void serializeRange() throws IOException {
+        StandardIndexEntries entries = new StandardIndexEntries(5, new int[]{5, 120, 130, 70000, 70001});
+        DataOutput2 out = new DataOutput2();
+        testSubject.serialize(out, entries.range(6, 8, false));
+
+        IndexEntries result = testSubject.deserialize(new DataInput2.ByteArray(out.copyBytes()), out.pos);
+
+        assertEquals(6, result.firstSequenceNumber());
+        assertEquals(asList(120, 130), result.positions());
+    }
+
+    @Test
+    public void deserializeAbsolutePositions() throws IOException {
+        DataOutput2 out = new DataOutput2();
+        out.packInt(3);
+        out.packLong(10);
+        out.packInt(100);
+        out.packInt(200);
+        out.packInt(300);
+
+        IndexEntries result = testSubject.deserialize(new DataInput2.ByteArray(out.copyBytes()), out.pos);
+
+        assertEquals(10, result.firstSequenceNumber());
+        assertEquals(asList(100, 200, 300), result.positions());
+    }
+}
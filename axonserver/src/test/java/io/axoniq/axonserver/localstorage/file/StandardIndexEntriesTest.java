@@ -10,6 +10,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
 
 
@@ -68,8 +69,21 @@ public class StandardIndexEntriesTest {
 
     @Test
     public void range() {
-        StandardIndexEntries standardIndexEntries = new StandardIndexEntries(10, new Integer[]{0, 1, 2, 3, 4, 5, 6});
+        StandardIndexEntries standardIndexEntries = new StandardIndexEntries(10, new int[]{0, 1, 2, 3, 4, 5, 6});
         IndexEntries subset = standardIndexEntries.range(11, 14, false);
         assertEquals(3, subset.size());
+        assertEquals(11, subset.firstSequenceNumber());
+        assertEquals(13, subset.lastSequenceNumber());
+        assertEquals(asList(1, 2, 3), subset.positions());
+        assertEquals(3, subset.last());
+    }
+
+    @Test
+    public void addToRange() {
+        StandardIndexEntries standardIndexEntries = new StandardIndexEntries(10, new int[]{0, 1, 2, 3, 4, 5, 6});
+        IndexEntries subset = standardIndexEntries.range(8, 12, false);
+        subset.add(new IndexEntry(12, 100, 12));
+        assertEquals(asList(0, 1, 100), subset.positions());
+        assertEquals(asList(0, 1, 2, 3, 4, 5, 6), standardIndexEntries.positions());
     }
 }
\ No newline at end of file
@@ -12,6 +12,7 @@ package io.axoniq.axonserver.localstorage.file;
 import io.axoniq.axonserver.config.SystemInfoProvider;
 import io.axoniq.axonserver.exception.MessagingPlatformException;
 import io.axoniq.axonserver.localstorage.EventType;
+import io.axoniq.axonserver.metric.BaseMetricName;
 import io.axoniq.axonserver.metric.DefaultMetricCollector;
 import io.axoniq.axonserver.metric.MeterFactory;
 import io.axoniq.axonserver.test.TestUtils;
@@ -33,10 +34,13 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import static io.axoniq.axonserver.test.AssertUtils.assertWithin;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
@@ -130,6 +134,22 @@ public class StandardIndexManagerTest {
         assertNotNull(position.get(new FileVersion(0L, 0)));
     }
 
+    @Test
+    public void testOffHeapActiveIndex() {
+        storageProperties.setOffHeapActiveIndex(true);
+        String aggregateId = "aggregateId";
+        indexManager.addToActiveSegment(0L, aggregateId, new IndexEntry(0, 100, 0));
+        indexManager.addToActiveSegment(0L, aggregateId, new IndexEntry(1, 200, 1));
+        indexManager.complete(0);
+        indexManager.addToActiveSegment(10L, aggregateId, new IndexEntry(2, 300, 10));
+
+        assertEquals(Optional.of(2L), indexManager.getLastSequenceNumber(aggregateId, 10, Long.MAX_VALUE));
+        SortedMap<FileVersion, IndexEntries> positions = indexManager.lookupAggregate(aggregateId, 0, 3, 100, 0);
+        assertEquals(2, positions.size());
+        assertEquals(Arrays.asList(100, 200), positions.get(new FileVersion(0L, 0)).positions());
+        assertEquals(Arrays.asList(300), positions.get(new FileVersion(10L, 0)).positions());
+    }
+
     @Test
     public void testIndexMinToken() {
         long segment = 0L;
@@ -155,6 +175,96 @@ public class StandardIndexManagerTest {
         assertNotNull(position.get(new FileVersion(15L, 0)));
     }
 
+    @Test
+    public void testSortedIndexFormat() {
+        indexManager.addToActiveSegment(0L, "aggregate-0", new IndexEntry(0, 100, 0));
+        indexManager.complete(0);
+
+        storageProperties.setIndexFormat(StorageProperties.SORTED_INDEX_FORMAT);
+        for (int i = 0; i < 100; i++) {
+            indexManager.addToActiveSegment(10L, "aggregate-" + i, new IndexEntry(i == 0 ? 1 : 0, 200 + i, 10 + i));
+            indexManager.addToActiveSegment(10L, "aggregate-" + i, new IndexEntry(i == 0 ? 2 : 1, 400 + i, 110 + i));
+        }
+        indexManager.complete(10);
+
+        assertTrue(SortedIndexFile.isSortedIndex(storageProperties.index(storageProperties.getPrimaryStorage(context),
+                                                                         new FileVersion(10L, 0))));
+        SortedMap<FileVersion, IndexEntries> positions = indexManager.lookupAggregate("aggregate-0",
+                                                                                      0,
+                                                                                      Long.MAX_VALUE,
+                                                                                      100,
+                                                                                      0);
+        assertEquals(Arrays.asList(100), positions.get(new FileVersion(0L, 0)).positions());
+        assertEquals(Arrays.asList(200, 400), positions.get(new FileVersion(10L, 0)).positions());
+        assertEquals(1, positions.get(new FileVersion(10L, 0)).firstSequenceNumber());
+
+        positions = indexManager.lookupAggregate("aggregate-42", 0, Long.MAX_VALUE, 100, 0);
+        assertEquals(Arrays.asList(242, 442), positions.get(new FileVersion(10L, 0)).positions());
+        assertEquals(Optional.of(1L), indexManager.getLastSequenceNumber("aggregate-99", 10, Long.MAX_VALUE));
+        assertEquals(Optional.empty(), indexManager.getLastSequenceNumber("aggregate-100", 10, Long.MAX_VALUE));
+        assertEquals(100, indexManager.latestSequenceNumbers(new FileVersion(10L, 0)).count());
+    }
+
+    @Test
+    public void testGlobalIndex() throws Exception {
+        String storagePath = storageProperties.getPrimaryStorage(context);
+        for (long segment : new long[]{0, 10}) {
+            assertTrue(storageProperties.dataFile(storagePath, new FileVersion(segment, 0)).createNewFile());
+            for (int i = 0; i < 10; i++) {
+                indexManager.addToActiveSegment(segment,
+                                                "aggregate-" + (segment + i),
+                                                new IndexEntry(segment == 0 ? 0 : 1, (int) segment + i, segment + i));
+            }
+            indexManager.complete(segment);
+        }
+        indexManager.cleanup(false);
+
+        storageProperties = storageProperties.withUseGlobalIndex(true);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        indexManager = new StandardIndexManager(context,
+                                                () -> storageProperties,
+                                                storagePath,
+                                                EventType.EVENT,
+                                                new MeterFactory(meterRegistry, new DefaultMetricCollector()),
+                                                () -> null);
+        indexManager.init();
+        assertWithin(1, TimeUnit.SECONDS, () -> assertTrue(indexManager.isGlobalIndexReady()));
+        assertEquals(Optional.of(1L), indexManager.getLastSequenceNumber("aggregate-15", 10, Long.MAX_VALUE));
+        assertEquals(Optional.of(0L), indexManager.getLastSequenceNumber("aggregate-5", 10, Long.MAX_VALUE));
+        assertEquals(Optional.empty(), indexManager.getLastSequenceNumber("aggregate-new", 10, Long.MAX_VALUE));
+        assertEquals(0, bloomFiltersOpened(meterRegistry), 0);
+        assertEquals(Optional.empty(), indexManager.getLastSequenceNumber("aggregate-15", 10, 9));
+        assertEquals(1, bloomFiltersOpened(meterRegistry), 0);
+
+        SortedMap<FileVersion, IndexEntries> positions = indexManager.lookupAggregate("aggregate-5",
+                                                                                      0,
+                                                                                      Long.MAX_VALUE,
+                                                                                      100,
+                                                                                      0);
+        assertEquals(Arrays.asList(5), positions.get(new FileVersion(0L, 0)).positions());
+        assertEquals(1, bloomFiltersOpened(meterRegistry), 0);
+
+        assertTrue(storageProperties.dataFile(storagePath, new FileVersion(20L, 0)).createNewFile());
+        indexManager.addToActiveSegment(20L, "aggregate-5", new IndexEntry(1, 20, 20));
+        indexManager.complete(20L);
+        indexManager.cleanup(false);
+
+        indexManager = new StandardIndexManager(context,
+                                                () -> storageProperties,
+                                                storagePath,
+                                                EventType.EVENT,
+                                                new MeterFactory(meterRegistry, new DefaultMetricCollector()),
+                                                () -> null);
+        indexManager.init();
+        assertEquals(Optional.of(1L), indexManager.getLastSequenceNumber("aggregate-5", 10, Long.MAX_VALUE));
+        assertEquals(Optional.of(0L), indexManager.getLastSequenceNumber("aggregate-5", 10, 19));
+        assertTrue(storageProperties.globalIndex(storagePath).exists());
+    }
+
+    private double bloomFiltersOpened(SimpleMeterRegistry meterRegistry) {
+        return meterRegistry.find(BaseMetricName.AXON_BLOOM_OPEN.metric()).counter().count();
+    }
+
     @Test
     public void testTemporaryFileIsDeletedWhenCreatingIndex() throws IOException {
         long segment = 0L;
@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TransactionPositionIndex}.
+ *
+ * @author Marc Gathier
+ */
+public class TransactionPositionIndexTest {
+
+    @ClassRule
+    public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void floorInMemory() {
+        TransactionPositionIndex testSubject = TransactionPositionIndex.inMemory();
+        testSubject.add(100, 1000);
+        testSubject.add(200, 2000);
+
+        assertNull(testSubject.floor(99));
+        assertEquals(Long.valueOf(100), testSubject.floor(150).getKey());
+        assertEquals(Integer.valueOf(2000), testSubject.floor(200).getValue());
+    }
+
+    @Test
+    public void floorPersisted() throws IOException {
+        TransactionPositionIndex index = TransactionPositionIndex.inMemory();
+        for (int i = 1; i <= 1000; i++) {
+            index.add(i * 10L, i * 100);
+        }
+        File file = tempFolder.newFile();
+        index.write(file);
+
+        TransactionPositionIndex testSubject = TransactionPositionIndex.persisted(file);
+        assertNull(testSubject.floor(9));
+        Map.Entry<Long, Integer> entry = testSubject.floor(5555);
+        assertEquals(Long.valueOf(5550), entry.getKey());
+        assertEquals(Integer.valueOf(55500), entry.getValue());
+        assertEquals(Long.valueOf(10_000), testSubject.floor(Long.MAX_VALUE).getKey());
+    }
+
+    @Test
+    public void missingFile() {
+        TransactionPositionIndex testSubject = TransactionPositionIndex.persisted(
+                new File(tempFolder.getRoot(), "missing.pindex"));
+        assertNull(testSubject.floor(100));
+    }
+
+    @Test
+    public void indexesFirstTransactionInInterval() {
+        assertFalse(TransactionPositionIndex.isIndexed(5, 100, 1024));
+        assertTrue(TransactionPositionIndex.isIndexed(1000, 1030, 1024));
+        assertFalse(TransactionPositionIndex.isIndexed(1000, 1030, 0));
+    }
+}
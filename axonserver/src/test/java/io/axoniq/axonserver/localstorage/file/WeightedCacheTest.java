@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.file;
+
+import io.axoniq.axonserver.metric.BaseMetricName;
+import io.axoniq.axonserver.metric.DefaultMetricCollector;
+import io.axoniq.axonserver.metric.MeterFactory;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link WeightedCache}.
+ *
+ * @author Marc Gathier
+ */
+public class WeightedCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong maxWeight = new AtomicLong(100);
+    private final List<String> evicted = new ArrayList<>();
+    private WeightedCache<String, String> testSubject;
+
+    @Before
+    public void setUp() {
+        testSubject = new WeightedCache<>("test",
+                                          value -> value.length() * 10L,
+                                          maxWeight::get,
+                                          (key, value) -> evicted.add(key),
+                                          new MeterFactory(meterRegistry, new DefaultMetricCollector()),
+                                          Tags.of(MeterFactory.CONTEXT, "default"));
+    }
+
+    @Test
+    public void evictsOnWeight() {
+        testSubject.get("a", k -> "12345");
+        testSubject.get("b", k -> "1234");
+        assertEquals(90, testSubject.weight());
+        assertEquals(0, evicted.size());
+
+        testSubject.get("c", k -> "12");
+        assertEquals(List.of("a"), evicted);
+        assertEquals(60, testSubject.weight());
+        assertEquals(2, testSubject.size());
+    }
+
+    @Test
+    public void keepsEntriesAccessedMoreThanOnce() {
+        testSubject.get("a", k -> "123");
+        testSubject.get("b", k -> "123");
+        testSubject.get("c", k -> "123");
+        testSubject.get("a", k -> "123");
+
+        testSubject.get("d", k -> "123");
+        testSubject.get("e", k -> "123");
+        assertEquals(List.of("b", "c"), evicted);
+    }
+
+    @Test
+    public void neverEvictsEntriesWithoutWeight() {
+        testSubject.get("empty", k -> "");
+        testSubject.get("a", k -> "1234567890");
+        testSubject.get("b", k -> "1234567890");
+        assertEquals(List.of("a"), evicted);
+        assertEquals("", testSubject.get("empty", k -> "reloaded"));
+    }
+
+    @Test
+    public void nullValuesAreNotCached() {
+        assertNull(testSubject.get("a", k -> null));
+        assertEquals(0, testSubject.size());
+    }
+
+    @Test
+    public void recordsMetrics() {
+        testSubject.get("a", k -> "1");
+        testSubject.get("a", k -> "1");
+        testSubject.get("a", k -> "1");
+        testSubject.get("b", k -> "1");
+
+        assertEquals(2, meterRegistry.find(BaseMetricName.AXON_FILE_CACHE_HIT.metric()).counter().count(), 0);
+        assertEquals(2, meterRegistry.find(BaseMetricName.AXON_FILE_CACHE_MISS.metric()).counter().count(), 0);
+        assertEquals(2, meterRegistry.find(BaseMetricName.AXON_FILE_CACHE_LOAD.metric()).timer().count());
+        assertEquals(20, meterRegistry.find(BaseMetricName.AXON_FILE_CACHE_WEIGHT.metric()).gauge().value(), 0);
+    }
+}
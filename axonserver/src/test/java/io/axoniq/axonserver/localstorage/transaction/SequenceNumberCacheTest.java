@@ -14,12 +14,22 @@ import io.axoniq.axonserver.exception.MessagingPlatformException;
 import io.axoniq.axonserver.grpc.event.Event;
 import io.axoniq.axonserver.localstorage.EventStorageEngine;
 import io.axoniq.axonserver.localstorage.SerializedEvent;
+import io.axoniq.axonserver.localstorage.file.AggregateSequence;
+import io.axoniq.axonserver.metric.BaseMetricName;
+import io.axoniq.axonserver.metric.DefaultMetricCollector;
+import io.axoniq.axonserver.metric.MeterFactory;
 import io.axoniq.axonserver.test.FakeClock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.*;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static io.axoniq.axonserver.test.AssertUtils.assertWithin;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
 
@@ -167,6 +177,74 @@ public class SequenceNumberCacheTest {
                 serializedEvent("OTHER", "SampleAgg", 11)));
     }
 
+    @Test
+    public void reserveSequenceNumbersMultipleAggregates() {
+        Runnable unreserve = testSubject.reserveSequenceNumbers(asList(
+                serializedEvent("OTHER", "SampleAgg", 11),
+                serializedEvent("NEW", "SampleAgg", 0),
+                serializedEvent("OTHER", "SampleAgg", 12)), false);
+        unreserve.run();
+        testSubject.reserveSequenceNumbers(asList(
+                serializedEvent("NEW", "SampleAgg", 0),
+                serializedEvent("OTHER", "SampleAgg", 11)));
+    }
+
+    @Test
+    public void cacheIsBounded() {
+        testSubject = new SequenceNumberCache(SequenceNumberCacheTest::dummySequenceNumberProvider, clock, 100);
+        for (int i = 0; i < 1_000; i++) {
+            testSubject.reserveSequenceNumbers(asList(serializedEvent("AGGREGATE-" + i, "SampleAgg", 11)));
+            clock.timeElapses(1_000);
+        }
+        assertTrue(testSubject.size() <= 100);
+    }
+
+    @Test
+    public void recentlyReservedEntriesAreNotEvicted() {
+        testSubject = new SequenceNumberCache(SequenceNumberCacheTest::dummySequenceNumberProvider, clock, 10);
+        for (int i = 0; i < 100; i++) {
+            testSubject.reserveSequenceNumbers(asList(serializedEvent("AGGREGATE-" + i, "SampleAgg", 11)));
+        }
+        assertEquals(100, testSubject.size());
+    }
+
+    @Test
+    public void frequentlyUsedAggregateStaysCached() {
+        MeterFactory meterFactory = new MeterFactory(new SimpleMeterRegistry(), new DefaultMetricCollector());
+        testSubject = new SequenceNumberCache(SequenceNumberCacheTest::dummySequenceNumberProvider,
+                                              clock,
+                                              200,
+                                              meterFactory,
+                                              Tags.empty());
+        int sequenceNumber = 11;
+        for (int i = 0; i < 2_000; i++) {
+            if (i % 10 == 0) {
+                testSubject.reserveSequenceNumbers(asList(serializedEvent("HOT", "SampleAgg", sequenceNumber++)));
+            }
+            testSubject.reserveSequenceNumbers(asList(serializedEvent("AGGREGATE-" + i, "SampleAgg", 11)));
+            clock.timeElapses(1_000);
+        }
+        Counter misses = meterFactory.counter(BaseMetricName.AXON_SEQUENCE_CACHE_MISS, Tags.empty());
+        Counter hits = meterFactory.counter(BaseMetricName.AXON_SEQUENCE_CACHE_HIT, Tags.empty());
+        assertEquals(2_001, misses.count(), 0);
+        assertEquals(199, hits.count(), 0);
+    }
+
+    @Test
+    public void warmUp() throws InterruptedException {
+        testSubject = new SequenceNumberCache(SequenceNumberCacheTest::dummySequenceNumberProvider, clock, 100);
+        testSubject.reserveSequenceNumbers(asList(serializedEvent("OTHER", "SampleAgg", 11)));
+        testSubject.warmUp(() -> Stream.of(new AggregateSequence("A", 5),
+                                           new AggregateSequence("B", 7),
+                                           new AggregateSequence("OTHER", 3),
+                                           new AggregateSequence("A", 3)));
+        assertWithin(1, TimeUnit.SECONDS, () -> assertEquals(3, testSubject.size()));
+
+        testSubject.reserveSequenceNumbers(asList(serializedEvent("A", "SampleAgg", 6)));
+        testSubject.reserveSequenceNumbers(asList(serializedEvent("B", "SampleAgg", 8)));
+        testSubject.reserveSequenceNumbers(asList(serializedEvent("OTHER", "SampleAgg", 12)));
+    }
+
     private Event serializedEvent(String aggregateId, String aggregateType, int sequenceNumber) {
         return Event.newBuilder().setAggregateIdentifier(aggregateId)
                     .setAggregateType(aggregateType)
@@ -0,0 +1,150 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.transaction;
+
+import io.axoniq.axonserver.grpc.event.Event;
+import org.junit.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Marc Gathier
+ */
+public class TransactionCombinerTest {
+
+    private final List<List<Event>> stored = new CopyOnWriteArrayList<>();
+    private final List<Thread> storingThreads = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextToken = new AtomicLong();
+    private final CountDownLatch firstStoreStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstStore = new CountDownLatch(1);
+
+    private CompletableFuture<Long> store(List<Event> events) {
+        if (stored.isEmpty()) {
+            firstStoreStarted.countDown();
+            try {
+                releaseFirstStore.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        stored.add(events);
+        storingThreads.add(Thread.currentThread());
+        return CompletableFuture.completedFuture(nextToken.getAndAdd(events.size()));
+    }
+
+    @Test
+    public void combinesWaitingTransactions() throws Exception {
+        TransactionCombiner testSubject = new TransactionCombiner(this::store, 100, 1024 * 1024);
+        CompletableFuture<CompletableFuture<Long>> first = CompletableFuture.supplyAsync(
+                () -> testSubject.store(events(2)));
+        assertTrue(firstStoreStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Long> second = testSubject.store(events(3));
+        CompletableFuture<Long> third = testSubject.store(events(4));
+        assertFalse(second.isDone());
+        releaseFirstStore.countDown();
+
+        assertEquals(0L, (long) first.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+        assertEquals(2L, (long) second.get(5, TimeUnit.SECONDS));
+        assertEquals(5L, (long) third.get(5, TimeUnit.SECONDS));
+        assertEquals(2, stored.size());
+        assertEquals(7, stored.get(1).size());
+    }
+
+    @Test
+    public void respectsMaxEvents() throws Exception {
+        TransactionCombiner testSubject = new TransactionCombiner(this::store, 5, 1024 * 1024);
+        CompletableFuture<CompletableFuture<Long>> first = CompletableFuture.supplyAsync(
+                () -> testSubject.store(events(1)));
+        assertTrue(firstStoreStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Long> second = testSubject.store(events(3));
+        CompletableFuture<Long> third = testSubject.store(events(3));
+        CompletableFuture<Long> fourth = testSubject.store(events(8));
+        releaseFirstStore.countDown();
+
+        first.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        assertEquals(1L, (long) second.get(5, TimeUnit.SECONDS));
+        assertEquals(4L, (long) third.get(5, TimeUnit.SECONDS));
+        assertEquals(7L, (long) fourth.get(5, TimeUnit.SECONDS));
+        assertEquals(4, stored.size());
+    }
+
+    @Test
+    public void callerWritesSingleBatch() throws Exception {
+        TransactionCombiner testSubject = new TransactionCombiner(this::store, 5, 1024 * 1024);
+        CompletableFuture<CompletableFuture<Long>> first = CompletableFuture.supplyAsync(
+                () -> testSubject.store(events(1)));
+        assertTrue(firstStoreStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Long> second = testSubject.store(events(4));
+        CompletableFuture<Long> third = testSubject.store(events(4));
+        CompletableFuture<Long> fourth = testSubject.store(events(4));
+        releaseFirstStore.countDown();
+
+        first.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        assertEquals(1L, (long) second.get(5, TimeUnit.SECONDS));
+        assertEquals(5L, (long) third.get(5, TimeUnit.SECONDS));
+        assertEquals(9L, (long) fourth.get(5, TimeUnit.SECONDS));
+        assertEquals(4, stored.size());
+        assertEquals(1, storingThreads.stream().filter(storingThreads.get(0)::equals).count());
+        testSubject.close();
+    }
+
+    @Test
+    public void failurePropagatesToAllCombinedTransactions() throws Exception {
+        TransactionCombiner testSubject = new TransactionCombiner(events -> {
+            if (stored.isEmpty()) {
+                return store(events);
+            }
+            CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("Storage failed"));
+            return failed;
+        }, 100, 1024 * 1024);
+        CompletableFuture<CompletableFuture<Long>> first = CompletableFuture.supplyAsync(
+                () -> testSubject.store(events(1)));
+        assertTrue(firstStoreStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Long> second = testSubject.store(events(1));
+        CompletableFuture<Long> third = testSubject.store(events(1));
+        releaseFirstStore.countDown();
+
+        assertEquals(0L, (long) first.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+        assertFailed(second);
+        assertFailed(third);
+    }
+
+    private static void assertFailed(CompletableFuture<Long> result) throws Exception {
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Expected transaction to fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static List<Event> events(int count) {
+        return IntStream.range(0, count)
+                        .mapToObj(i -> Event.newBuilder().setAggregateIdentifier("aggregate")
+                                            .setAggregateSequenceNumber(i)
+                                            .build())
+                        .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.transformation;
+
+import com.google.protobuf.ByteString;
+import io.axoniq.axonserver.grpc.SerializedObject;
+import io.axoniq.axonserver.grpc.event.Event;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Lz4EventTransformer}.
+ *
+ * @author Marc Gathier
+ */
+class Lz4EventTransformerTest {
+
+    private final Lz4EventTransformer testSubject = Lz4EventTransformer.INSTANCE;
+
+    @Test
+    void compressesRepetitivePayload() {
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            payload.append("<order><id>").append(i).append("</id><status>CONFIRMED</status></order>");
+        }
+        byte[] eventBytes = event(ByteString.copyFromUtf8(payload.toString())).toByteArray();
+
+        byte[] stored = testSubject.toStorage(eventBytes);
+
+        assertTrue(stored.length < eventBytes.length / 4);
+        assertArrayEquals(eventBytes, testSubject.fromStorage(stored));
+    }
+
+    @Test
+    void storesIncompressiblePayloadUncompressed() {
+        byte[] random = new byte[1000];
+        new Random(42).nextBytes(random);
+        byte[] eventBytes = event(ByteString.copyFrom(random)).toByteArray();
+
+        byte[] stored = testSubject.toStorage(eventBytes);
+
+        assertEquals(eventBytes.length + 1, stored.length);
+        assertArrayEquals(eventBytes, testSubject.fromStorage(stored));
+    }
+
+    @Test
+    void storesSmallEventUncompressed() {
+        byte[] eventBytes = event(ByteString.copyFromUtf8("a")).toByteArray();
+
+        byte[] stored = testSubject.toStorage(eventBytes);
+
+        assertEquals(eventBytes.length + 1, stored.length);
+        assertArrayEquals(eventBytes, testSubject.fromStorage(stored));
+    }
+
+    @Test
+    void factoryReturnsTransformerForFlags() {
+        DefaultEventTransformerFactory factory = new DefaultEventTransformerFactory();
+        assertSame(NoOpEventTransformer.INSTANCE, factory.get(0));
+        assertSame(testSubject, factory.get(Compression.LZ4.flag()));
+        assertSame(NoOpEventTransformer.INSTANCE, factory.get(0xF00));
+    }
+
+    private static Event event(ByteString payload) {
+        return Event.newBuilder()
+                    .setMessageIdentifier("message")
+                    .setAggregateIdentifier("aggregate")
+                    .setAggregateType("Order")
+                    .setPayload(SerializedObject.newBuilder()
+                                                .setType("OrderConfirmed")
+                                                .setData(payload))
+                    .build();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2017-2023 AxonIQ B.V. and/or licensed to AxonIQ B.V.
+ *  under one or more contributor license agreements.
+ *
+ *  Licensed under the AxonIQ Open Source License Agreement v1.0;
+ *  you may not use this file except in compliance with the license.
+ *
+ */
+
+package io.axoniq.axonserver.localstorage.transformation;
+
+import com.google.protobuf.ByteString;
+import io.axoniq.axonserver.grpc.SerializedObject;
+import io.axoniq.axonserver.grpc.event.Event;
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link WrappedEvent}.
+ *
+ * @author Marc Gathier
+ */
+class WrappedEventTest {
+
+    private final Event event = Event.newBuilder()
+                                     .setMessageIdentifier("message")
+                                     .setAggregateIdentifier("aggregate")
+                                     .setAggregateSequenceNumber(12)
+                                     .setAggregateType("Demo")
+                                     .setPayload(SerializedObject.newBuilder()
+                                                                 .setType("DemoEvent")
+                                                                 .setData(ByteString.copyFromUtf8("payload")))
+                                     .build();
+
+    @Test
+    void writeToDirectBufferWithoutTransformation() {
+        WrappedEvent wrappedEvent = new WrappedEvent(event, NoOpEventTransformer.INSTANCE);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        buffer.position(10);
+
+        wrappedEvent.writeTo(buffer);
+
+        assertEquals(event.getSerializedSize(), wrappedEvent.getSerializedSize());
+        assertEquals(10 + event.getSerializedSize(), buffer.position());
+        byte[] written = new byte[event.getSerializedSize()];
+        buffer.position(10);
+        buffer.get(written);
+        assertArrayEquals(event.toByteArray(), written);
+    }
+
+    @Test
+    void writeToWithTransformation() {
+        EventTransformer reverse = new EventTransformer() {
+            @Override
+            public byte[] fromStorage(byte[] eventBytes) {
+                return reverse(eventBytes);
+            }
+
+            @Override
+            public byte[] toStorage(byte[] bytes) {
+                return reverse(bytes);
+            }
+        };
+        WrappedEvent wrappedEvent = new WrappedEvent(event, reverse);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        wrappedEvent.writeTo(buffer);
+
+        assertEquals(wrappedEvent.getSerializedSize(), buffer.position());
+        byte[] written = new byte[wrappedEvent.getSerializedSize()];
+        buffer.flip();
+        buffer.get(written);
+        assertArrayEquals(event.toByteArray(), reverse.fromStorage(written));
+    }
+
+    private static byte[] reverse(byte[] bytes) {
+        byte[] reversed = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            reversed[i] = bytes[bytes.length - 1 - i];
+        }
+        return reversed;
+    }
+}